@@ -0,0 +1,121 @@
+package images;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import javax.imageio.stream.ImageOutputStreamImpl;
+
+/**
+ * An image output stream writing to a file through a buffer. The encoders write many
+ * small pieces (chunk headers, single bytes), which are gathered in the buffer and written
+ * to the file channel in large blocks. The writer can still seek back into what it wrote
+ * (to fill in chunk lengths): the buffer is written out first, then it carries on from the
+ * new position. Nothing else of the image is held in memory.
+ */
+class BufferedFileImageOutputStream extends ImageOutputStreamImpl {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final FileChannel channel;
+  private final ByteBuffer buffer;
+  // position in the file of the first byte of the buffer
+  private long bufferStart;
+
+  /**
+   * Opens a file for writing an image into. An existing file is emptied first.
+   *
+   * @param path the file to write
+   * @throws IOException if the file cannot be opened
+   */
+  BufferedFileImageOutputStream(Path path) throws IOException {
+    this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    this.bufferStart = 0;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    flushBits();
+    prepareBuffer(1);
+    buffer.put((byte) b);
+    streamPos++;
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    flushBits();
+    if (len >= BUFFER_SIZE) {
+      // too large to be worth copying into the buffer
+      flushBuffer();
+      writeFully(ByteBuffer.wrap(b, off, len), streamPos);
+    } else {
+      prepareBuffer(len);
+      buffer.put(b, off, len);
+    }
+    streamPos += len;
+  }
+
+  @Override
+  public int read() throws IOException {
+    byte[] single = new byte[1];
+    return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    checkClosed();
+    bitOffset = 0;
+    // what is still in the buffer shall be in the file before reading it back
+    flushBuffer();
+    int count = channel.read(ByteBuffer.wrap(b, off, len), streamPos);
+    if (count > 0) {
+      streamPos += count;
+    }
+    return count;
+  }
+
+  @Override
+  public long length() {
+    try {
+      checkClosed();
+      return Math.max(channel.size(), bufferStart + buffer.position());
+    } catch (IOException ex) {
+      return -1L;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      flushBuffer();
+    } finally {
+      super.close();
+      channel.close();
+    }
+  }
+
+  // makes the buffer carry on at the stream position, with room for len more bytes
+  private void prepareBuffer(int len) throws IOException {
+    if (streamPos != bufferStart + buffer.position() || buffer.remaining() < len) {
+      flushBuffer();
+      bufferStart = streamPos;
+    }
+  }
+
+  // writes the buffer out to its place in the file, and empties it
+  private void flushBuffer() throws IOException {
+    buffer.flip();
+    writeFully(buffer, bufferStart);
+    buffer.clear();
+  }
+
+  private void writeFully(ByteBuffer bytes, long position) throws IOException {
+    while (bytes.hasRemaining()) {
+      position += channel.write(bytes, position);
+    }
+  }
+}
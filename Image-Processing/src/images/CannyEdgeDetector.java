@@ -0,0 +1,233 @@
+package images;
+
+import java.util.Arrays;
+
+/**
+ * Canny edge detection, built on the gradients of the sobel operator.
+ *
+ * <p>The steps are:
+ * <ol>
+ *   <li>smooth the luminance with a gaussian blur and take the sobel gradients (see
+ *   SobelEdgeDetector)</li>
+ *   <li>non-maximum suppression: a pixel stays an edge only if its gradient is at least as
+ *   strong as both neighbours along the gradient direction, which thins edges down to one
+ *   pixel</li>
+ *   <li>double threshold: pixels above the high threshold are strong edges, pixels above
+ *   the low threshold are weak edges</li>
+ *   <li>hysteresis: weak edges are kept only if they are connected to a strong edge</li>
+ * </ol>
+ * Edges come out white on a black background.
+ *
+ * <p>Everything runs in row bands. Hysteresis first follows edges within each band, then
+ * continues from the rows on both sides of each band boundary, so edges crossing bands are
+ * connected as well. Edges are followed with an explicit stack instead of recursion, so
+ * long edges on huge images cannot overflow the call stack.
+ */
+public class CannyEdgeDetector {
+
+  // pixel values used while classifying. Weak edges become black unless promoted.
+  private static final int STRONG = 0xFFFFFF;
+  private static final int WEAK = 0x808080;
+  private static final int NONE = 0;
+
+  private final SobelEdgeDetector sobel;
+  private final SeparableKernel smoothing;
+  private final int lowSquared;
+  private final int highSquared;
+
+  /**
+   * Constructs a canny edge detector.
+   *
+   * @param lowThreshold  edge intensity (0 - 255) a weak edge shall reach
+   * @param highThreshold edge intensity (0 - 255) a strong edge shall reach
+   * @param sigma         strength of the gaussian blur applied first, 0 for none
+   * @throws IllegalArgumentException if the thresholds are not within 0 - 255, the low
+   *                                  threshold is above the high one, or sigma is negative
+   */
+  public CannyEdgeDetector(int lowThreshold, int highThreshold, double sigma)
+          throws IllegalArgumentException {
+    if (lowThreshold < 0 || highThreshold > 255 || lowThreshold > highThreshold) {
+      throw new IllegalArgumentException(
+              "Thresholds shall be between 0 and 255, with the low one not above the high one!");
+    }
+    if (sigma < 0 || Double.isNaN(sigma)) {
+      throw new IllegalArgumentException("Sigma shall not be a negative number!");
+    }
+    this.sobel = new SobelEdgeDetector();
+    this.smoothing = sigma > 0 ? SeparableKernel.gaussian(sigma) : null;
+    this.lowSquared = SobelEdgeDetector.getSquaredMagnitudeThreshold(lowThreshold);
+    this.highSquared = SobelEdgeDetector.getSquaredMagnitudeThreshold(highThreshold);
+  }
+
+  /**
+   * Replaces the image with its canny edges.
+   *
+   * @param image    image to be processed
+   * @param rowBands executor running each step over bands of rows
+   */
+  public void detect(PixelBuffer image, RowBandExecutor rowBands) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int[] pixels = image.getPixels();
+    int[] luminance = new int[width * height];
+    int[] gradient = new int[width * height];
+    // first row of each band, so hysteresis knows where to continue across bands
+    boolean[] isBandStart = new boolean[height];
+
+    // each step needs the results of the previous one on the neighbouring rows,
+    // so every step is finished on the whole image before the next one starts
+    rowBands.forEachBand(height, (startRow, endRow) ->
+            sobel.computeLuminanceRows(image, luminance, startRow, endRow));
+
+    if (smoothing != null) {
+      rowBands.forEachBand(height, (startRow, endRow) ->
+              sobel.computeSmoothedGradientRows(luminance, smoothing, gradient,
+                      width, height, startRow, endRow));
+    } else {
+      rowBands.forEachBand(height, (startRow, endRow) ->
+              sobel.computeGradientRows(luminance, 0, gradient, width, height,
+                      startRow, endRow));
+    }
+
+    // the image is no longer read, so the edge classes are written straight into it
+    rowBands.forEachBand(height, (startRow, endRow) -> {
+      isBandStart[startRow] = true;
+      suppressRows(gradient, pixels, width, height, startRow, endRow);
+      followEdges(pixels, width, startRow, endRow, startRow, endRow, new IntStack());
+    });
+
+    // continue from both sides of every band boundary, over the whole image
+    IntStack stack = new IntStack();
+    for (int row = 1; row < height; row++) {
+      if (isBandStart[row]) {
+        followEdges(pixels, width, row - 1, row + 1, 0, height, stack);
+      }
+    }
+
+    // weak edges that were never reached are not edges
+    rowBands.forEachBand(height, (startRow, endRow) -> {
+      for (int index = startRow * width; index < endRow * width; index++) {
+        if (pixels[index] == WEAK) {
+          pixels[index] = NONE;
+        }
+      }
+    });
+  }
+
+  // non-maximum suppression and double threshold over a band of rows
+  private void suppressRows(int[] gradient, int[] output, int width, int height,
+                            int startRow, int endRow) {
+    for (int row = startRow; row < endRow; row++) {
+      int rowStart = row * width;
+
+      if (row == 0 || row == height - 1) {
+        Arrays.fill(output, rowStart, rowStart + width, NONE);
+        continue;
+      }
+
+      output[rowStart] = NONE;
+      for (int col = 1; col < width - 1; col++) {
+        int index = rowStart + col;
+        int magnitude = SobelEdgeDetector.getSquaredMagnitude(gradient[index]);
+
+        if (magnitude == 0 || magnitude < lowSquared) {
+          output[index] = NONE;
+          continue;
+        }
+
+        // neighbours along the gradient
+        int offset;
+        switch (SobelEdgeDetector.getDirection(gradient[index])) {
+          case SobelEdgeDetector.DIRECTION_HORIZONTAL:
+            offset = 1;
+            break;
+          case SobelEdgeDetector.DIRECTION_FALLING:
+            offset = width + 1;
+            break;
+          case SobelEdgeDetector.DIRECTION_VERTICAL:
+            offset = width;
+            break;
+          default:
+            offset = width - 1;
+        }
+        int before = SobelEdgeDetector.getSquaredMagnitude(gradient[index - offset]);
+        int after = SobelEdgeDetector.getSquaredMagnitude(gradient[index + offset]);
+
+        // strictly above one side, so a flat ridge two pixels wide keeps one of them
+        if (magnitude > before && magnitude >= after) {
+          output[index] = magnitude >= highSquared ? STRONG : WEAK;
+        } else {
+          output[index] = NONE;
+        }
+      }
+      if (width > 1) {
+        output[rowStart + width - 1] = NONE;
+      }
+    }
+  }
+
+  /**
+   * Promotes weak edges connected to the strong edges found in the seed rows. The search
+   * is iterative and stays within the limit rows.
+   *
+   * @param pixels     edge classes of the image
+   * @param width      width of the image
+   * @param seedStart  first row to look for strong edges in (inclusive)
+   * @param seedEnd    last row to look for strong edges in (exclusive)
+   * @param limitStart first row the search may reach (inclusive)
+   * @param limitEnd   last row the search may reach (exclusive)
+   * @param stack      stack of pixels to visit, empty
+   */
+  private void followEdges(int[] pixels, int width, int seedStart, int seedEnd,
+                           int limitStart, int limitEnd, IntStack stack) {
+    int firstIndex = limitStart * width;
+    int endIndex = limitEnd * width;
+
+    for (int seed = seedStart * width; seed < seedEnd * width; seed++) {
+      if (pixels[seed] != STRONG) {
+        continue;
+      }
+      stack.push(seed);
+
+      while (!stack.isEmpty()) {
+        int index = stack.pop();
+        int col = index % width;
+        int minCol = col > 0 ? -1 : 0;
+        int maxCol = col < width - 1 ? 1 : 0;
+
+        for (int dr = -width; dr <= width; dr += width) {
+          for (int dc = minCol; dc <= maxCol; dc++) {
+            int neighbour = index + dr + dc;
+            if (neighbour >= firstIndex && neighbour < endIndex
+                    && pixels[neighbour] == WEAK) {
+              pixels[neighbour] = STRONG;
+              stack.push(neighbour);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  // a growable stack of pixel indices
+  private static class IntStack {
+
+    private int[] items = new int[1024];
+    private int size = 0;
+
+    void push(int item) {
+      if (size == items.length) {
+        items = Arrays.copyOf(items, size * 2);
+      }
+      items[size++] = item;
+    }
+
+    int pop() {
+      return items[--size];
+    }
+
+    boolean isEmpty() {
+      return size == 0;
+    }
+  }
+}
@@ -0,0 +1,113 @@
+package images;
+
+/**
+ * A color transformation that mixes the red, green and blue channels of every pixel with
+ * a 3x3 matrix (such as the grayscale or sepia matrix), optionally with a 4th column that
+ * is added to each channel:
+ * <pre>
+ *   | red'   |   | m00 m01 m02 |   | red   |   | m03 |
+ *   | green' | = | m10 m11 m12 | * | green | + | m13 |
+ *   | blue'  |   | m20 m21 m22 |   | blue  |   | m23 |
+ * </pre>
+ *
+ * <p>Weights are kept as 16 bit fixed point integers, so a pixel is transformed with
+ * integer math only, and the image is changed in place without any allocation. Results
+ * are rounded down and clamped to 0 - 255, the same as the double matrix multiplication
+ * (they can be off by one where the double result is within 1/5000 of a whole number).
+ */
+public class ColorMatrix implements PixelTransform {
+
+  private static final int FRACTION_BITS = 16;
+  // keeps 3 * 255 * weight * 2^16 plus the offset within an int
+  private static final double MAX_WEIGHT = 16;
+  private static final double MAX_OFFSET = 255;
+
+  // 3 rows of 4: three weights, then the offset
+  private final int[] weights;
+
+  /**
+   * Constructs a color matrix.
+   *
+   * @param matrix 3 rows of 3 weights, or of 3 weights and an offset (in 0 - 255 units)
+   * @throws IllegalArgumentException if the matrix is not 3x3 or 3x4, or a weight is not
+   *                                  between -16 and 16, or an offset between -255 and 255
+   */
+  public ColorMatrix(double[][] matrix) throws IllegalArgumentException {
+    if (matrix == null || matrix.length != 3) {
+      throw new IllegalArgumentException("Color matrix shall have 3 rows!");
+    }
+    this.weights = new int[12];
+
+    for (int r = 0; r < 3; r++) {
+      if (matrix[r] == null || (matrix[r].length != 3 && matrix[r].length != 4)) {
+        throw new IllegalArgumentException("Color matrix shall have 3 or 4 columns!");
+      }
+      for (int c = 0; c < matrix[r].length; c++) {
+        double limit = c < 3 ? MAX_WEIGHT : MAX_OFFSET;
+        // also rejects NaN
+        if (!(Math.abs(matrix[r][c]) <= limit)) {
+          throw new IllegalArgumentException("Color matrix weights shall be between -16 and "
+                  + "16, and offsets between -255 and 255!");
+        }
+        weights[r * 4 + c] = (int) Math.round(matrix[r][c] * (1 << FRACTION_BITS));
+      }
+    }
+  }
+
+  /**
+   * Transforms all pixels of an image in place.
+   *
+   * @param image image to be processed
+   */
+  public void apply(PixelBuffer image) {
+    applyRows(image, 0, image.getHeight());
+  }
+
+  /**
+   * Transforms a band of rows of an image in place.
+   *
+   * @param image    image to be processed
+   * @param startRow first row of the band (inclusive)
+   * @param endRow   last row of the band (exclusive)
+   */
+  @Override
+  public void applyRows(PixelBuffer image, int startRow, int endRow) {
+    int[] pixels = image.getPixels();
+    int width = image.getWidth();
+
+    // copy the weights into locals, so they stay in registers
+    final int rr = weights[0];
+    final int rg = weights[1];
+    final int rb = weights[2];
+    final int ro = weights[3];
+    final int gr = weights[4];
+    final int gg = weights[5];
+    final int gb = weights[6];
+    final int go = weights[7];
+    final int br = weights[8];
+    final int bg = weights[9];
+    final int bb = weights[10];
+    final int bo = weights[11];
+
+    for (int index = startRow * width; index < endRow * width; index++) {
+      int rgb = pixels[index];
+      int red = (rgb >> 16) & 0xFF;
+      int green = (rgb >> 8) & 0xFF;
+      int blue = rgb & 0xFF;
+
+      int newRed = (rr * red + rg * green + rb * blue + ro) >> FRACTION_BITS;
+      int newGreen = (gr * red + gg * green + gb * blue + go) >> FRACTION_BITS;
+      int newBlue = (br * red + bg * green + bb * blue + bo) >> FRACTION_BITS;
+
+      pixels[index] = (clamp(newRed) << 16) | (clamp(newGreen) << 8) | clamp(newBlue);
+    }
+  }
+
+  // clamp the value between 0 - 255 (inclusive on each end)
+  private static int clamp(int colorChannel) {
+    if (colorChannel < 0) {
+      return 0;
+    }
+    return Math.min(colorChannel, 255);
+  }
+}
@@ -4,10 +4,10 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
 
 
@@ -21,7 +21,6 @@ public class ConcreteImageModel implements ImageModel {
   // fields - various filtering matrix
   private static final double[][] BLUR_MATRIX_3x3
           = new double[][]{{0.0625, 0.125, 0.0625}, {0.125, 0.25, 0.125}, {0.0625, 0.125, 0.0625}};
-  private static final int BLUR_MATRIX_HEIGHT = 3;
   
   // matrix values for each filters
   private static final double[][] SHARPEN_MATRIX_5x5
@@ -39,15 +38,22 @@ public class ConcreteImageModel implements ImageModel {
   private static final double[][] SEPIA_MATRIX_3x3
           = new double[][]{{.393, .769, .189}, {.349, .686, .168}, {.272, .534, .131}};
   
-  private static final double[][] SOBEL_EDGE_X
-          = new double[][]{{1, 0, -1},
-            {2, 0, -2},
-            {1, 0, -1}};
+  // color matrices and convolution kernels built from the matrices above
+  private static final ColorMatrix GREYSCALE_COLOR_MATRIX
+          = new ColorMatrix(GREYSCALE_MATRIX_3x3);
+  private static final ColorMatrix SEPIA_COLOR_MATRIX = new ColorMatrix(SEPIA_MATRIX_3x3);
+  private static final ConvolutionKernel BLUR_KERNEL = new ConvolutionKernel(BLUR_MATRIX_3x3);
+  private static final ConvolutionKernel SHARPEN_KERNEL
+          = new ConvolutionKernel(SHARPEN_MATRIX_5x5);
   
-  private static final double[][] SOBEL_EDGE_Y
-          = new double[][]{{1, 2, 1},
-            {0, 0, 0},
-            {-1, -2, -1}};
+  // strength of the gaussian blur applied before edge detection
+  private static final double EDGE_BLUR_SIGMA = 1.4;
+  // weight of a pixel without any edge, for edge weighted mosaic seeds. An edge adds its
+  // gradient magnitude (up to about 1400)
+  private static final int MOSAIC_EDGE_WEIGHT_FLOOR = 16;
+  
+  // number of box blurs used to approximate a gaussian blur
+  private static final int GAUSSIAN_BOX_PASSES = 3;
   
   // misc final values
   private static final int MIN_COLOR_VALUE = 0;
@@ -63,23 +69,70 @@ public class ConcreteImageModel implements ImageModel {
   private int imageHeight; // row
   private int imageWidth; // col
   
-  // to store a 3D matrix in integer containing the image information
-  // x - rows/height (first dimension); y - columns/width (second dimension)
-  // z - Color channels: [0] = red; [1] = green; [2] = blue
-  private int[][][] pixelsExistingImage;
-  private int[][][] originalImage;
-  private int[][][] generatedImage;
+  // to store the image information in a packed buffer (see PixelBuffer)
+  // one integer per pixel, row by row; channels packed as 0xRRGGBB
+  // Color channels: [0] = red; [1] = green; [2] = blue
+  private PixelBuffer pixelsExistingImage;
+  private PixelBuffer originalImage;
+  private PixelBuffer generatedImage;
+  // the image handed out by getImage, drawing from the pixels of displayedBuffer
+  private PixelBuffer displayedBuffer;
+  private BufferedImage displayedImage;
   
   private FlagGenerators flags;
+  private final ConvolutionEngine convolution;
+  private final SobelEdgeDetector edgeDetector;
+  // splits per-pixel filters into bands of rows across threads
+  private RowBandExecutor rowBands;
+  // color transforms not applied to the image yet. They are applied together in one pass
+  // right before anything else reads the pixels (see flushPendingTransforms)
+  private final PixelTransformChain pendingTransforms;
+  // the last mosaic, kept so refineMosaic can add seeds to it. null once anything else
+  // changes the image (see discardMosaic), which every filter shall call first
+  private MosaicSession lastMosaic;
   
   // constructors
   
   /**
-   * Constructs an instance of the ImageModel object.
+   * Constructs an instance of the ImageModel object. Filters will use all available cores.
    */
   public ConcreteImageModel() {
-    // it appears that nothing needs to be constructed.
-    // reserved for now just in case further homework needs it.
+    this(Runtime.getRuntime().availableProcessors());
+  }
+  
+  /**
+   * Constructs an instance of the ImageModel object with a chosen number of threads.
+   *
+   * @param parallelism number of threads used by the filters. 1 runs every filter serially.
+   * @throws IllegalArgumentException if the parallelism is not positive
+   */
+  public ConcreteImageModel(int parallelism) throws IllegalArgumentException {
+    this.convolution = new ConvolutionEngine();
+    this.edgeDetector = new SobelEdgeDetector();
+    this.rowBands = new RowBandExecutor(parallelism);
+    this.pendingTransforms = new PixelTransformChain();
+  }
+  
+  /**
+   * Changes the number of threads used by the filters. The output of the filters does not
+   * depend on this number.
+   *
+   * @param parallelism number of threads used by the filters. 1 runs every filter serially.
+   * @throws IllegalArgumentException if the parallelism is not positive
+   */
+  public void setParallelism(int parallelism) throws IllegalArgumentException {
+    RowBandExecutor newRowBands = new RowBandExecutor(parallelism);
+    rowBands.shutdown();
+    rowBands = newRowBands;
+  }
+  
+  /**
+   * Returns the number of threads used by the filters.
+   *
+   * @return parallelism level
+   */
+  public int getParallelism() {
+    return rowBands.getParallelism();
   }
   
   // overrides
@@ -92,28 +145,34 @@ public class ConcreteImageModel implements ImageModel {
    */
   @Override
   public void loadImage(String filename) throws IllegalArgumentException {
+    loadImage(filename, ImageLoadOptions.FULL_IMAGE);
+  }
+  
+  /**
+   * Loads a region of an image, or a scaled down image, into the model. The rest of the
+   * image is never decoded nor stored. The loaded part becomes the original image.
+   *
+   * @param filename the name of the file containing the image.
+   * @param options  the region and subsampling to load
+   * @throws IllegalArgumentException when filename is invalid, the region is outside of the
+   *                                  image or a wrong operation
+   */
+  @Override
+  public void loadImage(String filename, ImageLoadOptions options)
+          throws IllegalArgumentException {
     // check filename validity
     if (!isFilenameValid(filename)) {
       throw new IllegalArgumentException("Something wrong happened: file name might be invalid.");
     }
     
-    // obtain the image matrix
-    pixelsExistingImage = ImageUtilities.readImage(filename);
-    imageHeight = pixelsExistingImage.length;
-    imageWidth = pixelsExistingImage[0].length;
+    // obtain the image matrix. Transforms pending on the previous image no longer apply
+    pixelsExistingImage = ImageUtilities.readImageBuffer(filename, options);
+    pendingTransforms.clear();
+    discardMosaic();
+    updateImageSize();
     
     // keep a copy of the original image
-    originalImage = new int[pixelsExistingImage.length][pixelsExistingImage[0].length][3];
-    
-    // preserve original image
-    for (int row = 0; row < pixelsExistingImage.length; row++) {
-      for (int col = 0; col < pixelsExistingImage[0].length; col++) {
-        for (int channel = 0; channel < 3; channel++) {
-          int intensity = pixelsExistingImage[row][col][channel];
-          originalImage[row][col][channel] = intensity;
-        }
-      }
-    }
+    originalImage = pixelsExistingImage.copy();
   }
   
   /**
@@ -124,12 +183,27 @@ public class ConcreteImageModel implements ImageModel {
    */
   @Override
   public void saveImage(String filename) throws IllegalArgumentException {
+    saveImage(filename, ImageSaveOptions.DEFAULT);
+  }
+  
+  /**
+   * Saves the processed image to local drive, with a given JPEG quality or PNG compression
+   * level.
+   *
+   * @param filename the name of the file to save to
+   * @param options  the JPEG quality and PNG compression level to use
+   * @throws IllegalArgumentException when filename is invalid or a wrong operation
+   */
+  @Override
+  public void saveImage(String filename, ImageSaveOptions options)
+          throws IllegalArgumentException {
+    flushPendingTransforms();
     // check filename validity
     if (!isFilenameValid(filename)) {
       throw new IllegalArgumentException("Something wrong happened: filename might be invalid.");
     }
     // write image to local drive
-    ImageUtilities.writeImage(pixelsExistingImage, filename);
+    ImageUtilities.writeImage(pixelsExistingImage, filename, options);
   }
   
   /**
@@ -138,7 +212,7 @@ public class ConcreteImageModel implements ImageModel {
    * @param newImage  incoming new image
    * @throws IllegalArgumentException if filename is invalid
    */
-  public void saveNewImage(String filename, int[][][] newImage) throws IllegalArgumentException {
+  public void saveNewImage(String filename, PixelBuffer newImage) throws IllegalArgumentException {
     // check filename validity
     if (!isFilenameValid(filename)) {
       throw new IllegalArgumentException("Something wrong happened: filename might be invalid.");
@@ -152,44 +226,97 @@ public class ConcreteImageModel implements ImageModel {
    */
   @Override
   public void applyBlur() {
+    discardMosaic();
+    flushPendingTransforms();
     // Blurring is achieved by applying a matrix operation (convolution) to the whole image.
     // For each pixel in the image, each channel (R, G, B) is altered based on the blur matrix.
     // Specifically, each channel in the pixel is re-calculated by multiplying together the
     // corresponding numbers in the kernel and the pixels and adding them.
-    // See the comments in the private method for specific operations.
-    
-    // in this method we will focus on looping through the matrix and obtaining a one-to-one
-    // corresponding matrix (same size as the kernel).
-    // Then operation delegates to a private method for the computation.
-    int[][][] matrixG = new int[pixelsExistingImage.length][pixelsExistingImage[0].length][3];
-    // OPERATION:
-    // for loop to loop through each pixel row by row, column by column
-    for (int row = 0; row < pixelsExistingImage.length; row++) {
-      for (int col = 0; col < pixelsExistingImage[row].length; col++) {
-        for (int channel = 0; channel < pixelsExistingImage[row][col].length; channel++) {
-          // TODO - simplify the process after testing
-          // construct a one-to-one corresponding matrix that fits the blur filter
-          int[][] toBeProcessed
-                  = buildPixelSubMatrixToKernel(row, col, channel, BLUR_MATRIX_HEIGHT);
-          
-          // send to matrix convolution method fo the operation
-          // replace the current matrix value
-          matrixG[row][col][channel]
-                  = getColorValue(matrixConvolution(BLUR_MATRIX_3x3, toBeProcessed));
-        }
-      }
+    // See the ConvolutionEngine for specific operations.
+    pixelsExistingImage = applyConvolution(BLUR_KERNEL);
+  }
+  
+  /**
+   * Apply a gaussian blur of any strength. The 2D gaussian is split into a horizontal and
+   * a vertical pass, so the cost grows with the radius (3 sigma) instead of its square.
+   *
+   * @param sigma standard deviation of the gaussian in pixels. Larger values blur more.
+   * @throws IllegalArgumentException if sigma is not positive, or larger than
+   *                                  SeparableKernel.MAX_SIGMA
+   */
+  @Override
+  public void applyGaussianBlur(double sigma) throws IllegalArgumentException {
+    discardMosaic();
+    flushPendingTransforms();
+    SeparableKernel kernel = SeparableKernel.gaussian(sigma);
+    PixelBuffer source = pixelsExistingImage;
+    PixelBuffer horizontalPass = new PixelBuffer(imageWidth, imageHeight);
+    
+    // the vertical pass needs the neighbouring rows, so all bands of the first pass
+    // have to be finished before the second pass starts
+    rowBands.forEachBand(imageHeight, (startRow, endRow) ->
+            convolution.applyHorizontalRows(source, kernel, horizontalPass, startRow, endRow));
+    // the original image is no longer needed, reuse it for the output
+    rowBands.forEachBand(imageHeight, (startRow, endRow) ->
+            convolution.applyVerticalRows(horizontalPass, kernel, source, startRow, endRow));
+  }
+  
+  /**
+   * Apply a box blur, where each pixel becomes the average of a square window around it.
+   * The window is averaged with running sums, so the cost per pixel does not depend on
+   * the radius. This makes it suited for very wide blurs.
+   *
+   * @param radius the window covers radius pixels on each side of a pixel
+   * @throws IllegalArgumentException if the radius is negative, or larger than
+   *                                  ConvolutionEngine.MAX_BOX_RADIUS
+   */
+  public void applyBoxBlur(int radius) throws IllegalArgumentException {
+    applyBoxBlur(radius, 1);
+  }
+  
+  /**
+   * Apply the box blur a number of times. Each extra pass makes the result closer to a
+   * gaussian blur.
+   *
+   * @param radius the window covers radius pixels on each side of a pixel
+   * @param passes number of times the box blur is applied
+   * @throws IllegalArgumentException if the radius is negative or larger than
+   *                                  ConvolutionEngine.MAX_BOX_RADIUS, or passes is not
+   *                                  positive
+   */
+  public void applyBoxBlur(int radius, int passes) throws IllegalArgumentException {
+    discardMosaic();
+    flushPendingTransforms();
+    if (radius < 0 || passes <= 0) {
+      throw new IllegalArgumentException("Radius and passes shall be positive integers!");
     }
-    
-    for (int row = 0; row < pixelsExistingImage.length; row++) {
-      for (int col = 0; col < pixelsExistingImage[row].length; col++) {
-        
-        // send to matrix convolution method fo the operation
-        int[] color = matrixG[row][col];
-        // replace the current matrix value
-        pixelsExistingImage[row][col] = color;
-        
-      }
+    if (radius > ConvolutionEngine.MAX_BOX_RADIUS) {
+      throw new IllegalArgumentException("Radius shall be at most "
+              + ConvolutionEngine.MAX_BOX_RADIUS + "!");
     }
+    int[] radii = new int[passes];
+    Arrays.fill(radii, radius);
+    applyBoxBlurPasses(radii);
+  }
+  
+  /**
+   * Apply a fast approximation of a gaussian blur, made of three box blurs whose sizes are
+   * picked to match the gaussian. The cost does not depend on sigma.
+   * Reference: http://www.peterkovesi.com/papers/FastGaussianSmoothing.pdf
+   *
+   * @param sigma standard deviation of the gaussian in pixels. Larger values blur more.
+   * @throws IllegalArgumentException if sigma is not positive, or larger than
+   *                                  SeparableKernel.MAX_SIGMA
+   */
+  public void applyFastGaussianBlur(double sigma) throws IllegalArgumentException {
+    discardMosaic();
+    flushPendingTransforms();
+    if (!(sigma > 0 && sigma <= SeparableKernel.MAX_SIGMA)) {
+      throw new IllegalArgumentException("Sigma shall be a positive number, at most "
+              + SeparableKernel.MAX_SIGMA + "!");
+    }
+    // the radii are about sigma, so they stay under ConvolutionEngine.MAX_BOX_RADIUS
+    applyBoxBlurPasses(getBoxRadiiForGaussian(sigma, GAUSSIAN_BOX_PASSES));
   }
   
   /**
@@ -197,35 +324,11 @@ public class ConcreteImageModel implements ImageModel {
    */
   @Override
   public void applySharpen() {
+    discardMosaic();
+    flushPendingTransforms();
     // verify similar to Blur, except the filter matrix for shapren is different.
     // see comments in applyBlur for more details.
-    int[][][] matrixG = new int[pixelsExistingImage.length][pixelsExistingImage[0].length][3];
-    // for loop to loop through each pixel row by row, column by column
-    for (int row = 0; row < pixelsExistingImage.length; row++) {
-      for (int col = 0; col < pixelsExistingImage[row].length; col++) {
-        for (int channel = 0; channel < pixelsExistingImage[row][col].length; channel++) {
-          // TODO - simplify the process after testing
-          // construct a one-to-one corresponding matrix that fits the blur filter
-          int[][] toBeProcessed =
-                  buildPixelSubMatrixToKernel(row, col, channel, SHARPEN_MATRIX_5x5.length);
-          // send to matrix convolution method fo the operation
-          // replace the current matrix value
-          matrixG[row][col][channel]
-                  = getColorValue(matrixConvolution(SHARPEN_MATRIX_5x5, toBeProcessed));
-        }
-      }
-    }
-    
-    for (int row = 0; row < pixelsExistingImage.length; row++) {
-      for (int col = 0; col < pixelsExistingImage[row].length; col++) {
-        
-        // send to matrix convolution method fo the operation
-        int[] color = matrixG[row][col];
-        
-        // replace the current matrix value
-        pixelsExistingImage[row][col] = color;
-      }
-    }
+    pixelsExistingImage = applyConvolution(SHARPEN_KERNEL);
   }
   
   /**
@@ -233,25 +336,11 @@ public class ConcreteImageModel implements ImageModel {
    */
   @Override
   public void applyGrayscale() {
-    // similar to previous method, will loop through the whole image and process each pixel
-    // individually using for loop
-    for (int row = 0; row < pixelsExistingImage.length; row++) {
-      for (int col = 0; col < pixelsExistingImage[row].length; col++) {
-        // for all three channels in one pixel, perform matrix transformatiion
-        // by multiplying the color channel with a 3x3 matrix
-        
-        // generate existing color channel
-        int[] existChannelValues = new int[3];
-        for (int channel = 0; channel < pixelsExistingImage[row][col].length; channel++) {
-          // obtain RGB values
-          existChannelValues[channel] = pixelsExistingImage[row][col][channel];
-        }
-        
-        pixelsExistingImage[row][col]
-                = matrixMultiplication(GREYSCALE_MATRIX_3x3, existChannelValues);
-
-      }
-    }
+    discardMosaic();
+    // queue the grayscale matrix (see ColorMatrix) rather than running it now. It is applied
+    // together with the other pending color transforms in one pass, the next time the
+    // pixels are needed (see flushPendingTransforms)
+    pendingTransforms.add(GREYSCALE_COLOR_MATRIX);
   }
   
   /**
@@ -259,25 +348,23 @@ public class ConcreteImageModel implements ImageModel {
    */
   @Override
   public void applySepia() {
-    // similar to previous method, will loop through the whole image and proess each pixel
-    // individually using for loop
-    for (int row = 0; row < pixelsExistingImage.length; row++) {
-      for (int col = 0; col < pixelsExistingImage[row].length; col++) {
-        // for all three channels in one pixel, perform matrix transformatiion
-        // by multiplying the color channel with a 3x3 matrix
-        
-        // generate existing color channel
-        int[] existChannelValues = new int[3];
-        for (int channel = 0; channel < pixelsExistingImage[row][col].length; channel++) {
-          // obtain RGB values
-          existChannelValues[channel] = pixelsExistingImage[row][col][channel];
-        }
-        
-        pixelsExistingImage[row][col]
-                = matrixMultiplication(SEPIA_MATRIX_3x3, existChannelValues);
-      }
-    }
-    
+    discardMosaic();
+    // queued like grayscale, with the sepia matrix
+    pendingTransforms.add(SEPIA_COLOR_MATRIX);
+  }
+  
+  /**
+   * Mix the color channels of every pixel with a user supplied matrix. See ColorMatrix.
+   * Like grayscale and sepia, the matrix is applied the next time the pixels are needed.
+   *
+   * @param matrix 3 rows of 3 weights, or of 3 weights and an offset (in 0 - 255 units)
+   * @throws IllegalArgumentException if the matrix is not 3x3 or 3x4, or the values are out
+   *                                  of range
+   */
+  @Override
+  public void applyColorMatrix(double[][] matrix) throws IllegalArgumentException {
+    discardMosaic();
+    pendingTransforms.add(new ColorMatrix(matrix));
   }
   
   /**
@@ -285,6 +372,8 @@ public class ConcreteImageModel implements ImageModel {
    */
   @Override
   public void applyDither() {
+    discardMosaic();
+    flushPendingTransforms();
     // for the dither effect, color channel for each pixel is exammed and re-assigned to either
     // 0 or 255 based on how close the number to each end.
     // then their adjacent value is adjusted based on the difference between existing and 0/255.
@@ -292,15 +381,13 @@ public class ConcreteImageModel implements ImageModel {
     // first as always loop through each pixel, then for each pixel, convert existing channel to
     // either 0 or 255, and then delegate to another private method to update the adjacent channels.
     
-    for (int row = 0; row < pixelsExistingImage.length; row++) {
-      for (int col = 0; col < pixelsExistingImage[row].length; col++) {
+    for (int row = 0; row < imageHeight; row++) {
+      for (int col = 0; col < imageWidth; col++) {
         // update current pixel value
         int channel = 0;
-        int oldColor = pixelsExistingImage[row][col][channel];
-        int newDitherColor = getDitherValue(pixelsExistingImage[row][col][channel]);
-        pixelsExistingImage[row][col][0] = newDitherColor;
-        pixelsExistingImage[row][col][1] = newDitherColor;
-        pixelsExistingImage[row][col][2] = newDitherColor;
+        int oldColor = pixelsExistingImage.getChannel(row, col, channel);
+        int newDitherColor = getDitherValue(oldColor);
+        pixelsExistingImage.setRgb(row, col, newDitherColor, newDitherColor, newDitherColor);
         int delta = oldColor - newDitherColor; // old minus the new
         
         // update adjacent channel value
@@ -312,209 +399,263 @@ public class ConcreteImageModel implements ImageModel {
   
   /**
    * Override applyMosaic to transform image to a mosaic style. Number of seeds
-   * is needed to for the mosaic image.
+   * is needed to for the mosaic image. The seeds are placed at random.
    *
    * @param seeds the number of seeds to use in the mosaic
-   * @throws IllegalArgumentException if the seed number is not positive
+   * @throws IllegalArgumentException if the seed number is not positive, or more than the
+   *                                  number of pixels
    */
   @Override
   public void applyMosaic(int seeds) throws IllegalArgumentException {
+    applyMosaic(seeds, ThreadLocalRandom.current().nextLong());
+  }
+  
+  /**
+   * Override applyMosaic to transform image to a mosaic style, with seeds placed from a
+   * given random seed, so the same mosaic can be made again.
+   *
+   * @param seeds      the number of seeds to use in the mosaic
+   * @param randomSeed seed of the random generator placing the seeds
+   * @throws IllegalArgumentException if the seed number is not positive, or more than the
+   *                                  number of pixels
+   */
+  @Override
+  public void applyMosaic(int seeds, long randomSeed) throws IllegalArgumentException {
+    applyMosaic(seeds, SeedDistribution.UNIFORM, randomSeed);
+  }
+  
+  /**
+   * Override applyMosaic to transform image to a mosaic style, with seeds spread in a given
+   * way. Evenly spread seeds (jittered grid, poisson disk) or seeds following the edges
+   * look as good as uniform ones with fewer seeds.
+   *
+   * @param seeds        the number of seeds to use in the mosaic
+   * @param distribution how the seeds are spread over the image
+   * @param randomSeed   seed of the random generator placing the seeds
+   * @throws IllegalArgumentException if the seed number is not positive, or more than the
+   *                                  number of pixels
+   */
+  @Override
+  public void applyMosaic(int seeds, SeedDistribution distribution, long randomSeed)
+          throws IllegalArgumentException {
+    // the previous mosaic is let go before the new one is made
+    discardMosaic();
+    flushPendingTransforms();
     // check input validity
     if (!isMosaicSeedValid(seeds)) {
       throw new IllegalArgumentException("Seed input shall be a positive integer!");
     }
     
-    // get the seed points and construct a KD Tree
-    int[][] seedPoints = getRandomPixel(seeds);
-    KdTree seedTree = new KdTree(seedPoints);
+    // get the seed points, as [seedRow, seedCol] pairs
+    SeedSampler sampler = new SeedSampler(imageWidth, imageHeight, randomSeed);
+    int[] seedPoints;
+    switch (distribution) {
+      case JITTERED_GRID:
+        seedPoints = sampler.jitteredGrid(seeds);
+        break;
+      case POISSON_DISK:
+        seedPoints = sampler.poissonDisk(seeds);
+        break;
+      case EDGE_WEIGHTED:
+        seedPoints = sampler.weighted(seeds, getEdgeWeights());
+        break;
+      default:
+        seedPoints = sampler.uniform(seeds);
+        break;
+    }
     
-    // 2. Loop thru each pixels
-    // 2.0 create a 3D int[][][] of the pixels, each pixel location will record its nearest seed
-    int[][][] pixelMapWithSeeds = new int[imageHeight][imageWidth][2];
-    int[][] seedOccurrenceCount = new int[imageHeight][imageWidth];
+    // 2. each pixel location records the index of its nearest seed, and each seed the sum of
+    // its pixels (see MosaicSession). The seeds are drawn on the pixels with the
+    // VoronoiRasterizer, not looked up pixel by pixel in a SpatialIndex: it is faster for any
+    // number and spread of seeds (see test/SpatialIndexBenchmark)
+    MosaicSession mosaic = new MosaicSession(pixelsExistingImage, rowBands);
+    mosaic.addSeeds(seedPoints);
     
-    for (int row = 0; row < pixelsExistingImage.length; row++) {
-      for (int col = 0; col < pixelsExistingImage[row].length; col++) {
-        // for each pixels, get the closest seed location
-        pixelMapWithSeeds[row][col] = seedTree.getShortestDistance(row, col).toArray();
-        // note whatever stored in the pixelMapWithSeeds[row][col] = [seedX, seedY]
-        int currentSeedRow = pixelMapWithSeeds[row][col][0];
-        int currentSeedCol = pixelMapWithSeeds[row][col][1];
-        
-        // if it is at the current seed, jump to the next iteration
-        if (row == currentSeedRow && col == currentSeedCol) {
-          seedOccurrenceCount[currentSeedRow][currentSeedCol] += 1;
-          continue;
-        }
-        
-        // within the actual pixel map, add the current pixel's value to it
-        for (int index = 0; index < 3; index++) {
-          pixelsExistingImage[currentSeedRow][currentSeedCol][index]
-                  += pixelsExistingImage[row][col][index];
-        }
-        
-        seedOccurrenceCount[currentSeedRow][currentSeedCol] += 1;
-      }
+    // 3. each pixel gets the average colour of its seed
+    mosaic.render(pixelsExistingImage);
+    lastMosaic = mosaic;
+  }
+  
+  /**
+   * Override refineMosaic to add seeds to the last mosaic. The seeds, the seed of every
+   * pixel and the colour sums of the last mosaic are kept (see MosaicSession), so only the
+   * pixels around the new seeds are revisited, and the result is the same as one mosaic
+   * of all the seeds. The image shall not have changed since the last mosaic.
+   *
+   * @param moreSeeds  the number of seeds to add
+   * @param randomSeed seed of the random generator placing the new seeds
+   * @throws IllegalArgumentException if the seed number is not positive or more than the
+   *                                  number of pixels, or the image is not the last mosaic
+   *                                  any more
+   */
+  @Override
+  public void refineMosaic(int moreSeeds, long randomSeed) throws IllegalArgumentException {
+    flushPendingTransforms();
+    if (!isMosaicSeedValid(moreSeeds)) {
+      throw new IllegalArgumentException("Seed input shall be a positive integer!");
     }
-    
-    // recompute the seed values
-    for (int row = 0; row < pixelsExistingImage.length; row++) {
-      for (int col = 0; col < pixelsExistingImage[row].length; col++) {
-        
-        if (seedOccurrenceCount[row][col] != 0) {
-          for (int index = 0; index < 3; index++) {
-            pixelsExistingImage[row][col][index]
-                    = pixelsExistingImage[row][col][index] / seedOccurrenceCount[row][col];
-          }
-        }
-      }
+    if (lastMosaic == null) {
+      throw new IllegalArgumentException("The image shall still be the last mosaic!");
     }
     
-    
-    // 3.2 for each pixel location [][], update the RGB value according to their seeds
-    for (int row = 0; row < pixelsExistingImage.length; row++) {
-      for (int col = 0; col < pixelsExistingImage[row].length; col++) {
-        // for each pixel location, grab the location of the seed point
-        int[] seedLocation = pixelMapWithSeeds[row][col];
-        int[] newColors = pixelsExistingImage[seedLocation[0]][seedLocation[1]];
-        
-        // update the existing image with seed colors
-        pixelsExistingImage[row][col] = newColors;
-      }
-    }
+    // new seeds may land on old ones: the old seed keeps the pixel, so nothing changes
+    int[] seedPoints = new SeedSampler(imageWidth, imageHeight, randomSeed).uniform(moreSeeds);
+    lastMosaic.addSeeds(seedPoints);
+    lastMosaic.render(pixelsExistingImage);
+    // the work arrays of the seeds are only needed while they are added
+    lastMosaic.releaseWorkArrays();
   }
 
   
   /**
    * Apply edge detection through sobel operator. (Part of homework 10)
+   * The luminance of each pixel is computed once, then both gradients are taken in one
+   * pass. See SobelEdgeDetector.
+   *
+   * @param applyBlur smooth the luminance with a gaussian blur first, to suppress noise
    */
   @Override
   public void applyEdgeDetection(boolean applyBlur) {
-    
-    applyGrayscale();
-    
-    double maxMagnitude = -99999;
-    double minMagnitude = 99999;
-    
-    double[][][] matrixG = new double[pixelsExistingImage.length][pixelsExistingImage[0].length][3];
-    
-    for (int row = 0; row < pixelsExistingImage.length; row++) {
-      for (int col = 0; col < pixelsExistingImage[0].length; col++) {
-        for (int channel = 0; channel < 3; channel++) {
-          
-          if (row == 0 || col == 0 || row == pixelsExistingImage.length - 1
-                  || col == pixelsExistingImage[0].length - 1) {
-            matrixG[row][col][channel] = 0;
-          } else {
-            int[][] toBeProcessed
-                    = buildPixelSubMatrixToKernel(row, col, channel, BLUR_MATRIX_HEIGHT);
-            
-            double geeX = matrixConvolution(SOBEL_EDGE_X, toBeProcessed);
-            double geeY = matrixConvolution(SOBEL_EDGE_Y, toBeProcessed);
-            
-            double magnitudeG = Math.sqrt(geeX * geeX + geeY * geeY);
-            
-            if (magnitudeG > maxMagnitude) {
-              maxMagnitude = magnitudeG;
-            } else if (magnitudeG < minMagnitude) {
-              minMagnitude = magnitudeG;
-            }
-            
-            matrixG[row][col][channel] = magnitudeG;
-          }
-        }
-      }
-    }
-    
-    // normalize each value
-    for (int row = 0; row < pixelsExistingImage.length; row++) {
-      for (int col = 0; col < pixelsExistingImage[0].length; col++) {
-        for (int channel = 0; channel < 3; channel++) {
-          
-          // get current value
-          int currentValue = (int) matrixG[row][col][channel];
-          
-          // normalize
-          int normalizedValue = (int) ((currentValue) * 255 / (1448.154));
-          pixelsExistingImage[row][col][channel] = normalizedValue;
-          
-        }
-      }
+    discardMosaic();
+    flushPendingTransforms();
+    
+    int[] luminance = new int[imageHeight * imageWidth];
+    PixelBuffer image = pixelsExistingImage;
+    
+    // every band needs the luminance of its neighbouring rows,
+    // so the whole plane is computed before the edges
+    rowBands.forEachBand(imageHeight, (startRow, endRow) ->
+            edgeDetector.computeLuminanceRows(image, luminance, startRow, endRow));
+    // the image is no longer read, so the edges are written straight into it
+    if (applyBlur) {
+      SeparableKernel kernel = SeparableKernel.gaussian(EDGE_BLUR_SIGMA);
+      rowBands.forEachBand(imageHeight, (startRow, endRow) ->
+              edgeDetector.detectSmoothedRows(luminance, kernel, image, startRow, endRow));
+    } else {
+      rowBands.forEachBand(imageHeight, (startRow, endRow) ->
+              edgeDetector.detectRows(luminance, image, startRow, endRow));
     }
   }
   
+  /**
+   * Apply canny edge detection: thin, connected edges in white on black. The luminance is
+   * smoothed with the same gaussian blur as the smoothed edge detection. See
+   * CannyEdgeDetector.
+   *
+   * @param lowThreshold  edge intensity (0 - 255) a weak edge shall reach
+   * @param highThreshold edge intensity (0 - 255) a strong edge shall reach
+   * @throws IllegalArgumentException if the thresholds are not within 0 - 255 or the low
+   *                                  threshold is above the high one
+   */
+  @Override
+  public void applyCannyEdgeDetection(int lowThreshold, int highThreshold)
+          throws IllegalArgumentException {
+    discardMosaic();
+    flushPendingTransforms();
+    CannyEdgeDetector canny = new CannyEdgeDetector(lowThreshold, highThreshold,
+            EDGE_BLUR_SIGMA);
+    canny.detect(pixelsExistingImage, rowBands);
+  }
+  
+  /**
+   * Choose whether edge detection approximates the gradient magnitude with integer math
+   * instead of a square root. Faster, and within 4% of the exact magnitude.
+   *
+   * @param isApproximate true to approximate the magnitude
+   */
+  public void setApproximateEdgeMagnitude(boolean isApproximate) {
+    edgeDetector.setApproximateMagnitude(isApproximate);
+  }
+  
   @Override
   public void rotateImageCounterClockwise() {
+    discardMosaic();
     // Will create a new image array and transfer pixels (one-to-one)
-    int newLength = pixelsExistingImage.length;
-    int newHeight = pixelsExistingImage[0].length;
+    int newLength = imageHeight;
+    int newHeight = imageWidth;
     
-    int[][][] rotatedImage = new int[newHeight][newLength][3];
+    PixelBuffer rotatedImage = new PixelBuffer(newLength, newHeight);
     
     // the first column becomes the bottom row
     // (or the first row becomes reverse first column)
-    for (int row = 0; row < pixelsExistingImage.length; row++) {
-      for (int col = 0; col < pixelsExistingImage[0].length; col++) {
-        rotatedImage[newHeight - col - 1][row] = pixelsExistingImage[row][col];
+    rowBands.forEachBand(imageHeight, (startRow, endRow) -> {
+      for (int row = startRow; row < endRow; row++) {
+        for (int col = 0; col < imageWidth; col++) {
+          rotatedImage.setRgb(newHeight - col - 1, row, pixelsExistingImage.getRgb(row, col));
+        }
       }
-    }
+    });
     
     // update
     pixelsExistingImage = rotatedImage;
+    updateImageSize();
   }
   
   @Override
   public void rotateImageClockwise() {
+    discardMosaic();
     // Will create a new image array and transfer pixels (one-to-one)
-    int newLength = pixelsExistingImage.length;
-    int newHeight = pixelsExistingImage[0].length;
+    int newLength = imageHeight;
+    int newHeight = imageWidth;
   
-    int[][][] rotatedImage = new int[newHeight][newLength][3];
+    PixelBuffer rotatedImage = new PixelBuffer(newLength, newHeight);
   
     // the first column becomes the bottom row
     // (or the first row becomes reverse first column)
-    for (int row = 0; row < pixelsExistingImage.length; row++) {
-      for (int col = 0; col < pixelsExistingImage[0].length; col++) {
-        rotatedImage[col][newLength - row - 1] = pixelsExistingImage[row][col];
+    rowBands.forEachBand(imageHeight, (startRow, endRow) -> {
+      for (int row = startRow; row < endRow; row++) {
+        for (int col = 0; col < imageWidth; col++) {
+          rotatedImage.setRgb(col, newLength - row - 1, pixelsExistingImage.getRgb(row, col));
+        }
       }
-    }
+    });
   
     // update
     pixelsExistingImage = rotatedImage;
+    updateImageSize();
   }
   
   @Override
   public void flipImageHorizontal() {
+    discardMosaic();
     
     // will just swap pixels for each row
-    for (int row = 0; row < pixelsExistingImage.length; row++) {
-      for (int col = 0; col < pixelsExistingImage[0].length/2 + 1; col++) {
-        
-        int[] tempPixel = pixelsExistingImage[row][col];
-  
-        pixelsExistingImage[row][col]
-                = pixelsExistingImage[row][pixelsExistingImage[0].length - col - 1];
-        
-        pixelsExistingImage[row][pixelsExistingImage[0].length - col - 1] = tempPixel;
+    // (only up to the middle column, otherwise the pixels would be swapped back)
+    rowBands.forEachBand(imageHeight, (startRow, endRow) -> {
+      for (int row = startRow; row < endRow; row++) {
+        for (int col = 0; col < imageWidth / 2; col++) {
+          
+          int tempPixel = pixelsExistingImage.getRgb(row, col);
+          
+          pixelsExistingImage.setRgb(row, col,
+                  pixelsExistingImage.getRgb(row, imageWidth - col - 1));
+          
+          pixelsExistingImage.setRgb(row, imageWidth - col - 1, tempPixel);
+        }
       }
-    }
+    });
   }
   
   @Override
   public void flipImageVertical() {
+    discardMosaic();
     
     // will just swap pixels for each row
-    for (int row = 0; row < pixelsExistingImage.length / 2 + 1; row++) {
-      for (int col = 0; col < pixelsExistingImage[0].length; col++) {
-      
-        int[] tempPixel = pixelsExistingImage[row][col];
-      
-        pixelsExistingImage[row][col]
-                = pixelsExistingImage[pixelsExistingImage.length - row - 1][col];
-      
-        pixelsExistingImage[pixelsExistingImage.length - row - 1][col] = tempPixel;
+    // (only up to the middle row, otherwise the pixels would be swapped back)
+    // each band of the top half swaps with its mirrored band of the bottom half
+    rowBands.forEachBand(imageHeight / 2, (startRow, endRow) -> {
+      for (int row = startRow; row < endRow; row++) {
+        for (int col = 0; col < imageWidth; col++) {
+          
+          int tempPixel = pixelsExistingImage.getRgb(row, col);
+          
+          pixelsExistingImage.setRgb(row, col,
+                  pixelsExistingImage.getRgb(imageHeight - row - 1, col));
+          
+          pixelsExistingImage.setRgb(imageHeight - row - 1, col, tempPixel);
+        }
       }
-    }
+    });
     
   }
   
@@ -528,7 +669,7 @@ public class ConcreteImageModel implements ImageModel {
   @Override
   public void generateRainbowFlag(String filename, boolean isHorizontal, int height, int width) {
     
-    generatedImage = new int[height][width][3];
+    generatedImage = new PixelBuffer(width, height);
     int[] segments = new int[8];
     double segment;
     
@@ -565,17 +706,9 @@ public class ConcreteImageModel implements ImageModel {
     // if it is vertical, it will loop through the whole column, and sub loop to all segments
     
     if (isHorizontal) {
-      for (int row = segmentStart; row <= segmentEnd; row++) {
-        for (int col = 0; col < generatedImage[0].length; col++) {
-          generatedImage[row][col] = colors;
-        }
-      }
+      generateColorOnImage(colors, segmentStart, segmentEnd, 0, generatedImage.getWidth() - 1);
     } else {
-      for (int row = 0; row < generatedImage.length; row++) {
-        for (int col = segmentStart; col <= segmentEnd; col++) {
-          generatedImage[row][col] = colors;
-        }
-      }
+      generateColorOnImage(colors, 0, generatedImage.getHeight() - 1, segmentStart, segmentEnd);
     }
     
   }
@@ -592,7 +725,7 @@ public class ConcreteImageModel implements ImageModel {
   public void generateCheckBoardPattern(String filename, int[][] colors, int checkerCount,
                                         int squareSize) {
     // breakdown the images into different sizes
-    generatedImage = new int[squareSize][squareSize][3];
+    generatedImage = new PixelBuffer(squareSize, squareSize);
     int[] segments = new int[checkerCount + 1];
     double segment = squareSize / checkerCount;
     
@@ -618,11 +751,7 @@ public class ConcreteImageModel implements ImageModel {
   
   private void generateColorOnImage(int[] color, int startRow, int endRow,
                                     int startCol, int endCol) {
-    for (int row = startRow; row <= endRow; row++) {
-      for (int col = startCol; col <= endCol; col++) {
-        generatedImage[row][col] = color;
-      }
-    }
+    generatedImage.fill(PixelBuffer.pack(color), startRow, endRow, startCol, endCol);
     
   }
   
@@ -664,61 +793,108 @@ public class ConcreteImageModel implements ImageModel {
    */
   @Override
   public void applyGrayscaleContrastEnhance() {
+    discardMosaic();
     // Steps:
     // 1. Aggregate the intensity (just one because it's grey scale) into an array.
-    // 2. Normalize the histogram
+    // 2. Normalize the histogram into a lookup table (see LookupTable.equalization)
     // 3. reassign each pixel to the normalized channel
     
-    // Define fields
-    int[] histogramOrignal = new int[256]; // indexes represent each intensity
-    int[] histogramNormalized = new int[256];
-    
-    // convert the image to grayscale
+    // convert the image to grayscale, the histogram needs the gray pixels
     applyGrayscale();
+    flushPendingTransforms();
     
-    // aggregate the pixels
-    for (int row = 0; row < pixelsExistingImage.length; row++) {
-      for (int col = 0; col < pixelsExistingImage[0].length; col++) {
-        // locate the intensity, add one to the counter
-        // ie. if the intensity if 198, then histogram[198]++;
-        histogramOrignal[pixelsExistingImage[row][col][0]]++;
-      }
-    }
-    
-    // Normalization
-    // loop through the array to find the min value
-    int totalPixelCount = pixelsExistingImage.length * pixelsExistingImage[0].length;
-    int minIntensity = totalPixelCount;
+    // all three channels are the same, the red one is enough
+    int[] histogram = computeHistograms()[0];
     
-    for (int a : histogramOrignal) {
-      if (a < minIntensity && a != 0) {
-        minIntensity = a;
-      }
-    }
-    // apply normalization equation
-    // reference: https://en.wikipedia.org/wiki/Histogram_equalization
-    // https://www.math.uci.edu/icamp/courses/math77c/demos/hist_eq.pdf
-    // looping through each intensity from 0 - 255
-    int sumIntensity = 0;
-    for (int b = 0; b < histogramOrignal.length; b++) {
-      
-      sumIntensity += histogramOrignal[b];
-      
-      histogramNormalized[b] = sumIntensity * 255 / totalPixelCount;
-    }
+    // the new intensity = table[old intensity], applied with the next pending transforms
+    pendingTransforms.add(LookupTable.equalization(histogram));
+  }
+  
+  /**
+   * Histogram equalization of each color channel, to intensify the contrast of an image.
+   */
+  public void applyEqualization() {
+    discardMosaic();
+    flushPendingTransforms();
     
-    // reassign each pixels
-    // the new intensity = histogramNormal[old intensity]
-    for (int row = 0; row < pixelsExistingImage.length; row++) {
-      for (int col = 0; col < pixelsExistingImage[0].length; col++) {
-        
-        int newIntensity = histogramNormalized[pixelsExistingImage[row][col][0]];
-        // reassign values
-        for (int channel = 0; channel < 3; channel++) {
-          pixelsExistingImage[row][col][channel] = newIntensity;
-        }
-      }
-    }
+    int[][] histograms = computeHistograms();
+    pendingTransforms.add(LookupTable.combine(LookupTable.equalization(histograms[0]),
+            LookupTable.equalization(histograms[1]), LookupTable.equalization(histograms[2])));
+  }
+  
+  /**
+   * Gamma correction. A gamma above 1 brightens the mid tones, below 1 darkens them.
+   *
+   * @param gamma the gamma
+   * @throws IllegalArgumentException if gamma is not positive
+   */
+  public void applyGamma(double gamma) throws IllegalArgumentException {
+    applyLookupTable(LookupTable.gamma(gamma));
+  }
+  
+  /**
+   * Levels: stretch the values between the input black and white points to the output range.
+   *
+   * @param inputBlack  input value that becomes the output black
+   * @param inputWhite  input value that becomes the output white
+   * @param gamma       gamma of the mid tones, 1 for none
+   * @param outputBlack darkest output value
+   * @param outputWhite brightest output value
+   * @throws IllegalArgumentException if the levels are not valid (see LookupTable.levels)
+   */
+  public void applyLevels(int inputBlack, int inputWhite, double gamma,
+                          int outputBlack, int outputWhite) throws IllegalArgumentException {
+    applyLookupTable(LookupTable.levels(inputBlack, inputWhite, gamma, outputBlack,
+            outputWhite));
+  }
+  
+  /**
+   * Curves: a tone curve through control points, straight lines in between.
+   *
+   * @param inputs  input values of the control points, increasing
+   * @param outputs output values of the control points
+   * @throws IllegalArgumentException if the points are not valid (see LookupTable.curve)
+   */
+  public void applyCurve(int[] inputs, int[] outputs) throws IllegalArgumentException {
+    applyLookupTable(LookupTable.curve(inputs, outputs));
+  }
+  
+  /**
+   * Invert the colors of the image, like a photo negative.
+   */
+  public void applyInvert() {
+    applyLookupTable(LookupTable.invert());
+  }
+  
+  /**
+   * Reduce each color channel to a few evenly spaced values.
+   *
+   * @param levels number of values kept per channel
+   * @throws IllegalArgumentException if levels is not between 2 and 256
+   */
+  public void applyPosterize(int levels) throws IllegalArgumentException {
+    applyLookupTable(LookupTable.posterize(levels));
+  }
+  
+  /**
+   * Set each color channel to 255 if it is at or above a level, 0 otherwise.
+   *
+   * @param level the threshold level
+   * @throws IllegalArgumentException if the level is not within 0 - 255
+   */
+  public void applyThreshold(int level) throws IllegalArgumentException {
+    applyLookupTable(LookupTable.threshold(level));
+  }
+  
+  /**
+   * Map each color channel through a lookup table. Like the color matrices, the table is
+   * applied the next time the pixels are needed, merged with the tables queued around it.
+   *
+   * @param table the lookup table
+   */
+  public void applyLookupTable(LookupTable table) {
+    discardMosaic();
+    pendingTransforms.add(table);
   }
   
   /**
@@ -731,33 +907,45 @@ public class ConcreteImageModel implements ImageModel {
    */
   @Override
   public void cropImage(int topLeftXpt, int topLeftYpt, int btmRightXpt, int btmRightYpt) {
+    discardMosaic();
     // define the size of the cropped image
-    int[][][] croppedImage = new int[btmRightYpt - topLeftYpt + 1][btmRightXpt - topLeftXpt + 1][3];
-    
-    for (int row = 0; row < croppedImage.length; row++) {
-      for (int col = 0; col < croppedImage[0].length; col++) {
-        for (int channel = 0; channel < 3; channel++) {
-          croppedImage[row][col][channel] =
-                  pixelsExistingImage[row + topLeftYpt][col + topLeftXpt][channel];
-        }
+    PixelBuffer croppedImage
+            = new PixelBuffer(btmRightXpt - topLeftXpt + 1, btmRightYpt - topLeftYpt + 1);
+    
+    // copy each row of the selection in one go
+    rowBands.forEachBand(croppedImage.getHeight(), (startRow, endRow) -> {
+      for (int row = startRow; row < endRow; row++) {
+        System.arraycopy(pixelsExistingImage.getPixels(),
+                pixelsExistingImage.getIndex(row + topLeftYpt, topLeftXpt),
+                croppedImage.getPixels(), croppedImage.getIndex(row, 0), croppedImage.getWidth());
       }
-    }
+    });
     
     pixelsExistingImage = croppedImage;
+    updateImageSize();
   }
   
   /**
-   * Returns an image for the controller to update the view.
+   * Returns an image for the controller to update the view. The image draws straight from
+   * the pixels of the model (nothing is copied), so it keeps showing the current image
+   * until a filter replaces the whole buffer (blur, rotate, crop...); call again after
+   * each change.
    *
    * @return a bufferImage. If there's no pixels, will return null.
    */
   @Override
   public BufferedImage getImage() {
+    flushPendingTransforms();
     
-    if (pixelsExistingImage != null) {
-      return createBufferImg(pixelsExistingImage);
+    if (pixelsExistingImage == null) {
+      return null;
     }
-    return null;
+    // only a new buffer needs a new image around it
+    if (displayedBuffer != pixelsExistingImage) {
+      displayedBuffer = pixelsExistingImage;
+      displayedImage = pixelsExistingImage.toBufferedImage();
+    }
+    return displayedImage;
   }
   
   /**
@@ -766,47 +954,111 @@ public class ConcreteImageModel implements ImageModel {
   @Override
   public void revertImage() {
     
-    pixelsExistingImage = new int[originalImage.length][originalImage[0].length][3];
-    
     // preserve original image
-    for (int row = 0; row < originalImage.length; row++) {
-      for (int col = 0; col < originalImage[0].length; col++) {
-        for (int channel = 0; channel < 3; channel++) {
-          int intensity = originalImage[row][col][channel];
-          pixelsExistingImage[row][col][channel] = intensity;
-        }
+    pixelsExistingImage = originalImage.copy();
+    pendingTransforms.clear();
+    discardMosaic();
+    updateImageSize();
+  }
+  
+  // getters
+  
+  // private helpers
+  
+  // convolve the whole image with a kernel, one band of rows per task
+  private PixelBuffer applyConvolution(ConvolutionKernel kernel) {
+    PixelBuffer source = pixelsExistingImage;
+    PixelBuffer output = new PixelBuffer(imageWidth, imageHeight);
+    rowBands.forEachBand(imageHeight, (startRow, endRow) ->
+            convolution.applyRows(source, kernel, output, startRow, endRow));
+    return output;
+  }
+  
+  // box blur the image once per radius, reusing the same two buffers for every pass
+  private void applyBoxBlurPasses(int[] radii) {
+    PixelBuffer image = pixelsExistingImage;
+    PixelBuffer horizontalPass = new PixelBuffer(imageWidth, imageHeight);
+    
+    for (int radius : radii) {
+      if (radius == 0) {
+        continue;
       }
+      // all bands of the first pass have to be finished before the second pass starts
+      rowBands.forEachBand(imageHeight, (startRow, endRow) ->
+              convolution.applyHorizontalBoxRows(image, radius, horizontalPass,
+                      startRow, endRow));
+      // the vertical pass runs in bands of columns, so each column fills its window once
+      rowBands.forEachBand(imageWidth, (startCol, endCol) ->
+              convolution.applyVerticalBoxColumns(horizontalPass, radius, image,
+                      startCol, endCol));
     }
   }
   
-  private BufferedImage createBufferImg(int[][][] pixels) {
+  // radius of each box so that the passes together have the variance of the gaussian.
+  // boxes come in two odd sizes next to each other: m passes of the smaller one first.
+  private int[] getBoxRadiiForGaussian(double sigma, int passes) {
+    double variance = sigma * sigma;
+    int sizeLower = (int) Math.floor(Math.sqrt(12 * variance / passes + 1));
+    if (sizeLower % 2 == 0) {
+      sizeLower--;
+    }
+    int sizeUpper = sizeLower + 2;
     
-    imageHeight = pixelsExistingImage.length;
-    imageWidth = pixelsExistingImage[0].length;
+    int lowerCount = (int) Math.round((12 * variance - passes * sizeLower * sizeLower
+            - 4 * passes * sizeLower - 3 * passes) / (-4.0 * sizeLower - 4));
     
-    BufferedImage output
-            = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_RGB);
-    // Reference: ImageUtilities, writeImage on how to generate a buffered Image
-    for (int i = 0; i < imageHeight; i++) {
-      for (int j = 0; j < imageWidth; j++) {
-        int r = pixels[i][j][0];
-        int g = pixels[i][j][1];
-        int b = pixels[i][j][2];
-        
-        // color is stored in 1 integer, with the 4 bytes storing ARGB in that
-        // order. Each of r,g,b are stored in 8 bits (hence between 0 and 255).
-        // So we put them all in one integer by using bit-shifting << as below
-        int color = (r << 16) + (g << 8) + b;
-        output.setRGB(j, i, color);
-      }
+    int[] radii = new int[passes];
+    for (int i = 0; i < passes; i++) {
+      radii[i] = ((i < lowerCount ? sizeLower : sizeUpper) - 1) / 2;
     }
-    
-    return output;
+    return radii;
   }
   
-  // getters
+  // apply the deferred color transforms, all of them in one pass over the image.
+  // Rotating, flipping and cropping only move pixels around, so they do not need this.
+  private void flushPendingTransforms() {
+    if (pendingTransforms.isEmpty()) {
+      return;
+    }
+    PixelBuffer image = pixelsExistingImage;
+    if (image != null) {
+      rowBands.forEachBand(imageHeight, (startRow, endRow) ->
+              pendingTransforms.applyRows(image, startRow, endRow));
+    }
+    pendingTransforms.clear();
+  }
+  
+  // count the values of each channel, [0] = red, [1] = green, [2] = blue
+  // each band counts its own histograms first, then adds them to the total
+  private int[][] computeHistograms() {
+    int[][] histograms = new int[3][256];
+    int[] pixels = pixelsExistingImage.getPixels();
+    
+    rowBands.forEachBand(imageHeight, (startRow, endRow) -> {
+      int[][] histogramsBand = new int[3][256];
+      for (int index = startRow * imageWidth; index < endRow * imageWidth; index++) {
+        int rgb = pixels[index];
+        histogramsBand[0][PixelBuffer.red(rgb)]++;
+        histogramsBand[1][PixelBuffer.green(rgb)]++;
+        histogramsBand[2][PixelBuffer.blue(rgb)]++;
+      }
+      synchronized (histograms) {
+        for (int channel = 0; channel < 3; channel++) {
+          for (int b = 0; b < 256; b++) {
+            histograms[channel][b] += histogramsBand[channel][b];
+          }
+        }
+      }
+    });
+    return histograms;
+  }
+  
+  // keep the size fields in sync with the current image (after load, crop, rotate, etc.)
+  private void updateImageSize() {
+    imageHeight = pixelsExistingImage.getHeight();
+    imageWidth = pixelsExistingImage.getWidth();
+  }
   
-  // private helpers
   private boolean isFilenameValid(String filename) {
     File tempFile = new File(filename);
     try {
@@ -817,84 +1069,35 @@ public class ConcreteImageModel implements ImageModel {
     }
   }
   
-  private boolean isMosaicSeedValid(int seeds) {
-    return (seeds >= 0);
-  }
-  
-  // private helper to a sub-matrix in preparation to the blur operation
-  // it takes in row, col, and channel position of the matrix as center value
-  // crop around the existing matrix to fix the kernel matrix size
-  // and will return a sub-matrix that matches the kernel size
-  private int[][] buildPixelSubMatrixToKernel(int row, int col, int channel, int size) {
-    // NOTE: this only works for all sizes of matrix.
-    int[][] subPixelMatrix = new int[size][size];
-    
-    //r = 0; c = 0; want row - 1; col - 1
-    //r = 0; c = 1; want row - 1; col
-    //r = 0; c = 2; want row - 1; col + 1
-    
-    int[] calcCoeff = new int[size];
-    
-    for (int a = 0; a < size; a++) {
-      calcCoeff[a] = -1 * size / 2 + a;
-    }
-    
-    for (int r = 0; r < subPixelMatrix.length; r++) {
-      for (int c = 0; c < subPixelMatrix[r].length; c++) {
-        int pointerRow;
-        if (row + calcCoeff[r] < 0 || row + calcCoeff[r] >= pixelsExistingImage.length
-                || col + calcCoeff[c] < 0 || col + calcCoeff[c] >= pixelsExistingImage[r].length) {
-          subPixelMatrix[r][c] = 0;
-        } else {
-          subPixelMatrix[r][c] =
-                  pixelsExistingImage[row + calcCoeff[r]][col + calcCoeff[c]][channel];
-        }
+  // weight of each pixel for edge weighted mosaic seeds: the strength of the (smoothed)
+  // edge at the pixel, plus a floor so flat areas still get a few seeds
+  private int[] getEdgeWeights() {
+    int[] luminance = new int[imageHeight * imageWidth];
+    int[] weights = new int[imageHeight * imageWidth];
+    PixelBuffer image = pixelsExistingImage;
+    SeparableKernel kernel = SeparableKernel.gaussian(EDGE_BLUR_SIGMA);
+    
+    rowBands.forEachBand(imageHeight, (startRow, endRow) ->
+            edgeDetector.computeLuminanceRows(image, luminance, startRow, endRow));
+    rowBands.forEachBand(imageHeight, (startRow, endRow) -> {
+      edgeDetector.computeSmoothedGradientRows(luminance, kernel, weights, imageWidth,
+              imageHeight, startRow, endRow);
+      for (int index = startRow * imageWidth; index < endRow * imageWidth; index++) {
+        weights[index] = MOSAIC_EDGE_WEIGHT_FLOOR
+                + (int) Math.sqrt(SobelEdgeDetector.getSquaredMagnitude(weights[index]));
       }
-    }
-    
-    return subPixelMatrix;
+    });
+    return weights;
   }
   
-  // private helper to perform matrix convolution
-  // takes in a sub-matrix, multiply/add to the kernel (one-to-one spot)
-  // and will return a sum channel value to replace the existing one
-  private int matrixConvolution(double[][] filterMatrix, int[][] subMatrix) {
-    int sum = 0;
-    
-    for (int r = 0; r < filterMatrix.length; r++) {
-      for (int c = 0; c < filterMatrix[r].length; c++) {
-        sum += filterMatrix[r][c] * (double) subMatrix[r][c];
-      }
-    }
-    
-    return sum;
+  private boolean isMosaicSeedValid(int seeds) {
+    return (seeds > 0);
   }
   
-  // private helper to perform matrix multiplication
-  // will return a result of the operation
-  // tested
-  private int[] matrixMultiplication(double[][] filterMatrix, int[] subMatrix) {
-    // I'm going just to write it for a single column matrix multiplication
-    // since other matrix sizes are irrelevant to the scope of this homework
-    int[] finalResultSize = new int[]{filterMatrix.length, 1};
-    int[] matrixProduct = new int[3];
-    int matrix1 = 0;
-    double matrix2 = 0;
-    double product = 0;
-    
-    for (int i = 0; i < finalResultSize[0]; i++) {
-      
-      product = 0.0;
-      
-      for (int j = 0; j < finalResultSize[0]; j++) {
-        matrix1 = subMatrix[j];
-        matrix2 = filterMatrix[i][j];
-        product += (double) matrix1 * matrix2;
-      }
-      matrixProduct[i] = getColorValue((int) product);
-    }
-    
-    return matrixProduct;
+  // the image is about to change, so the last mosaic can no longer be refined. Its session
+  // (a copy of the image and the seed of every pixel) is let go
+  private void discardMosaic() {
+    lastMosaic = null;
   }
   
   // private helper to clamp the value between 0 - 255 (inclusive on each end)
@@ -931,72 +1134,29 @@ public class ConcreteImageModel implements ImageModel {
     // position to be re-assigned
     // let the original position be (r, c)
     // new locations: (r, c+1), (r+1)(c+1), (r+1, c), (r+1, c+1)
-    int test = (int) (7.0 / 16 * delta);
-    for (int i = 0; i < 3; i++) {
-      
-      if (col + 1 < imageWidth) {
-        pixelsExistingImage[row][col + 1][i]
-                = getColorValue(pixelsExistingImage[row][col + 1][i]
-                + (int) (7.0 / 16 * delta));
-      }
-      
-      if (row + 1 < imageHeight && col - 1 > 0) {
-        pixelsExistingImage[row + 1][col - 1][i]
-                = getColorValue(pixelsExistingImage[row + 1][col - 1][i]
-                + (int) (3.0 / 16 * delta));
-      }
-      
-      if (row + 1 < imageHeight) {
-        pixelsExistingImage[row + 1][col][i]
-                = getColorValue(pixelsExistingImage[row + 1][col][i]
-                + (int) (5.0 / 16 * delta));
-      }
-      
-      if (row + 1 < imageHeight && col + 1 < imageWidth) {
-        pixelsExistingImage[row + 1][col + 1][i]
-                = getColorValue(pixelsExistingImage[row + 1][col + 1][i]
-                + (int) (1.0 / 16 * delta));
-      }
+    if (col + 1 < imageWidth) {
+      ditherAddToPixel(row, col + 1, (int) (7.0 / 16 * delta));
     }
-  }
-  
-  private int[][] getRandomPixel(int seeds) {
-    // generate an array of ordered pixels, first dim for width, second dim for height
-    int[][] randomPixel = new int[imageWidth * imageHeight][2];
-    int[][] randomPixelOutput = new int[seeds][2];
-    int count = 0;
     
-    // populate pixels
-    for (int loopRow = 0; loopRow < imageHeight; loopRow++) {
-      for (int loopCol = 0; loopCol < imageWidth; loopCol++) {
-        randomPixel[count] = new int[]{loopRow, loopCol};
-        count++;
-      }
+    if (row + 1 < imageHeight && col - 1 > 0) {
+      ditherAddToPixel(row + 1, col - 1, (int) (3.0 / 16 * delta));
     }
     
-    // shuffle the array
-    shuffleArrayPrimitive(randomPixel);
-  
-    // assign random pixels but shuffle/reshuffling the array
-    for (int i = 0; i < seeds; i++) {
-      randomPixelOutput[i] = randomPixel[i];
+    if (row + 1 < imageHeight) {
+      ditherAddToPixel(row + 1, col, (int) (5.0 / 16 * delta));
     }
     
-    return randomPixelOutput;
+    if (row + 1 < imageHeight && col + 1 < imageWidth) {
+      ditherAddToPixel(row + 1, col + 1, (int) (1.0 / 16 * delta));
+    }
   }
   
-  private int[][] shuffleArrayPrimitive(int[][] toShuffle) {
-    
-    Random rand = ThreadLocalRandom.current();
-    
-    for (int i = toShuffle.length - 1; i > 0; i--) {
-      int randomNumber = rand.nextInt(i + 1);
-      int[] pixelAtRandom = toShuffle[randomNumber];
-      // swap location
-      toShuffle[randomNumber] = toShuffle[i];
-      toShuffle[i] = pixelAtRandom;
-    }
-    
-    return toShuffle;
+  // add the error to all three channels of a pixel, and clamp each channel
+  private void ditherAddToPixel(int row, int col, int error) {
+    int rgb = pixelsExistingImage.getRgb(row, col);
+    pixelsExistingImage.setRgb(row, col,
+            getColorValue(PixelBuffer.red(rgb) + error),
+            getColorValue(PixelBuffer.green(rgb) + error),
+            getColorValue(PixelBuffer.blue(rgb) + error));
   }
 }
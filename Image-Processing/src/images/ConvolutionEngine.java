@@ -0,0 +1,397 @@
+package images;
+
+import java.util.Arrays;
+
+/**
+ * Applies convolution kernels to a packed image buffer.
+ *
+ * <p>Neighbouring pixels are read straight from the source buffer, so no sub-matrix is
+ * built for each pixel. All three channels of a pixel are computed together from one
+ * read of each packed neighbour. Pixels outside of the image count as 0 (black), and each
+ * channel sum is truncated to an integer after every weight, both the same as before, so
+ * the output matches the original code to the last pixel.
+ *
+ * <p>Pixels far enough from the border use precomputed offsets into the buffer, and only
+ * the border pixels go through the bounds checks.
+ */
+public class ConvolutionEngine {
+
+  private static final int MIN_COLOR_VALUE = 0;
+  private static final int MAX_COLOR_VALUE = 255;
+
+  /**
+   * The largest box blur radius. The channel sums are ints, and stay well clear of
+   * overflowing up to this radius, even for a whole (2 radius + 1)^2 window of white
+   * pixels (255 each).
+   */
+  public static final int MAX_BOX_RADIUS = 1450;
+
+  /**
+   * Constructs a convolution engine.
+   */
+  public ConvolutionEngine() {
+    // nothing to set up for now
+  }
+
+  /**
+   * Convolves a band of rows, writing the result into the output image.
+   *
+   * @param source   image to be processed
+   * @param kernel   filter matrix
+   * @param output   image receiving the result, same size as the source
+   * @param startRow first row of the band (inclusive)
+   * @param endRow   last row of the band (exclusive)
+   */
+  public void applyRows(PixelBuffer source, ConvolutionKernel kernel, PixelBuffer output,
+                        int startRow, int endRow) {
+    if (kernel.getFixedWeights() != null) {
+      applyRowsFixedPoint(source, kernel, output, startRow, endRow);
+      return;
+    }
+    int width = source.getWidth();
+    int height = source.getHeight();
+    int radius = kernel.getRadius();
+    int[] src = source.getPixels();
+    int[] dst = output.getPixels();
+    double[] weights = kernel.getWeights();
+    int[] offsets = getOffsets(kernel, width);
+
+    for (int row = startRow; row < endRow; row++) {
+      boolean isInteriorRow = row >= radius && row < height - radius;
+
+      for (int col = 0; col < width; col++) {
+        int index = row * width + col;
+        // int sums: "+=" truncates the sum after every tap, as the original code did, so
+        // the output is the same to the last pixel
+        int sumRed = 0;
+        int sumGreen = 0;
+        int sumBlue = 0;
+
+        if (isInteriorRow && col >= radius && col < width - radius) {
+          // the whole kernel is inside of the image, no need to check for bounds
+          for (int k = 0; k < weights.length; k++) {
+            double weight = weights[k];
+            int rgb = src[index + offsets[k]];
+            sumRed += weight * ((rgb >> 16) & 0xFF);
+            sumGreen += weight * ((rgb >> 8) & 0xFF);
+            sumBlue += weight * (rgb & 0xFF);
+          }
+        } else {
+          int k = 0;
+          for (int r = row - radius; r <= row + radius; r++) {
+            for (int c = col - radius; c <= col + radius; c++, k++) {
+              if (r < 0 || r >= height || c < 0 || c >= width) {
+                continue;
+              }
+              double weight = weights[k];
+              int rgb = src[r * width + c];
+              sumRed += weight * ((rgb >> 16) & 0xFF);
+              sumGreen += weight * ((rgb >> 8) & 0xFF);
+              sumBlue += weight * (rgb & 0xFF);
+            }
+          }
+        }
+
+        dst[index] = PixelBuffer.pack(getColorValue(sumRed), getColorValue(sumGreen),
+                getColorValue(sumBlue));
+      }
+    }
+  }
+
+  // applyRows for kernels with fixed point weights (see ConvolutionKernel). Weights of
+  // k / 2^shift make every partial sum of the original code a whole multiple of 1 / 2^shift,
+  // exact in a double. So cutting the fraction off the sum after every tap, toward zero, in
+  // integers gives the same result without any conversion to and from doubles.
+  // Pixels outside of the image add 0, which leaves the sum as it is, so they are skipped
+  private void applyRowsFixedPoint(PixelBuffer source, ConvolutionKernel kernel,
+                                   PixelBuffer output, int startRow, int endRow) {
+    int width = source.getWidth();
+    int height = source.getHeight();
+    int radius = kernel.getRadius();
+    int[] src = source.getPixels();
+    int[] dst = output.getPixels();
+    int[] weights = kernel.getFixedWeights();
+    int shift = kernel.getFixedShift();
+    // added to negative sums before shifting, so the shift rounds toward zero
+    int mask = (1 << shift) - 1;
+    int[] offsets = getOffsets(kernel, width);
+
+    for (int row = startRow; row < endRow; row++) {
+      boolean isInteriorRow = row >= radius && row < height - radius;
+
+      for (int col = 0; col < width; col++) {
+        int index = row * width + col;
+        int sumRed = 0;
+        int sumGreen = 0;
+        int sumBlue = 0;
+
+        if (isInteriorRow && col >= radius && col < width - radius) {
+          // the whole kernel is inside of the image, no need to check for bounds
+          for (int k = 0; k < weights.length; k++) {
+            int weight = weights[k];
+            int rgb = src[index + offsets[k]];
+            sumRed = (sumRed << shift) + weight * ((rgb >> 16) & 0xFF);
+            sumRed = (sumRed + ((sumRed >> 31) & mask)) >> shift;
+            sumGreen = (sumGreen << shift) + weight * ((rgb >> 8) & 0xFF);
+            sumGreen = (sumGreen + ((sumGreen >> 31) & mask)) >> shift;
+            sumBlue = (sumBlue << shift) + weight * (rgb & 0xFF);
+            sumBlue = (sumBlue + ((sumBlue >> 31) & mask)) >> shift;
+          }
+        } else {
+          int k = 0;
+          for (int r = row - radius; r <= row + radius; r++) {
+            for (int c = col - radius; c <= col + radius; c++, k++) {
+              if (r < 0 || r >= height || c < 0 || c >= width) {
+                continue;
+              }
+              int weight = weights[k];
+              int rgb = src[r * width + c];
+              sumRed = (sumRed << shift) + weight * ((rgb >> 16) & 0xFF);
+              sumRed = (sumRed + ((sumRed >> 31) & mask)) >> shift;
+              sumGreen = (sumGreen << shift) + weight * ((rgb >> 8) & 0xFF);
+              sumGreen = (sumGreen + ((sumGreen >> 31) & mask)) >> shift;
+              sumBlue = (sumBlue << shift) + weight * (rgb & 0xFF);
+              sumBlue = (sumBlue + ((sumBlue >> 31) & mask)) >> shift;
+            }
+          }
+        }
+
+        dst[index] = PixelBuffer.pack(getColorValue(sumRed), getColorValue(sumGreen),
+                getColorValue(sumBlue));
+      }
+    }
+  }
+
+  /**
+   * Horizontal pass of a separable filter over a band of rows. Pixels outside of the
+   * image take the value of the closest pixel on the border, so the edges do not darken.
+   * Each channel of the result is rounded and clamped between 0 and 255.
+   *
+   * @param source   image to be processed
+   * @param kernel   one dimensional filter
+   * @param output   image receiving the result, same size as the source
+   * @param startRow first row of the band (inclusive)
+   * @param endRow   last row of the band (exclusive)
+   */
+  public void applyHorizontalRows(PixelBuffer source, SeparableKernel kernel, PixelBuffer output,
+                                  int startRow, int endRow) {
+    int width = source.getWidth();
+    int radius = kernel.getRadius();
+    int[] src = source.getPixels();
+    int[] dst = output.getPixels();
+    double[] weights = kernel.getWeights();
+
+    for (int row = startRow; row < endRow; row++) {
+      int rowStart = row * width;
+
+      for (int col = 0; col < width; col++) {
+        double sumRed = 0;
+        double sumGreen = 0;
+        double sumBlue = 0;
+        boolean isInterior = col >= radius && col < width - radius;
+
+        for (int k = 0; k < weights.length; k++) {
+          int c = col + k - radius;
+          if (!isInterior) {
+            c = Math.min(Math.max(c, 0), width - 1);
+          }
+          double weight = weights[k];
+          int rgb = src[rowStart + c];
+          sumRed += weight * ((rgb >> 16) & 0xFF);
+          sumGreen += weight * ((rgb >> 8) & 0xFF);
+          sumBlue += weight * (rgb & 0xFF);
+        }
+
+        dst[rowStart + col] = PixelBuffer.pack(getColorValue((int) (sumRed + 0.5)),
+                getColorValue((int) (sumGreen + 0.5)), getColorValue((int) (sumBlue + 0.5)));
+      }
+    }
+  }
+
+  /**
+   * Vertical pass of a separable filter over a band of rows. See applyHorizontalRows.
+   * The source rows are read one whole row at a time, so memory is read sequentially.
+   *
+   * @param source   image to be processed
+   * @param kernel   one dimensional filter
+   * @param output   image receiving the result, same size as the source
+   * @param startRow first row of the band (inclusive)
+   * @param endRow   last row of the band (exclusive)
+   */
+  public void applyVerticalRows(PixelBuffer source, SeparableKernel kernel, PixelBuffer output,
+                                int startRow, int endRow) {
+    int width = source.getWidth();
+    int height = source.getHeight();
+    int radius = kernel.getRadius();
+    int[] src = source.getPixels();
+    int[] dst = output.getPixels();
+    double[] weights = kernel.getWeights();
+    // running sums of the output row, 3 channels per pixel
+    double[] sums = new double[width * 3];
+
+    for (int row = startRow; row < endRow; row++) {
+      Arrays.fill(sums, 0);
+
+      for (int k = 0; k < weights.length; k++) {
+        int r = Math.min(Math.max(row + k - radius, 0), height - 1);
+        int rowStart = r * width;
+        double weight = weights[k];
+
+        for (int col = 0; col < width; col++) {
+          int rgb = src[rowStart + col];
+          sums[col * 3] += weight * ((rgb >> 16) & 0xFF);
+          sums[col * 3 + 1] += weight * ((rgb >> 8) & 0xFF);
+          sums[col * 3 + 2] += weight * (rgb & 0xFF);
+        }
+      }
+
+      int rowStart = row * width;
+      for (int col = 0; col < width; col++) {
+        dst[rowStart + col] = PixelBuffer.pack(getColorValue((int) (sums[col * 3] + 0.5)),
+                getColorValue((int) (sums[col * 3 + 1] + 0.5)),
+                getColorValue((int) (sums[col * 3 + 2] + 0.5)));
+      }
+    }
+  }
+
+  /**
+   * Horizontal pass of a box blur over a band of rows. A running sum of the window is
+   * kept along the row: the pixel entering the window is added and the pixel leaving it
+   * is subtracted, so the cost per pixel is the same for any radius. Pixels outside of the
+   * image take the value of the closest pixel on the border. They are added to the first
+   * window all at once, as many times as they repeat, so filling it costs no more than
+   * the row itself.
+   *
+   * @param source   image to be processed
+   * @param radius   the window covers radius pixels on each side, at most MAX_BOX_RADIUS
+   * @param output   image receiving the result, same size as the source
+   * @param startRow first row of the band (inclusive)
+   * @param endRow   last row of the band (exclusive)
+   */
+  public void applyHorizontalBoxRows(PixelBuffer source, int radius, PixelBuffer output,
+                                     int startRow, int endRow) {
+    int width = source.getWidth();
+    int size = 2 * radius + 1;
+    int[] src = source.getPixels();
+    int[] dst = output.getPixels();
+    int last = Math.min(radius, width - 1);
+
+    for (int row = startRow; row < endRow; row++) {
+      int rowStart = row * width;
+
+      // fill the window of the first pixel: the first pixel stands for the radius pixels
+      // left of the image, the last one for the pixels right of the image
+      int first = src[rowStart];
+      int sumRed = radius * ((first >> 16) & 0xFF);
+      int sumGreen = radius * ((first >> 8) & 0xFF);
+      int sumBlue = radius * (first & 0xFF);
+      for (int c = 0; c <= last; c++) {
+        int rgb = src[rowStart + c];
+        sumRed += (rgb >> 16) & 0xFF;
+        sumGreen += (rgb >> 8) & 0xFF;
+        sumBlue += rgb & 0xFF;
+      }
+      int rightRepeats = radius - last;
+      int rightmost = src[rowStart + width - 1];
+      sumRed += rightRepeats * ((rightmost >> 16) & 0xFF);
+      sumGreen += rightRepeats * ((rightmost >> 8) & 0xFF);
+      sumBlue += rightRepeats * (rightmost & 0xFF);
+
+      for (int col = 0; col < width; col++) {
+        dst[rowStart + col] = PixelBuffer.pack((sumRed + radius) / size,
+                (sumGreen + radius) / size, (sumBlue + radius) / size);
+
+        // slide the window one pixel to the right
+        int rgbIn = src[rowStart + Math.min(col + radius + 1, width - 1)];
+        int rgbOut = src[rowStart + Math.max(col - radius, 0)];
+        sumRed += ((rgbIn >> 16) & 0xFF) - ((rgbOut >> 16) & 0xFF);
+        sumGreen += ((rgbIn >> 8) & 0xFF) - ((rgbOut >> 8) & 0xFF);
+        sumBlue += (rgbIn & 0xFF) - (rgbOut & 0xFF);
+      }
+    }
+  }
+
+  /**
+   * Vertical pass of a box blur over a band of columns. See applyHorizontalBoxRows. The
+   * running sums of the columns of the band are kept in one array and slid down one row at
+   * a time, so the source is read row by row, and each column fills its window only once
+   * for the whole image.
+   *
+   * @param source   image to be processed
+   * @param radius   the window covers radius pixels on each side, at most MAX_BOX_RADIUS
+   * @param output   image receiving the result, same size as the source
+   * @param startCol first column of the band (inclusive)
+   * @param endCol   last column of the band (exclusive)
+   */
+  public void applyVerticalBoxColumns(PixelBuffer source, int radius, PixelBuffer output,
+                                      int startCol, int endCol) {
+    int width = source.getWidth();
+    int height = source.getHeight();
+    int size = 2 * radius + 1;
+    int[] src = source.getPixels();
+    int[] dst = output.getPixels();
+    // running sums of each column of the band, 3 channels per column
+    int[] sums = new int[(endCol - startCol) * 3];
+
+    // fill the window of the first row: the first row stands for the radius rows above the
+    // image, the last one for the rows below the image
+    int last = Math.min(radius, height - 1);
+    addRow(src, startCol, endCol - startCol, sums, radius);
+    for (int r = 0; r <= last; r++) {
+      addRow(src, r * width + startCol, endCol - startCol, sums, 1);
+    }
+    addRow(src, (height - 1) * width + startCol, endCol - startCol, sums, radius - last);
+
+    for (int row = 0; row < height; row++) {
+      int rowStart = row * width + startCol;
+      for (int col = 0; col < endCol - startCol; col++) {
+        dst[rowStart + col] = PixelBuffer.pack((sums[col * 3] + radius) / size,
+                (sums[col * 3 + 1] + radius) / size, (sums[col * 3 + 2] + radius) / size);
+      }
+
+      // slide the window one row down
+      addRow(src, Math.min(row + radius + 1, height - 1) * width + startCol,
+              endCol - startCol, sums, 1);
+      addRow(src, Math.max(row - radius, 0) * width + startCol, endCol - startCol, sums, -1);
+    }
+  }
+
+  // add the channels of a run of pixels to the column sums, weight times each (a negative
+  // weight subtracts them)
+  private void addRow(int[] src, int start, int count, int[] sums, int weight) {
+    if (weight == 0) {
+      return;
+    }
+    for (int col = 0; col < count; col++) {
+      int rgb = src[start + col];
+      sums[col * 3] += weight * ((rgb >> 16) & 0xFF);
+      sums[col * 3 + 1] += weight * ((rgb >> 8) & 0xFF);
+      sums[col * 3 + 2] += weight * (rgb & 0xFF);
+    }
+  }
+
+  // offsets of each kernel position from the center pixel, within a buffer of this width
+  private int[] getOffsets(ConvolutionKernel kernel, int width) {
+    int size = kernel.getSize();
+    int radius = kernel.getRadius();
+    int[] offsets = new int[size * size];
+
+    for (int r = 0; r < size; r++) {
+      for (int c = 0; c < size; c++) {
+        offsets[r * size + c] = (r - radius) * width + (c - radius);
+      }
+    }
+    return offsets;
+  }
+
+  // clamp the value between 0 - 255 (inclusive on each end)
+  private int getColorValue(int colorChannel) {
+    if (colorChannel < MIN_COLOR_VALUE) {
+      return MIN_COLOR_VALUE;
+    }
+    if (colorChannel > MAX_COLOR_VALUE) {
+      return MAX_COLOR_VALUE;
+    }
+    return colorChannel;
+  }
+}
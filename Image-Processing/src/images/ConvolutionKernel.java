@@ -0,0 +1,119 @@
+package images;
+
+/**
+ * A square convolution kernel (filter matrix) with an odd size, such as the 3x3 blur
+ * matrix or the 5x5 sharpen matrix. The center of the matrix lines up with the pixel
+ * being processed.
+ *
+ * <p>Weights are kept in one flat array, row by row, so the convolution engine can walk
+ * through them without any lookups into nested arrays. Weights that are all whole
+ * multiples of a power of two fraction (1/16, 1/8...), as in the blur and sharpen
+ * matrices, are also kept as integers over that fraction, for the fixed point path of the
+ * engine.
+ */
+public class ConvolutionKernel {
+
+  // the finest fraction tried for the fixed point weights: 1 / 2^MAX_FIXED_SHIFT
+  private static final int MAX_FIXED_SHIFT = 16;
+
+  private final int size;
+  private final double[] weights;
+  // weights times 2^fixedShift, or null when the weights are not such whole multiples
+  private final int[] fixedWeights;
+  private final int fixedShift;
+
+  /**
+   * Constructs a kernel from a square filter matrix.
+   *
+   * @param matrix square filter matrix with an odd size
+   * @throws IllegalArgumentException if the matrix is not square or the size is even
+   */
+  public ConvolutionKernel(double[][] matrix) throws IllegalArgumentException {
+    if (matrix == null || matrix.length % 2 == 0) {
+      throw new IllegalArgumentException("Kernel size must be an odd number.");
+    }
+    this.size = matrix.length;
+    this.weights = new double[size * size];
+
+    for (int r = 0; r < size; r++) {
+      if (matrix[r].length != size) {
+        throw new IllegalArgumentException("Kernel must be a square matrix.");
+      }
+      for (int c = 0; c < size; c++) {
+        weights[r * size + c] = matrix[r][c];
+      }
+    }
+
+    int shift = getFixedShift(weights);
+    this.fixedShift = shift;
+    this.fixedWeights = shift < 0 ? null : new int[weights.length];
+    for (int k = 0; shift >= 0 && k < weights.length; k++) {
+      fixedWeights[k] = (int) Math.scalb(weights[k], shift);
+    }
+  }
+
+  // the smallest shift turning every weight into an integer, -1 if there is none. The sums
+  // of the engine, up to 255 times the weights on both sides of the point, shall fit an int
+  private static int getFixedShift(double[] weights) {
+    for (int shift = 0; shift <= MAX_FIXED_SHIFT; shift++) {
+      long total = 0;
+      boolean isWhole = true;
+      for (double weight : weights) {
+        double scaled = Math.scalb(weight, shift);
+        if (scaled != Math.rint(scaled) || Math.abs(scaled) > Integer.MAX_VALUE) {
+          isWhole = false;
+          break;
+        }
+        total += (long) Math.abs(scaled);
+      }
+      if (isWhole) {
+        return total * 255 * 2 < Integer.MAX_VALUE ? shift : -1;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the number of rows (and columns) of the kernel.
+   *
+   * @return kernel size
+   */
+  public int getSize() {
+    return size;
+  }
+
+  /**
+   * Returns how far the kernel reaches from its center pixel. A 3x3 kernel has radius 1.
+   *
+   * @return kernel radius
+   */
+  public int getRadius() {
+    return size / 2;
+  }
+
+  /**
+   * Returns the weight at a position of the kernel.
+   *
+   * @param row row within the kernel
+   * @param col column within the kernel
+   * @return the weight
+   */
+  public double getWeight(int row, int col) {
+    return weights[row * size + col];
+  }
+
+  // package-private: the engine reads the flat weights directly
+  double[] getWeights() {
+    return weights;
+  }
+
+  // package-private: the weights times 2^getFixedShift(), null if they are not integers
+  int[] getFixedWeights() {
+    return fixedWeights;
+  }
+
+  // package-private: the power of two the fixed weights are scaled by, -1 if there are none
+  int getFixedShift() {
+    return fixedShift;
+  }
+}
@@ -6,7 +6,7 @@ package images;
  */
 public class FlagGenerators {
   
-  private int[][][] generatedImage;
+  private PixelBuffer generatedImage;
   
   /*
    * Flag geometries:
@@ -23,7 +23,7 @@ public class FlagGenerators {
    * @return pixels of norway flag
    * @throws IllegalArgumentException if the height is too small
    */
-  public int[][][] getNorwayFlag(int height) throws IllegalArgumentException {
+  public PixelBuffer getNorwayFlag(int height) throws IllegalArgumentException {
     
     // check input validity and process
     if (height < 16) {
@@ -37,23 +37,23 @@ public class FlagGenerators {
     int[][] horizontalStripeColor = new int[][]{{186, 12, 47}, {255, 255, 255}, {186, 12, 47}};
     int[][] verticalStripeColor = new int[][]{{255, 255, 255}, {0, 32, 91}, {255, 255, 255}};
     
-    generatedImage = new int[processedHeight][pixelPerPortion * 22][3];
+    generatedImage = new PixelBuffer(pixelPerPortion * 22, processedHeight);
     
     // paint the horizontal red-white-red stripe
     generateColorOnImage(horizontalStripeColor[0], 0,
-            generatedImage.length - 1, 0, generatedImage[0].length - 1);
+            generatedImage.getHeight() - 1, 0, generatedImage.getWidth() - 1);
     
     // paint white stripes
-    generateColorOnImage(verticalStripeColor[2], 0, generatedImage.length - 1,
+    generateColorOnImage(verticalStripeColor[2], 0, generatedImage.getHeight() - 1,
             6 * pixelPerPortion, 10 * pixelPerPortion - 1);
     generateColorOnImage(verticalStripeColor[2], 6 * pixelPerPortion,
-            10 * pixelPerPortion - 1, 0, generatedImage[0].length - 1);
+            10 * pixelPerPortion - 1, 0, generatedImage.getWidth() - 1);
     
     // paint the blue stripe
-    generateColorOnImage(verticalStripeColor[1], 0, generatedImage.length - 1,
+    generateColorOnImage(verticalStripeColor[1], 0, generatedImage.getHeight() - 1,
             7 * pixelPerPortion, 9 * pixelPerPortion - 1);
     generateColorOnImage(verticalStripeColor[1], 7 * pixelPerPortion,
-            9 * pixelPerPortion - 1, 0, generatedImage[0].length - 1);
+            9 * pixelPerPortion - 1, 0, generatedImage.getWidth() - 1);
     
     
     return generatedImage;
@@ -66,7 +66,7 @@ public class FlagGenerators {
    * @return pixel of flag
    * @throws IllegalArgumentException if the height is too small
    */
-  public int[][][] getGreeceFlag(int height) throws IllegalArgumentException {
+  public PixelBuffer getGreeceFlag(int height) throws IllegalArgumentException {
     // check input validity and process
     if (height < 18) {
       throw new IllegalArgumentException("Invalid flag size");
@@ -79,12 +79,12 @@ public class FlagGenerators {
     
     int[][] color = new int[][]{{33, 117, 216}, {255, 255, 255}};
     
-    generatedImage = new int[processedHeight][pixelPerPortion * 27][3];
+    generatedImage = new PixelBuffer(pixelPerPortion * 27, processedHeight);
     
     // print 9 stripes
     for (int a = 0; a < 9; a++) {
       generateColorOnImage(color[a % 2], 2 * a * pixelPerPortion,
-              2 * (a + 1) * pixelPerPortion - 1, 0, generatedImage[0].length - 1);
+              2 * (a + 1) * pixelPerPortion - 1, 0, generatedImage.getWidth() - 1);
     }
     
     // print the cross
@@ -106,7 +106,7 @@ public class FlagGenerators {
    * @return pixel of flag
    * @throws IllegalArgumentException if the height is too small
    */
-  public int[][][] getSwissFlag(int height) throws IllegalArgumentException {
+  public PixelBuffer getSwissFlag(int height) throws IllegalArgumentException {
     
     // check input validity and process
     if (height < 32) {
@@ -129,7 +129,7 @@ public class FlagGenerators {
     
     int[][] color = new int[][]{{255, 0, 0}, {255, 255, 255}};
     
-    generatedImage = new int[processedHeight][processedHeight][3];
+    generatedImage = new PixelBuffer(processedHeight, processedHeight);
     
     // genereate red background
     generateColorOnImage(color[0], 0, processedHeight - 1,
@@ -147,11 +147,7 @@ public class FlagGenerators {
   
   private void generateColorOnImage(int[] color,
                                     int startRow, int endRow, int startCol, int endCol) {
-    for (int row = startRow; row <= endRow; row++) {
-      for (int col = startCol; col <= endCol; col++) {
-        generatedImage[row][col] = color;
-      }
-    }
+    generatedImage.fill(PixelBuffer.pack(color), startRow, endRow, startCol, endCol);
     
   }
   
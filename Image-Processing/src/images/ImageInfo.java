@@ -0,0 +1,107 @@
+package images;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * What an image file holds, read from its header only (see ImageUtilities.probeImage):
+ * its format, size, colour type and orientation. Immutable.
+ *
+ * <p>The orientation is the EXIF one: 1 is upright, 2 to 8 are the other flips and
+ * rotations a camera may store instead of turning the pixels. Files without one are
+ * upright.
+ */
+public class ImageInfo {
+
+  // the EXIF orientation of an upright image, and the largest valid value
+  public static final int UPRIGHT = 1;
+  private static final int MAX_ORIENTATION = 8;
+
+  private final String format;
+  private final int width;
+  private final int height;
+  private final int imageType;
+  private final int channels;
+  private final boolean hasAlpha;
+  private final int orientation;
+
+  /**
+   * Constructs the description of an image file.
+   *
+   * @param format      name of the image format, such as "png" or "jpeg"
+   * @param width       width of the image
+   * @param height      height of the image
+   * @param imageType   the BufferedImage type the image decodes to, TYPE_CUSTOM if none
+   * @param channels    number of colour channels, alpha included
+   * @param hasAlpha    whether the image has an alpha channel
+   * @param orientation the EXIF orientation, from 1 to 8
+   * @throws IllegalArgumentException if the size, channels or orientation are not valid
+   */
+  public ImageInfo(String format, int width, int height, int imageType, int channels,
+                   boolean hasAlpha, int orientation) throws IllegalArgumentException {
+    if (width <= 0 || height <= 0 || channels <= 0) {
+      throw new IllegalArgumentException("Image size and channels shall be positive!");
+    }
+    if (orientation < UPRIGHT || orientation > MAX_ORIENTATION) {
+      throw new IllegalArgumentException("Orientation shall be between 1 and 8!");
+    }
+    this.format = format;
+    this.width = width;
+    this.height = height;
+    this.imageType = imageType;
+    this.channels = channels;
+    this.hasAlpha = hasAlpha;
+    this.orientation = orientation;
+  }
+
+  public String getFormat() {
+    return format;
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * Returns the BufferedImage type the image decodes to, such as TYPE_3BYTE_BGR for most
+   * photos, or TYPE_CUSTOM for layouts without a type of their own (16 bits, CMYK...).
+   *
+   * @return a BufferedImage.TYPE_* value
+   */
+  public int getImageType() {
+    return imageType;
+  }
+
+  public int getChannels() {
+    return channels;
+  }
+
+  public boolean hasAlpha() {
+    return hasAlpha;
+  }
+
+  public int getOrientation() {
+    return orientation;
+  }
+
+  /**
+   * Returns whether the image is turned a quarter (orientations 5 to 8), so its width and
+   * height swap once it is shown upright.
+   *
+   * @return true if width and height swap
+   */
+  public boolean isTransposed() {
+    return orientation > 4;
+  }
+
+  @Override
+  public String toString() {
+    return format + " " + width + "x" + height + ", " + channels + " channels"
+            + (hasAlpha ? " with alpha" : "")
+            + (imageType == BufferedImage.TYPE_CUSTOM ? ", custom type" : "")
+            + ", orientation " + orientation;
+  }
+}
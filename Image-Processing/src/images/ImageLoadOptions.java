@@ -0,0 +1,113 @@
+package images;
+
+import java.awt.Rectangle;
+
+/**
+ * How much of an image file to load: the whole image or one region of it, at full size or
+ * scaled down by keeping one pixel out of every few (subsampling). The rest of the image is
+ * skipped while decoding, so a small proxy of a huge image takes little memory. Immutable.
+ */
+public class ImageLoadOptions {
+
+  /**
+   * The whole image at full size.
+   */
+  public static final ImageLoadOptions FULL_IMAGE = new ImageLoadOptions(1);
+
+  private final int subsampling;
+  // null for the whole image
+  private final Rectangle region;
+
+  /**
+   * Constructs options loading the whole image, keeping one pixel out of every subsampling
+   * pixels in each direction (2 loads a 1/2 scale image, 4 a 1/4 scale, and so on).
+   *
+   * @param subsampling the scale down factor, 1 for full size
+   * @throws IllegalArgumentException if the subsampling is not positive
+   */
+  public ImageLoadOptions(int subsampling) throws IllegalArgumentException {
+    if (subsampling <= 0) {
+      throw new IllegalArgumentException("Subsampling shall be a positive integer!");
+    }
+    this.subsampling = subsampling;
+    this.region = null;
+  }
+
+  /**
+   * Constructs options loading one region of the image, scaled down by subsampling. Parts
+   * of the region outside of the image are left out.
+   *
+   * @param subsampling the scale down factor, 1 for full size
+   * @param topLeftXpt  x of the top left corner of the region, in pixels of the file
+   * @param topLeftYpt  y of the top left corner of the region, in pixels of the file
+   * @param width       width of the region, in pixels of the file
+   * @param height      height of the region, in pixels of the file
+   * @throws IllegalArgumentException if the subsampling or the size of the region is not
+   *                                  positive, or the corner is negative
+   */
+  public ImageLoadOptions(int subsampling, int topLeftXpt, int topLeftYpt, int width,
+                          int height) throws IllegalArgumentException {
+    if (subsampling <= 0) {
+      throw new IllegalArgumentException("Subsampling shall be a positive integer!");
+    }
+    if (topLeftXpt < 0 || topLeftYpt < 0 || width <= 0 || height <= 0) {
+      throw new IllegalArgumentException("Region shall start within the image, with a "
+              + "positive size!");
+    }
+    this.subsampling = subsampling;
+    this.region = new Rectangle(topLeftXpt, topLeftYpt, width, height);
+  }
+
+  /**
+   * Picks the options loading a whole image at the largest of full, 1/2, 1/4, 1/8... scale
+   * fitting in a size.
+   *
+   * @param info      the description of the image file (see ImageUtilities.probeImage)
+   * @param maxWidth  the largest width to load
+   * @param maxHeight the largest height to load
+   * @return options loading the whole image, scaled down to fit
+   * @throws IllegalArgumentException if the largest size is not positive
+   */
+  public static ImageLoadOptions fitting(ImageInfo info, int maxWidth, int maxHeight)
+          throws IllegalArgumentException {
+    if (maxWidth <= 0 || maxHeight <= 0) {
+      throw new IllegalArgumentException("Largest size shall be positive!");
+    }
+    int subsampling = 1;
+    // a subsampled side keeps ceil(side / subsampling) pixels
+    while ((info.getWidth() + subsampling - 1) / subsampling > maxWidth
+            || (info.getHeight() + subsampling - 1) / subsampling > maxHeight) {
+      subsampling *= 2;
+    }
+    return new ImageLoadOptions(subsampling);
+  }
+
+  public int getSubsampling() {
+    return subsampling;
+  }
+
+  /**
+   * Returns whether only a region of the image is loaded.
+   *
+   * @return true for a region, false for the whole image
+   */
+  public boolean hasRegion() {
+    return region != null;
+  }
+
+  /**
+   * Returns the region of the image to load, in pixels of the file.
+   *
+   * @return a copy of the region, null for the whole image
+   */
+  public Rectangle getRegion() {
+    return region == null ? null : new Rectangle(region);
+  }
+
+  @Override
+  public String toString() {
+    String area = region == null ? "whole image"
+            : "region " + region.x + "," + region.y + " " + region.width + "x" + region.height;
+    return area + ", subsampling " + subsampling;
+  }
+}
@@ -16,6 +16,18 @@ public interface ImageModel {
    */
   public void loadImage(String filename) throws IllegalArgumentException;
 
+  /**
+   * Load a region of an image, or a scaled down image, into the image model. Handy to
+   * preview huge images without decoding all of them.
+   *
+   * @param filename the name of the file containing the image.
+   * @param options  the region and subsampling to load
+   * @throws IllegalArgumentException if the filename is invalid, the region is outside of
+   *                                  the image, or if something goes wrong loading the image
+   */
+  public void loadImage(String filename, ImageLoadOptions options)
+          throws IllegalArgumentException;
+
   /**
    * Save the data in the image model to a file.
    * 
@@ -25,11 +37,32 @@ public interface ImageModel {
    */
   public void saveImage(String filename) throws IllegalArgumentException;
 
+  /**
+   * Save the data in the image model to a file, with a given JPEG quality or PNG
+   * compression level.
+   *
+   * @param filename the name of the file to save to
+   * @param options  the JPEG quality and PNG compression level to use
+   * @throws IllegalArgumentException if the filename is invalid or if something
+   *                                  goes wrong saving the file
+   */
+  public void saveImage(String filename, ImageSaveOptions options)
+          throws IllegalArgumentException;
+
   /**
    * Apply the blur filter to the data in the image model.
    */
   public void applyBlur();
 
+  /**
+   * Apply a gaussian blur of any strength to the data in the image model.
+   *
+   * @param sigma standard deviation of the gaussian in pixels. Larger values blur more.
+   * @throws IllegalArgumentException if sigma is not positive, or larger than
+   *                                  SeparableKernel.MAX_SIGMA
+   */
+  public void applyGaussianBlur(double sigma) throws IllegalArgumentException;
+
   /**
    * Apply the sharpen filter to the data in the image model.
    */
@@ -45,6 +78,15 @@ public interface ImageModel {
    */
   public void applySepia();
 
+  /**
+   * Mix the color channels of every pixel with a matrix, as in grayscale and sepia.
+   *
+   * @param matrix 3 rows of 3 weights, or of 3 weights and an offset (in 0 - 255 units)
+   * @throws IllegalArgumentException if the matrix is not 3x3 or 3x4, or the values are out
+   *                                  of range
+   */
+  public void applyColorMatrix(double[][] matrix) throws IllegalArgumentException;
+
   /**
    * Apply the dithering effect to the data in the image model.
    */
@@ -57,6 +99,40 @@ public interface ImageModel {
    * @throws IllegalArgumentException if the number of seeds is not positive
    */
   public void applyMosaic(int seeds) throws IllegalArgumentException;
+
+  /**
+   * Apply the mosaic effect to the data in the image model, with the seeds placed from a
+   * given random seed, so the same mosaic can be made again.
+   *
+   * @param seeds      the number of seeds to use in the mosaic
+   * @param randomSeed seed of the random generator placing the seeds
+   * @throws IllegalArgumentException if the number of seeds is not positive
+   */
+  public void applyMosaic(int seeds, long randomSeed) throws IllegalArgumentException;
+
+  /**
+   * Apply the mosaic effect to the data in the image model, with the seeds spread in a
+   * given way, placed from a given random seed.
+   *
+   * @param seeds        the number of seeds to use in the mosaic
+   * @param distribution how the seeds are spread over the image
+   * @param randomSeed   seed of the random generator placing the seeds
+   * @throws IllegalArgumentException if the number of seeds is not positive
+   */
+  public void applyMosaic(int seeds, SeedDistribution distribution, long randomSeed)
+          throws IllegalArgumentException;
+
+  /**
+   * Add seeds to the last mosaic and draw it again, without starting over: only the pixels
+   * around the new seeds are looked at. The new seeds are placed uniformly from a given
+   * random seed.
+   *
+   * @param moreSeeds  the number of seeds to add
+   * @param randomSeed seed of the random generator placing the new seeds
+   * @throws IllegalArgumentException if the number of seeds is not positive, or the image
+   *                                  is not the last mosaic any more
+   */
+  public void refineMosaic(int moreSeeds, long randomSeed) throws IllegalArgumentException;
   
   /**
    * Apply edge detection through sobel operator. (Part of homework 10)
@@ -64,6 +140,17 @@ public interface ImageModel {
    */
   public void applyEdgeDetection(boolean applyBlur);
   
+  /**
+   * Apply canny edge detection: thin, connected edges in white on black.
+   *
+   * @param lowThreshold  edge intensity (0 - 255) a weak edge shall reach
+   * @param highThreshold edge intensity (0 - 255) a strong edge shall reach
+   * @throws IllegalArgumentException if the thresholds are not within 0 - 255 or the low
+   *                                  threshold is above the high one
+   */
+  public void applyCannyEdgeDetection(int lowThreshold, int highThreshold)
+          throws IllegalArgumentException;
+  
   /**
    * Rotates image counterclockwise 90 degree.
    */
@@ -33,6 +33,19 @@ public class ImageModelMock implements ImageModel {
     log.append("[Model] load image from: " + filename + System.lineSeparator());
   }
   
+  /**
+   * Load part of an image into the image model.
+   *
+   * @param filename the name of the file containing the image.
+   * @param options  the region and subsampling to load
+   */
+  @Override
+  public void loadImage(String filename, ImageLoadOptions options)
+          throws IllegalArgumentException {
+    loadImage(filename);
+    log.append("[Model] load options: " + options + System.lineSeparator());
+  }
+  
   /**
    * Save the data in the image model to a file.
    *
@@ -49,6 +62,20 @@ public class ImageModelMock implements ImageModel {
     }
   }
   
+  /**
+   * Save the data in the image model to a file, with a given JPEG quality or PNG
+   * compression level.
+   *
+   * @param filename the name of the file to save to
+   * @param options  the JPEG quality and PNG compression level to use
+   */
+  @Override
+  public void saveImage(String filename, ImageSaveOptions options)
+          throws IllegalArgumentException {
+    saveImage(filename);
+    log.append("[Model] save options: " + options + System.lineSeparator());
+  }
+  
   /**
    * Apply the blur filter to the data in the image model.
    */
@@ -57,6 +84,22 @@ public class ImageModelMock implements ImageModel {
     log.append("[Model] apply blur" + System.lineSeparator());
   }
   
+  /**
+   * Apply a gaussian blur of any strength to the data in the image model.
+   *
+   * @param sigma standard deviation of the gaussian in pixels. Larger values blur more.
+   * @throws IllegalArgumentException if sigma is not positive, or larger than
+   *                                  SeparableKernel.MAX_SIGMA
+   */
+  @Override
+  public void applyGaussianBlur(double sigma) throws IllegalArgumentException {
+    if (sigma > 0 && sigma <= SeparableKernel.MAX_SIGMA) {
+      log.append("[Model] apply gaussian blur with sigma: " + sigma + System.lineSeparator());
+    } else {
+      throw new IllegalArgumentException("Sigma shall be a positive number!");
+    }
+  }
+  
   /**
    * Apply the sharpen filter to the data in the image model.
    */
@@ -81,6 +124,20 @@ public class ImageModelMock implements ImageModel {
     log.append("[Model] apply sepia" + System.lineSeparator());
   }
   
+  /**
+   * Mix the color channels of every pixel with a matrix, as in grayscale and sepia.
+   *
+   * @param matrix 3 rows of 3 weights, or of 3 weights and an offset (in 0 - 255 units)
+   * @throws IllegalArgumentException if the matrix is not 3x3 or 3x4, or the values are out
+   *                                  of range
+   */
+  @Override
+  public void applyColorMatrix(double[][] matrix) throws IllegalArgumentException {
+    // same checks as the real model
+    new ColorMatrix(matrix);
+    log.append("[Model] apply color matrix" + System.lineSeparator());
+  }
+  
   /**
    * Apply the dithering effect to the data in the image model.
    */
@@ -105,6 +162,47 @@ public class ImageModelMock implements ImageModel {
     }
   }
   
+  /**
+   * Apply the mosaic effect to the data in the image model, from a given random seed.
+   *
+   * @param seeds      the number of seeds to use in the mosaic
+   * @param randomSeed seed of the random generator placing the seeds
+   * @throws IllegalArgumentException if the number of seeds is not positive
+   */
+  @Override
+  public void applyMosaic(int seeds, long randomSeed) throws IllegalArgumentException {
+    applyMosaic(seeds);
+    log.append("[Model] random seed: " + randomSeed + System.lineSeparator());
+  }
+  
+  /**
+   * Apply the mosaic effect to the data in the image model, with seeds spread in a given way.
+   *
+   * @param seeds        the number of seeds to use in the mosaic
+   * @param distribution how the seeds are spread over the image
+   * @param randomSeed   seed of the random generator placing the seeds
+   * @throws IllegalArgumentException if the number of seeds is not positive
+   */
+  @Override
+  public void applyMosaic(int seeds, SeedDistribution distribution, long randomSeed)
+          throws IllegalArgumentException {
+    applyMosaic(seeds, randomSeed);
+    log.append("[Model] seed distribution: " + distribution + System.lineSeparator());
+  }
+  
+  /**
+   * Add seeds to the last mosaic and draw it again.
+   *
+   * @param moreSeeds  the number of seeds to add
+   * @param randomSeed seed of the random generator placing the new seeds
+   * @throws IllegalArgumentException if the number of seeds is not positive
+   */
+  @Override
+  public void refineMosaic(int moreSeeds, long randomSeed) throws IllegalArgumentException {
+    log.append("[Model] refine mosaic with more seeds: " + moreSeeds + ", random seed: "
+            + randomSeed + System.lineSeparator());
+  }
+  
   /**
    * Apply edge detection through sobel operator. (Part of homework 10)
    *
@@ -118,6 +216,25 @@ public class ImageModelMock implements ImageModel {
     } else {
       log.append("[Model] Apply edge detection." + System.lineSeparator());
     }
+  }
+  
+  /**
+   * Apply canny edge detection: thin, connected edges in white on black.
+   *
+   * @param lowThreshold  edge intensity (0 - 255) a weak edge shall reach
+   * @param highThreshold edge intensity (0 - 255) a strong edge shall reach
+   * @throws IllegalArgumentException if the thresholds are not within 0 - 255 or the low
+   *                                  threshold is above the high one
+   */
+  @Override
+  public void applyCannyEdgeDetection(int lowThreshold, int highThreshold)
+          throws IllegalArgumentException {
+    if (lowThreshold < 0 || highThreshold > 255 || lowThreshold > highThreshold) {
+      throw new IllegalArgumentException(
+              "Thresholds shall be between 0 and 255, with the low one not above the high one!");
+    }
+    log.append("[Model] Apply canny edge detection with thresholds: " + lowThreshold + ", "
+            + highThreshold + System.lineSeparator());
     
   }
   
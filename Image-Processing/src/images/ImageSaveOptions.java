@@ -0,0 +1,57 @@
+package images;
+
+/**
+ * How hard to compress an image file when saving it: the quality of JPEG files, and the
+ * compression level of PNG files. Lower JPEG quality gives smaller files with more
+ * artifacts; higher PNG levels give smaller files (PNG stays lossless) but take longer to
+ * write. Immutable.
+ */
+public class ImageSaveOptions {
+
+  // the defaults of the JPEG and PNG writers of the JDK
+  public static final float DEFAULT_JPEG_QUALITY = 0.75f;
+  public static final int DEFAULT_PNG_COMPRESSION = 4;
+  public static final int MAX_PNG_COMPRESSION = 9;
+
+  /**
+   * The default quality and compression level.
+   */
+  public static final ImageSaveOptions DEFAULT
+          = new ImageSaveOptions(DEFAULT_JPEG_QUALITY, DEFAULT_PNG_COMPRESSION);
+
+  private final float jpegQuality;
+  private final int pngCompression;
+
+  /**
+   * Constructs options for saving images.
+   *
+   * @param jpegQuality    quality of JPEG files, from 0 (smallest) to 1 (best)
+   * @param pngCompression compression level of PNG files, from 0 (fastest, largest) to 9
+   *                       (slowest, smallest)
+   * @throws IllegalArgumentException if the quality or the level is out of range
+   */
+  public ImageSaveOptions(float jpegQuality, int pngCompression)
+          throws IllegalArgumentException {
+    if (!(jpegQuality >= 0 && jpegQuality <= 1)) {
+      throw new IllegalArgumentException("JPEG quality shall be between 0 and 1!");
+    }
+    if (pngCompression < 0 || pngCompression > MAX_PNG_COMPRESSION) {
+      throw new IllegalArgumentException("PNG compression shall be between 0 and 9!");
+    }
+    this.jpegQuality = jpegQuality;
+    this.pngCompression = pngCompression;
+  }
+
+  public float getJpegQuality() {
+    return jpegQuality;
+  }
+
+  public int getPngCompression() {
+    return pngCompression;
+  }
+
+  @Override
+  public String toString() {
+    return "JPEG quality " + jpegQuality + ", PNG compression " + pngCompression;
+  }
+}
@@ -1,11 +1,29 @@
 package images;
 
-import java.awt.Color;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import org.w3c.dom.Node;
 
 /**
  * Image utility class that has methods to read an image from file and write to
@@ -13,6 +31,11 @@ import javax.imageio.ImageIO;
  */
 public class ImageUtilities {
 
+  private static final String JPEG_METADATA_FORMAT = "javax_imageio_jpeg_image_1.0";
+  // the JPEG marker holding EXIF (APP1), and the EXIF tag of the orientation
+  private static final int EXIF_MARKER = 0xE1;
+  private static final int EXIF_ORIENTATION_TAG = 0x0112;
+
   /**
    * Read an image from a file and convert it to a 3D array of integer values. The
    * first dimension (rows) represents the height, the second dimension (columns)
@@ -32,17 +55,21 @@ public class ImageUtilities {
     }
     int[][][] result = null;
     try {
-      BufferedImage input = ImageIO.read(new FileInputStream(filename));
+      BufferedImage input = ImageIO.read(new File(filename));
+      if (input == null) {
+        throw new IllegalArgumentException("Something went wrong reading the image file.");
+      }
 
-      result = new int[input.getHeight()][input.getWidth()][3];
+      int width = input.getWidth();
+      int[] pixels = decodePixels(input);
+      result = new int[input.getHeight()][width][3];
 
       for (int i = 0; i < input.getHeight(); i++) {
-        for (int j = 0; j < input.getWidth(); j++) {
-          int color = input.getRGB(j, i);
-          Color c = new Color(color);
-          result[i][j][0] = c.getRed();
-          result[i][j][1] = c.getGreen();
-          result[i][j][2] = c.getBlue();
+        for (int j = 0; j < width; j++) {
+          int color = pixels[i * width + j];
+          result[i][j][0] = PixelBuffer.red(color);
+          result[i][j][1] = PixelBuffer.green(color);
+          result[i][j][2] = PixelBuffer.blue(color);
         }
       }
     } catch (IOException ex) {
@@ -52,47 +79,281 @@ public class ImageUtilities {
   }
 
   /**
-   * Return the width of an image in a file.
+   * Read an image from a file into a packed image buffer. See PixelBuffer for the layout.
+   *
+   * @param filename the name of the file to be read
+   * @return the image as a packed buffer
+   * @throws IllegalArgumentException if the filename provided does not contain an
+   *                                  image.
+   */
+  public static PixelBuffer readImageBuffer(String filename) throws IllegalArgumentException {
+    return readImageBuffer(filename, ImageLoadOptions.FULL_IMAGE);
+  }
+
+  /**
+   * Read a region of an image, or a scaled down image, from a file into a packed image
+   * buffer. Pixels left out are skipped by the decoder, and never stored.
+   *
+   * @param filename the name of the file to be read
+   * @param options  the region and subsampling to load
+   * @return the loaded part of the image as a packed buffer
+   * @throws IllegalArgumentException if the filename provided does not contain an
+   *                                  image, or the region is outside of the image.
+   */
+  public static PixelBuffer readImageBuffer(String filename, ImageLoadOptions options)
+          throws IllegalArgumentException {
+    if (filename == null || "".equals(filename)) {
+      throw new IllegalArgumentException("Invalid filename provided for reading the image file.");
+    }
+    return withReader(filename, true, reader -> {
+      ImageReadParam param = reader.getDefaultReadParam();
+      if (options.hasRegion()) {
+        Rectangle region = options.getRegion().intersection(
+                new Rectangle(reader.getWidth(0), reader.getHeight(0)));
+        if (region.isEmpty()) {
+          throw new IllegalArgumentException("Region shall overlap the image!");
+        }
+        param.setSourceRegion(region);
+      }
+      int subsampling = options.getSubsampling();
+      if (subsampling > 1) {
+        param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+      }
+      BufferedImage input = reader.read(0, param);
+      return new PixelBuffer(input.getWidth(), input.getHeight(), decodePixels(input));
+    });
+  }
+
+  /**
+   * Get the pixels of a decoded image, packed as 0xRRGGBB (alpha dropped), row by row.
+   *
+   * <p>The usual layouts of decoded images (ints in RGB, ARGB or BGR order, and bytes in
+   * BGR or ABGR order, all sRGB) are read straight from the data buffer of the image. Any
+   * other layout or colour model goes through the colour model of the image, a row at a
+   * time.
+   *
+   * @param image a decoded image
+   * @return one packed pixel per pixel of the image
+   */
+  public static int[] decodePixels(BufferedImage image) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int[] pixels = new int[width * height];
+    WritableRaster raster = image.getRaster();
+    DataBuffer dataBuffer = raster.getDataBuffer();
+    // where pixel (0, 0) is in the data buffer (not at 0 for sub-images)
+    int translateX = -raster.getSampleModelTranslateX();
+    int translateY = -raster.getSampleModelTranslateY();
+    boolean isSrgb = image.getColorModel().getColorSpace().isCS_sRGB();
+
+    switch (isSrgb ? image.getType() : BufferedImage.TYPE_CUSTOM) {
+      case BufferedImage.TYPE_INT_RGB:
+      case BufferedImage.TYPE_INT_ARGB:
+      case BufferedImage.TYPE_INT_BGR: {
+        int[] data = ((DataBufferInt) dataBuffer).getData();
+        int stride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+        boolean isBgr = image.getType() == BufferedImage.TYPE_INT_BGR;
+        for (int row = 0; row < height; row++) {
+          int source = dataBuffer.getOffset() + (row + translateY) * stride + translateX;
+          int target = row * width;
+          if (!isBgr) {
+            for (int col = 0; col < width; col++) {
+              pixels[target + col] = data[source + col] & 0xFFFFFF;
+            }
+          } else {
+            for (int col = 0; col < width; col++) {
+              int bgr = data[source + col];
+              pixels[target + col] = (bgr & 0xFF) << 16 | (bgr & 0xFF00) | (bgr >> 16 & 0xFF);
+            }
+          }
+        }
+        break;
+      }
+      case BufferedImage.TYPE_3BYTE_BGR:
+      case BufferedImage.TYPE_4BYTE_ABGR: {
+        byte[] data = ((DataBufferByte) dataBuffer).getData();
+        ComponentSampleModel sampleModel = (ComponentSampleModel) raster.getSampleModel();
+        int stride = sampleModel.getScanlineStride();
+        int pixelStride = sampleModel.getPixelStride();
+        // bands are in red, green, blue (then alpha) order
+        int[] bandOffsets = sampleModel.getBandOffsets();
+        int redOffset = bandOffsets[0];
+        int greenOffset = bandOffsets[1];
+        int blueOffset = bandOffsets[2];
+        for (int row = 0; row < height; row++) {
+          int source = dataBuffer.getOffset() + (row + translateY) * stride
+                  + translateX * pixelStride;
+          int target = row * width;
+          for (int col = 0; col < width; col++, source += pixelStride) {
+            pixels[target + col] = PixelBuffer.pack(data[source + redOffset] & 0xFF,
+                    data[source + greenOffset] & 0xFF, data[source + blueOffset] & 0xFF);
+          }
+        }
+        break;
+      }
+      default:
+        // anything else (grey, indexed, 16 bits, other colour spaces...) through the colour
+        // model, converted a row at a time
+        for (int row = 0; row < height; row++) {
+          image.getRGB(0, row, width, 1, pixels, row * width, width);
+        }
+        for (int index = 0; index < pixels.length; index++) {
+          pixels[index] &= 0xFFFFFF;
+        }
+        break;
+    }
+    return pixels;
+  }
+
+  /**
+   * Reads what an image file holds (format, size, colour type and EXIF orientation) from
+   * its header, without decoding the pixels.
+   *
+   * @param filename the name of the file containing the image.
+   * @return the description of the image
+   * @throws IllegalArgumentException if the filename provided does not contain an image.
+   */
+  public static ImageInfo probeImage(String filename) throws IllegalArgumentException {
+    if (filename == null || "".equals(filename)) {
+      throw new IllegalArgumentException("Invalid filename provided for reading the image file.");
+    }
+    return withReader(filename, false, reader -> {
+      // the first type is the one the image decodes to
+      ImageTypeSpecifier type = reader.getImageTypes(0).next();
+      ColorModel colorModel = type.getColorModel();
+      String format = reader.getFormatName().toLowerCase();
+      // only JPEG keeps EXIF where the readers of the JDK can find it
+      int orientation = "jpeg".equals(format) ? readOrientation(reader) : ImageInfo.UPRIGHT;
+      return new ImageInfo(format, reader.getWidth(0), reader.getHeight(0),
+              type.getBufferedImageType(), colorModel.getNumComponents(),
+              colorModel.hasAlpha(), orientation);
+    });
+  }
+
+  // opens a reader for the first image of a file, runs the task on it and closes the file
+  private static <T> T withReader(String filename, boolean ignoreMetadata, ReaderTask<T> task)
+          throws IllegalArgumentException {
+    File file = new File(filename);
+    if (!file.isFile()) {
+      throw new IllegalArgumentException("Something went wrong reading the image file.");
+    }
+    try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+      Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+      if (readers == null || !readers.hasNext()) {
+        throw new IllegalArgumentException("Something went wrong reading the image file.");
+      }
+      ImageReader reader = readers.next();
+      try {
+        reader.setInput(input, true, ignoreMetadata);
+        return task.run(reader);
+      } finally {
+        reader.dispose();
+      }
+    } catch (IOException ex) {
+      throw new IllegalArgumentException("Something went wrong reading the image file.");
+    }
+  }
+
+  // something to do with the reader of an image file
+  private interface ReaderTask<T> {
+    T run(ImageReader reader) throws IOException;
+  }
+
+  /**
+   * Return the width of an image in a file. Only the header of the file is read.
    * 
    * @param filename the name of the file containing the image.
    * @return the width of the image in the file
-   * @throws if the filename provided does not contain an image.
+   * @throws IllegalArgumentException if the filename provided does not contain an image.
    */
   public static int getWidth(String filename) {
     if (filename == null || "".equals(filename)) {
       throw new IllegalArgumentException("Invalid filename provided for getting the width of file");
     }
-    int width = 0;
-    try {
-      BufferedImage input = ImageIO.read(new FileInputStream(filename));
-      width = input.getWidth();
-    } catch (IOException ex) {
-      throw new IllegalArgumentException(
-          "Something went wrong getting the width from the image file");
-    }
-    return width;
+    return probeImage(filename).getWidth();
   }
 
   /**
-   * Return the height of an image in a file.
+   * Return the height of an image in a file. Only the header of the file is read.
    * 
    * @param filename the name of the file containing the image.
    * @return the height of the image in the file
-   * @throws if the filename provided does not contain an image.
+   * @throws IllegalArgumentException if the filename provided does not contain an image.
    */
   public static int getHeight(String filename) throws IOException {
     if (filename == null || "".equals(filename)) {
       throw new IllegalArgumentException("Invalid filename provided for getting the width of file");
     }
-    int height = 0;
+    return probeImage(filename).getHeight();
+  }
+
+  // finds the orientation tag in the EXIF block (APP1 marker) of JPEG metadata. EXIF is a
+  // small TIFF file: a byte order, the offset of the first directory, then 12 byte entries
+  private static int readOrientation(ImageReader reader) {
+    Node root;
     try {
-      BufferedImage input = ImageIO.read(new FileInputStream(filename));
-      height = input.getHeight();
-    } catch (IOException ex) {
-      throw new IllegalArgumentException(
-          "Something went wrong getting the height from the image file");
+      root = reader.getImageMetadata(0).getAsTree(JPEG_METADATA_FORMAT);
+    } catch (IOException | IllegalArgumentException ex) {
+      // markers the reader does not understand: the pixels may still be fine
+      return ImageInfo.UPRIGHT;
     }
-    return height;
+    for (Node sequence = root.getFirstChild(); sequence != null;
+         sequence = sequence.getNextSibling()) {
+      if (!"markerSequence".equals(sequence.getNodeName())) {
+        continue;
+      }
+      for (Node marker = sequence.getFirstChild(); marker != null;
+           marker = marker.getNextSibling()) {
+        Node tag = marker.getAttributes().getNamedItem("MarkerTag");
+        if (!"unknown".equals(marker.getNodeName()) || tag == null
+                || !String.valueOf(EXIF_MARKER).equals(tag.getNodeValue())) {
+          continue;
+        }
+        byte[] data = (byte[]) ((IIOMetadataNode) marker).getUserObject();
+        int orientation = findOrientation(data);
+        if (orientation > 0) {
+          return orientation;
+        }
+      }
+    }
+    return ImageInfo.UPRIGHT;
+  }
+
+  // the orientation stored in an EXIF block, 0 if there is none
+  private static int findOrientation(byte[] data) {
+    // "Exif", two zeros, then the TIFF header
+    int tiff = 6;
+    if (data == null || data.length < tiff + 8 || data[0] != 'E' || data[1] != 'x'
+            || data[2] != 'i' || data[3] != 'f') {
+      return 0;
+    }
+    boolean isLittleEndian = data[tiff] == 'I';
+    int directory = tiff + readExifInt(data, tiff + 4, 4, isLittleEndian);
+    if (directory < tiff || directory + 2 > data.length) {
+      return 0;
+    }
+    int entries = readExifInt(data, directory, 2, isLittleEndian);
+    for (int entry = 0; entry < entries; entry++) {
+      int offset = directory + 2 + entry * 12;
+      if (offset + 12 > data.length) {
+        return 0;
+      }
+      if (readExifInt(data, offset, 2, isLittleEndian) == EXIF_ORIENTATION_TAG) {
+        // a short, in the first two bytes of the value
+        int orientation = readExifInt(data, offset + 8, 2, isLittleEndian);
+        return orientation >= 1 && orientation <= 8 ? orientation : 0;
+      }
+    }
+    return 0;
+  }
+
+  private static int readExifInt(byte[] data, int offset, int bytes, boolean isLittleEndian) {
+    int value = 0;
+    for (int i = 0; i < bytes; i++) {
+      int next = data[offset + (isLittleEndian ? bytes - 1 - i : i)] & 0xFF;
+      value = value << 8 | next;
+    }
+    return value;
   }
 
   /**
@@ -118,29 +379,73 @@ public class ImageUtilities {
     if (filename == null || "".equals(filename)) {
       throw new IllegalArgumentException("Invalid filename provided");
     }
-    try {
-      int height = rgbData.length;
-      int width = rgbData[0].length;
-  
-      BufferedImage output = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-  
-      for (int i = 0; i < height; i++) {
-        for (int j = 0; j < width; j++) {
-          int r = rgbData[i][j][0];
-          int g = rgbData[i][j][1];
-          int b = rgbData[i][j][2];
-  
-          // color is stored in 1 integer, with the 4 bytes storing ARGB in that
-          // order. Each of r,g,b are stored in 8 bits (hence between 0 and 255).
-          // So we put them all in one integer by using bit-shifting << as below
-          int color = (r << 16) + (g << 8) + b;
-          output.setRGB(j, i, color);
-        }
+    writeImage(PixelBuffer.fromArray(rgbData), filename);
+  }
+
+  /**
+   * Writing a packed image buffer to a file. See PixelBuffer for the layout.
+   *
+   * @param image the packed image buffer
+   * @param filename the name of the file to write the image to
+   * @throws IllegalArgumentException if the image or filename provided was invalid
+   * @throws IllegalArgumentException if something went wrong when writing go the filename
+   */
+  public static void writeImage(PixelBuffer image, String filename)
+      throws IllegalArgumentException {
+    writeImage(image, filename, ImageSaveOptions.DEFAULT);
+  }
+
+  /**
+   * Writing a packed image buffer to a file, with a given JPEG quality or PNG compression.
+   * The format comes from the extension of the filename (after the last dot). The pixels
+   * are encoded straight from the buffer, without copying them.
+   *
+   * @param image the packed image buffer
+   * @param filename the name of the file to write the image to
+   * @param options the JPEG quality and PNG compression level to use
+   * @throws IllegalArgumentException if the image or filename provided was invalid, or
+   *                                  there is no writer for the extension
+   * @throws IllegalArgumentException if something went wrong when writing go the filename
+   */
+  public static void writeImage(PixelBuffer image, String filename, ImageSaveOptions options)
+      throws IllegalArgumentException {
+    if (image == null) {
+      throw new IllegalArgumentException("Invalid image data provided");
+    }
+    if (filename == null || "".equals(filename)) {
+      throw new IllegalArgumentException("Invalid filename provided");
+    }
+    String extension = filename.substring(filename.lastIndexOf('.') + 1).toLowerCase();
+    Iterator<ImageWriter> writers = ImageIO.getImageWritersBySuffix(extension);
+    if (!writers.hasNext()) {
+      throw new IllegalArgumentException("No image writer for the file extension: " + extension);
+    }
+    ImageWriter writer = writers.next();
+
+    ImageWriteParam param = writer.getDefaultWriteParam();
+    if (param.canWriteCompressed()) {
+      if ("jpg".equals(extension) || "jpeg".equals(extension)) {
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(options.getJpegQuality());
+      } else if ("png".equals(extension)) {
+        // the PNG writer turns the quality into a deflate level: (int) (9 * (1 - quality)).
+        // Half a level up keeps float rounding from landing on the level below
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(Math.max(0, 1 - (options.getPngCompression() + 0.5f)
+                / ImageSaveOptions.MAX_PNG_COMPRESSION));
       }
-      String extension = filename.substring(filename.indexOf(".") + 1);
-      ImageIO.write(output, extension, new FileOutputStream(filename));
+    }
+
+    // the encoded image is streamed to the file through a buffer, and the writer can still
+    // seek back into it (to fill in chunk lengths). An existing file is emptied first, so no
+    // tail of a longer old file is left behind
+    try (ImageOutputStream output = new BufferedFileImageOutputStream(Paths.get(filename))) {
+      writer.setOutput(output);
+      writer.write(null, new IIOImage(image.toBufferedImage(), null, null), param);
     } catch (IOException ex) {
       throw new IllegalArgumentException("Error occurred writing the data to the file");
+    } finally {
+      writer.dispose();
     }
   }
 }
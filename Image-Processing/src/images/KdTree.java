@@ -1,342 +1,635 @@
 package images;
 
 import java.util.Arrays;
-import java.util.Comparator;
 
 /**
  * This is my interpretation of the K-D tree. This is specifically for a 2 dimensional tree.
  *
  * Within this 2D tree data structure, users are able to:
- * - Add nodes with two coordinates in integers (x and y)
- * - Search to see if a node/point exists
- * - Find the closest existing node to a provided coordinate
- * - Batch add nodes to a balanced condition
+ * - Add points with two coordinates in integers (x and y)
+ * - Search to see if a point exists
+ * - Find the closest existing point to a provided coordinate
+ * - Find the k closest points, or all points within a radius
+ * - Find the closest points to a whole batch of coordinates, optionally in parallel
+ * - Batch add points to a balanced condition
+ *
+ * The tree has no node objects. Points are kept in flat arrays in tree order: a subtree
+ * covers a range of the arrays, its root is the median in the middle of the range, the left
+ * subtree is the first half and the right subtree the second half. The split axis
+ * alternates with the depth (x first). Distances are compared squared, in integers, and
+ * queries allocate nothing.
+ *
+ * Each point is known by its seed index: the order in which it was given to the tree.
  *
  * Limitations:
- * - This tree does not self balance. Adding nodes after initialization would break the balance
- * - Cannot delete a node
+ * - Adding points after initialization rebuilds the whole tree on the next query
+ * - Cannot delete a point
  * - Integer numbers only
+ * - Not safe to add points while other threads query the tree
  *
  * Inspirations:
  * - Computerphile (YouTube): https://youtu.be/BK5x7IUTIyU
  * - Stable Sort (YouTube): https://youtu.be/Glp7THUpGow
  * - Construct a KD Tree: https://courses.engr.illinois.edu/cs225/sp2019/notes/kd-tree/
  */
-public class KdTree {
-  
-  /*
-      Node Definition
-   */
-  
-  /**
-   * defines a node specific for the kd tree - intger
-   */
-  public class NodeKd {
-    
-    // define fields
-    private int[] coordinates;
-    private int[] colorChannels;
-    private int seedCount;
-    private NodeKd left;
-    private NodeKd right;
-    
-    // constructor
-    public NodeKd() {
-      this.coordinates = new int[2];
-      this.colorChannels = new int[3];
-      this.seedCount = 0;
-      this.left = null;
-      this.right = null;
-    }
-  
-    /**
-     * Constructs a node for the KD tree.
-     * @param inputX  x-coordinate of the node
-     * @param inputY  y-coordinate of the node
-     */
-    public NodeKd(int inputX, int inputY) {
-      this.coordinates = new int[] {inputX, inputY};
-      this.colorChannels = new int[3];
-      this.seedCount = 0;
-      this.left = null;
-      this.right = null;
-    }
-    
-    public NodeKd(int[] inputs) {
-      this(inputs[0], inputs[1]);
-    }
-    
-    @Override
-    public String toString() {
-      return "KD Node: (x=" + this.coordinates[0] + ", y=" + this.coordinates[1] + ")";
-    }
-    
-    public int[] toArray() {
-      return coordinates;
-    }
-    
-  }
-  
-  /*
-      KD Tree Definition
-   */
-  
+public class KdTree implements SpatialIndex {
+
+  private static final int INITIAL_CAPACITY = 16;
+  // the tree is balanced, so it is at most 32 levels deep for any int number of points
+  private static final int STACK_DEPTH = 64;
+
   // define fields
   private int size;
-  private NodeKd root;
-  
+  // coordinates by seed index: [x0, y0, x1, y1, ...]
+  private int[] points;
+  // coordinates in tree order: [x, y] of the point at each position of the tree
+  private int[] treePoints;
+  // seed index of the point at each position of the tree
+  private int[] treeSeeds;
+  // points were added since the tree was last built
+  private boolean isDirty;
+
   /**
-   * Initialize a constructor by defining a root node. More node shall be added
+   * Initialize a constructor by defining a root point. More points shall be added
    * using the add function.
    *
-   * @param inputX  x-coordinate of the root node
-   * @param inputY  y-coordinate of the root node
+   * @param inputX  x-coordinate of the root point
+   * @param inputY  y-coordinate of the root point
    */
   public KdTree(int inputX, int inputY) {
-    this.root = new NodeKd(inputX, inputY);
-    this.size = 1;
+    this();
+    this.add(inputX, inputY);
   }
-  
+
   /**
    * Initialize a kd-tree by importing a list of coordinates.
    * Coordinates will sorted and a balanced tree will be created.
    *
-   * @param points  list of points in 2D integer array
+   * @param points  list of points in 2D integer array, [i][0] = x and [i][1] = y
    */
   public KdTree(int[][] points) {
-    
-    // the incoming 2D int array will be sorted first and them construct
-    this.arrayAddHelper(points, 0, points.length, 0);
-    
+    this.size = points.length;
+    this.points = new int[Math.max(size, INITIAL_CAPACITY) * 2];
+    for (int i = 0; i < size; i++) {
+      this.points[2 * i] = points[i][0];
+      this.points[2 * i + 1] = points[i][1];
+    }
+    build();
   }
-  
+
+  /**
+   * Initialize a kd-tree from coordinates in one flat array, without an array per point.
+   * A balanced tree will be created.
+   *
+   * @param coordinates  x and y of each point, one after the other: [x0, y0, x1, y1, ...]
+   * @throws IllegalArgumentException if the number of coordinates is odd
+   */
+  public KdTree(int[] coordinates) throws IllegalArgumentException {
+    if (coordinates.length % 2 != 0) {
+      throw new IllegalArgumentException("Coordinates shall come in pairs of x and y!");
+    }
+    this.size = coordinates.length / 2;
+    this.points = Arrays.copyOf(coordinates, Math.max(size, INITIAL_CAPACITY) * 2);
+    build();
+  }
+
   /**
    * An empty constructor.
    */
   public KdTree() {
-    this.root = null;
     this.size = 0;
+    this.points = new int[INITIAL_CAPACITY * 2];
+    this.treePoints = new int[0];
+    this.treeSeeds = new int[0];
+    this.isDirty = false;
   }
-  
+
   /**
-   * Add a point to the kd tree.
-   * <p>WARNING: addition of a node may cause imbalance of the tree
+   * Add a point to the kd tree. Its seed index is the number of points before it.
+   * <p>Adding is cheap, but the point is not inserted into the tree: the whole tree is
+   * rebuilt (balanced) on the next query, in O(n log n). Add points in batches between
+   * queries, not one by one between queries.
    *
    * @param inputX x-coordinate of the new point
    * @param inputY y-coordinate of the new point
    */
   public void add(int inputX, int inputY) {
-    // adding nodes will be done recursively
-    // check if the tree is null
-    if (this.root == null) {
-      size++;
-      this.root = new NodeKd(inputX, inputY);
-    } else {
-      // kick off the recursive steps
-      // going off from the root node, it will start from step 0 (even)
-      this.root = addHelper(this.root, new int[] {inputX, inputY}, 0);
-      
+    if (2 * size == points.length) {
+      points = Arrays.copyOf(points, points.length * 2);
     }
+    points[2 * size] = inputX;
+    points[2 * size + 1] = inputY;
+    size++;
+    isDirty = true;
   }
-  
+
   public void add(int[] inputs) {
     this.add(inputs[0], inputs[1]);
   }
-  
-  private NodeKd addHelper(NodeKd parent, int[] inputs, int steps) {
-    // check if the parent node is empty
-    if (parent == null) {
-      // create a new node here
-      size++;
-      // note again that inputs[0] is y coordinate, input[1] is x coordinate
-      return new NodeKd(inputs[0], inputs[1]);
+
+  /**
+   * Returns the number of points in the tree.
+   *
+   * @return number of points
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the x-coordinate of a point.
+   *
+   * @param seedIndex seed index of the point
+   * @return x-coordinate
+   */
+  public int getX(int seedIndex) {
+    return points[2 * seedIndex];
+  }
+
+  /**
+   * Returns the y-coordinate of a point.
+   *
+   * @param seedIndex seed index of the point
+   * @return y-coordinate
+   */
+  public int getY(int seedIndex) {
+    return points[2 * seedIndex + 1];
+  }
+
+  /**
+   * Checks if a point is present in the tree.
+   *
+   * @param inputX x-coordinate of the point
+   * @param inputY y-coordinate of the point
+   * @return  true/false statement of if the point exists
+   */
+  public boolean present(int inputX, int inputY) {
+    // a point is present if the closest point is right on it
+    int seed = getNearest(inputX, inputY);
+    return seed >= 0 && getX(seed) == inputX && getY(seed) == inputY;
+  }
+
+  /**
+   * Given a point, finds the closest point in the tree. When several points are just as
+   * close, the one with the lowest seed index is returned.
+   *
+   * @param inputX x-coordinate of the point
+   * @param inputY y-coordinate of the point
+   * @return  seed index of the closest point, -1 if the tree is empty
+   */
+  public int getNearest(int inputX, int inputY) {
+    if (isDirty) {
+      build();
     }
-    
-    // with non-empty parent nodes, compare the insertion
-    // with odd steps (1, 3, 5), compare the x coordinate (mod = 1)
-    // with even steps (2, 4, 6), compare the y coordinate (mod = 0)
-    if (inputs[steps % 2] <= parent.coordinates[steps % 2]) {
-      // send it to the left of the tree
-      parent.left = this.addHelper(parent.left, inputs, steps + 1);
-    } else {
-      // send it to the right of the tree
-      parent.right = this.addHelper(parent.right, inputs, steps + 1);
+    if (size == 0) {
+      return -1;
     }
-    
-    return parent;
+    return treeSeeds[nearestHelper(0, size, 0, inputX, inputY, -1)];
   }
-  
-  private void arrayAddHelper(int[][] inputs, int startIndex, int endIndex, int steps) {
-    // traversal order: root, left, right
-    // assume the recursion starts with a median defined
-    
-    // check the array
-    if (inputs.length == 1) {
-      // there's only one array left, add it
-      this.add(inputs[0]);
-      return;
+
+  /**
+   * Finds the closest points for a batch of coordinates. Each search starts from the answer
+   * to the previous coordinate, so batches where neighbouring coordinates are close to each
+   * other (such as the pixels of a row) prune most of the tree right away.
+   *
+   * @param coordinates   x and y of each point to look up: [x0, y0, x1, y1, ...]
+   * @param nearestSeeds  receives the seed index of the closest point of each coordinate
+   * @throws IllegalArgumentException if the number of coordinates is odd, or the output
+   *                                  is too short
+   */
+  public void getNearest(int[] coordinates, int[] nearestSeeds)
+          throws IllegalArgumentException {
+    getNearest(coordinates, nearestSeeds, null);
+  }
+
+  /**
+   * Same as getNearest for a batch, where the batch is split across threads.
+   *
+   * @param coordinates   x and y of each point to look up: [x0, y0, x1, y1, ...]
+   * @param nearestSeeds  receives the seed index of the closest point of each coordinate
+   * @param executor      runs the parts of the batch, null to run on the calling thread
+   * @throws IllegalArgumentException if the number of coordinates is odd, or the output
+   *                                  is too short
+   */
+  public void getNearest(int[] coordinates, int[] nearestSeeds, RowBandExecutor executor)
+          throws IllegalArgumentException {
+    if (coordinates.length % 2 != 0 || nearestSeeds.length < coordinates.length / 2) {
+      throw new IllegalArgumentException(
+              "Coordinates shall come in pairs, with room for one seed per pair!");
+    }
+    if (isDirty) {
+      build();
     }
-    
-    if (inputs.length == 0) {
-      // an empty array. add nothing and just return
+    int count = coordinates.length / 2;
+    if (size == 0) {
+      Arrays.fill(nearestSeeds, 0, count, -1);
       return;
     }
-    
-    // sort the array with streams based on steps:
-    // (0, 2, 4, ...) - based on y
-    // (1, 3, 5, ...) - based on x
-    Arrays.sort(inputs, Comparator.comparingInt(a -> a[steps % 2]));
-    
-    // get the median of the array
-    int medianIndex = inputs.length / 2;
-    // add the point at median index to the tree
-    this.add(inputs[medianIndex]);
-    // recurse to left of the index
-    this.arrayAddHelper(Arrays.copyOfRange(inputs,0, medianIndex), 0, 0, steps + 1);
-    // recurse to right of the index
-    this.arrayAddHelper(Arrays.copyOfRange(inputs,medianIndex + 1, inputs.length), 0, 0, steps + 1);
-
-    // end of recursive steps
+
+    RowBandExecutor.RowBandTask task = (start, end) -> {
+      // one traversal stack per part of the batch, reused by all of its searches
+      int[] stack = new int[STACK_DEPTH * 3];
+      long[] stackDistances = new long[STACK_DEPTH];
+      int best = -1;
+      for (int i = start; i < end; i++) {
+        best = nearestIterative(coordinates[2 * i], coordinates[2 * i + 1], best,
+                stack, stackDistances);
+        nearestSeeds[i] = treeSeeds[best];
+      }
+    };
+    if (executor == null) {
+      task.run(0, count);
+    } else {
+      executor.forEachBand(count, task);
+    }
   }
-  
+
   /**
-   * Checks if a node is present in the tree.
+   * Finds the k closest points to a coordinate, closest first (ties go to the lowest seed
+   * index).
    *
-   * @param inputX x-coordinate of the new point
-   * @param inputY y-coordinate of the new point
-   * @return  true/false statement of if the point exists
+   * @param inputX       x-coordinate of the point
+   * @param inputY       y-coordinate of the point
+   * @param k            number of points to find
+   * @param nearestSeeds receives the seed indices, at least k long
+   * @return the number of points found: k, or the size of the tree if it is smaller
+   * @throws IllegalArgumentException if k is not positive or the output is too short
    */
-  public boolean present(int inputX, int inputY) {
-    // similar to the add method, traverse to each point to find out if it exists
-    return this.presentHelper(this.root, new int[]{inputX, inputY}, 0);
+  public int getNearest(int inputX, int inputY, int k, int[] nearestSeeds)
+          throws IllegalArgumentException {
+    return getNearest(inputX, inputY, k, nearestSeeds, new long[k]);
   }
-  
-  public boolean presentHelper(NodeKd parent, int[] inputs, int steps) {
-    // similar to the add method, traverse to each point to find out if it exists
-    if (parent == null) {
-      // reached to the end of the search, if nothing is there, means nothing is found
-      return false;
+
+  /**
+   * Same as getNearest for k points, with the squared distances as well. Allocates nothing,
+   * so the output arrays can be reused from one query to the next.
+   *
+   * @param inputX           x-coordinate of the point
+   * @param inputY           y-coordinate of the point
+   * @param k                number of points to find
+   * @param nearestSeeds     receives the seed indices, at least k long
+   * @param squaredDistances receives the squared distances, at least k long
+   * @return the number of points found: k, or the size of the tree if it is smaller
+   * @throws IllegalArgumentException if k is not positive or an output is too short
+   */
+  public int getNearest(int inputX, int inputY, int k, int[] nearestSeeds,
+                        long[] squaredDistances) throws IllegalArgumentException {
+    if (k <= 0 || nearestSeeds.length < k || squaredDistances.length < k) {
+      throw new IllegalArgumentException(
+              "K shall be a positive integer, with room for k results!");
     }
-    
-    // otherwise, check the parent node to see if it fits the loop up
-    // first, check equality now
-    if (parent.coordinates[0] == inputs[0] && parent.coordinates[1] == inputs[1]) {
-      return true;
+    if (isDirty) {
+      build();
     }
-    
-    // if not equal, then go down the tree
-    if (inputs[steps % 2] <= parent.coordinates[steps % 2]){
-      // go left
-      return presentHelper(parent.left, inputs, steps+1);
-    } else {
-      // go right
-      return presentHelper(parent.right, inputs, steps+1);
+
+    // the results are kept as a max heap (farthest on top) while searching
+    int count = nearestHelper(0, size, 0, inputX, inputY, k, nearestSeeds, squaredDistances, 0);
+
+    // then sorted closest first, by taking the farthest off the heap one by one
+    for (int last = count - 1; last > 0; last--) {
+      swapResults(nearestSeeds, squaredDistances, 0, last);
+      siftDown(nearestSeeds, squaredDistances, 0, last);
     }
+    return count;
   }
-  
+
   /**
-   * Given a point, it will compute the shortest distance to a point in the tree.
-   * @param inputX x-coordinate of the new point
-   * @param inputY y-coordinate of the new point
-   * @return  the shortest distance
+   * Finds all points within a distance of a coordinate (in no particular order).
+   *
+   * @param inputX x-coordinate of the point
+   * @param inputY y-coordinate of the point
+   * @param radius largest distance of the points to find (inclusive)
+   * @param seeds  receives the seed indices. If it is too short, only the first points found
+   *               are stored.
+   * @return the number of points within the radius, which can be more than the output holds
+   * @throws IllegalArgumentException if the radius is negative
    */
-  public NodeKd getShortestDistance(int inputX, int inputY) {
-    return this.shortestDistanceHelper(root, new int[]{inputX, inputY}, 0);
+  public int getWithinRadius(int inputX, int inputY, int radius, int[] seeds)
+          throws IllegalArgumentException {
+    if (radius < 0) {
+      throw new IllegalArgumentException("Radius shall not be negative!");
+    }
+    if (isDirty) {
+      build();
+    }
+    return radiusHelper(0, size, 0, inputX, inputY, (long) radius * radius, seeds, 0);
   }
-  
-  private NodeKd shortestDistanceHelper(NodeKd parent, int inputs[], int steps) {
-    
-    /*
-     traverse to the end of points as usual. However this time keep track of
-     the shortest distance of the parent node as well.
-     
-     If the parent node distance (horiz/vert) is less than the computed shortest
-     distance (from end of the recursion), then we have to jump to the other branch
-     of the parent node to keep computing and comparing the distance.
-     */
-    
-    // Traverse to a leaf node
-    if (parent == null) {
-      // tell the previous call stack that it has reached end of the recursion.
-      return null;
+
+  /*
+   traverse to the end of points as usual. However this time keep track of
+   the closest point found so far (as a position in the tree).
+
+   If the horizontal/vertical distance to the splitting point is not more than the
+   distance to the closest point, then we have to jump to the other half of the range
+   to keep computing and comparing the distance.
+
+   The closest distance is not passed around, it is recomputed from the position, so
+   nothing has to be allocated or kept in fields (queries can run on many threads).
+   */
+  private int nearestHelper(int startIndex, int endIndex, int axis, int inputX, int inputY,
+                            int best) {
+    if (startIndex >= endIndex) {
+      return best;
+    }
+
+    int median = (startIndex + endIndex) >>> 1;
+    if (isCloser(median, best, inputX, inputY)) {
+      best = median;
     }
-    
-    NodeKd toBeTraversed;
-    NodeKd theOtherNode;
-    NodeKd nextNode;
-    NodeKd closestNode;
-    
-    // during the traversal, compare the nodes
-    if (inputs[steps % 2] <= parent.coordinates[steps % 2]){
-      // go left: record the nodes information
-      toBeTraversed = parent.left;
-      theOtherNode = parent.right;
 
+    // signed distance to the splitting line
+    long delta = axis == 0
+            ? (long) inputX - treePoints[2 * median]
+            : (long) inputY - treePoints[2 * median + 1];
+
+    if (delta <= 0) {
+      // go left first, the right half can only be closer if it's within reach
+      best = nearestHelper(startIndex, median, 1 - axis, inputX, inputY, best);
+      if (delta * delta <= getSquaredDistance(best, inputX, inputY)) {
+        best = nearestHelper(median + 1, endIndex, 1 - axis, inputX, inputY, best);
+      }
     } else {
-      // go right: record the node information
-      toBeTraversed = parent.right;
-      theOtherNode = parent.left;
+      // go right first
+      best = nearestHelper(median + 1, endIndex, 1 - axis, inputX, inputY, best);
+      if (delta * delta <= getSquaredDistance(best, inputX, inputY)) {
+        best = nearestHelper(startIndex, median, 1 - axis, inputX, inputY, best);
+      }
     }
-    
-    // perform the actual traversal here:
-    // it kicks down the recursion tree, or end up return null indicating end of recursion
-    nextNode = shortestDistanceHelper(toBeTraversed, inputs, steps + 1);
-    // so now we have the parent node, and a "next node" (could be null). Will now decide
-    // which point has the shortest path to that node
-    closestNode = getClosestNode(parent, nextNode, inputs);
-    
-    // Note that the other branch might have closer points as well
-    // ====
-    // if the vertical/horizontal distance between parent and lookup node is less than the shortest
-    // distance, there's a possibility that other nodes on the other side (theOtherNode).
-    double closestDistTemp = getDistance(closestNode, inputs);
-    double vertOrHorizDistance = Math.abs(inputs[steps % 2] - parent.coordinates[steps % 2]);
-    
-    if (vertOrHorizDistance < closestDistTemp) {
-      // preserve the previous temp node
-      NodeKd tempNextNode = nextNode;
-      // traverse and do the same thing to the other side
-      // doing so might overwrite that the closestNode is from previous computation
-      nextNode = shortestDistanceHelper(theOtherNode, inputs, steps + 1);
-      // compare the current nextNode to previous next node to see which one is closer
-      nextNode = getClosestNode(tempNextNode, nextNode, inputs);
-      // compute the final node that is the closest (at this call stack)
-      closestNode = getClosestNode(parent, nextNode, inputs);
+    return best;
+  }
+
+  /*
+   same search as nearestHelper, without recursion: the halves still to visit are kept on a
+   stack with their distance from the point, and skipped once the closest point found is
+   nearer than that. The stack only holds one half per level of the tree.
+   */
+  private int nearestIterative(int inputX, int inputY, int best, int[] stack,
+                               long[] stackDistances) {
+    long bestDistance = best < 0 ? Long.MAX_VALUE : getSquaredDistance(best, inputX, inputY);
+    int top = 0;
+    stack[0] = 0;
+    stack[1] = size;
+    stack[2] = 0;
+    stackDistances[0] = 0;
+    top++;
+
+    while (top > 0) {
+      top--;
+      if (stackDistances[top] > bestDistance) {
+        continue;
+      }
+      int startIndex = stack[3 * top];
+      int endIndex = stack[3 * top + 1];
+      int axis = stack[3 * top + 2];
+
+      // walk down to the bottom, keeping the other halves for later
+      while (startIndex < endIndex) {
+        int median = (startIndex + endIndex) >>> 1;
+        long distance = getSquaredDistance(median, inputX, inputY);
+        if (distance < bestDistance
+                || (distance == bestDistance && treeSeeds[median] < treeSeeds[best])) {
+          best = median;
+          bestDistance = distance;
+        }
+
+        long delta = axis == 0
+                ? (long) inputX - treePoints[2 * median]
+                : (long) inputY - treePoints[2 * median + 1];
+        if (delta * delta <= bestDistance) {
+          stack[3 * top] = delta <= 0 ? median + 1 : startIndex;
+          stack[3 * top + 1] = delta <= 0 ? endIndex : median;
+          stack[3 * top + 2] = 1 - axis;
+          stackDistances[top] = delta * delta;
+          top++;
+        }
+        if (delta <= 0) {
+          endIndex = median;
+        } else {
+          startIndex = median + 1;
+        }
+        axis = 1 - axis;
+      }
     }
-    
-    return closestNode;
+    return best;
   }
-  
-  private NodeKd getClosestNode(NodeKd node1, NodeKd node2, int[] inputs) {
-    // check input validity. Technically both nodes shall not be null at the same time
-    if (node1 == null && node2 == null) {
-      return null;
+
+  // same traversal as the single closest point, keeping the k closest in a max heap
+  private int nearestHelper(int startIndex, int endIndex, int axis, int inputX, int inputY,
+                            int k, int[] seeds, long[] distances, int count) {
+    if (startIndex >= endIndex) {
+      return count;
     }
-    // check if nodes are null
-    if (node1 == null) {
-      return node2;
+
+    int median = (startIndex + endIndex) >>> 1;
+    long distance = getSquaredDistance(median, inputX, inputY);
+    int seed = treeSeeds[median];
+    if (count < k) {
+      // heap not full yet: add at the bottom and move up
+      int child = count++;
+      seeds[child] = seed;
+      distances[child] = distance;
+      while (child > 0) {
+        int parent = (child - 1) / 2;
+        if (!isFarther(seeds, distances, child, parent)) {
+          break;
+        }
+        swapResults(seeds, distances, child, parent);
+        child = parent;
+      }
+    } else if (distance < distances[0] || (distance == distances[0] && seed < seeds[0])) {
+      // closer than the farthest kept: replace it
+      seeds[0] = seed;
+      distances[0] = distance;
+      siftDown(seeds, distances, 0, count);
     }
-    
-    if (node2 == null) {
-      return node1;
+
+    long delta = axis == 0
+            ? (long) inputX - treePoints[2 * median]
+            : (long) inputY - treePoints[2 * median + 1];
+    int nearStart = delta <= 0 ? startIndex : median + 1;
+    int nearEnd = delta <= 0 ? median : endIndex;
+    int farStart = delta <= 0 ? median + 1 : startIndex;
+    int farEnd = delta <= 0 ? endIndex : median;
+
+    count = nearestHelper(nearStart, nearEnd, 1 - axis, inputX, inputY, k, seeds, distances,
+            count);
+    if (count < k || delta * delta <= distances[0]) {
+      count = nearestHelper(farStart, farEnd, 1 - axis, inputX, inputY, k, seeds, distances,
+              count);
     }
-    
-    // do the computation
-    double distance1 = getDistance(node1, inputs);
-    double distance2 = getDistance(node2, inputs);
-    
-    if (distance1 <= distance2) {
-      return node1;
-    } else {
-      return node2;
+    return count;
+  }
+
+  private int radiusHelper(int startIndex, int endIndex, int axis, int inputX, int inputY,
+                           long squaredRadius, int[] seeds, int found) {
+    if (startIndex >= endIndex) {
+      return found;
+    }
+
+    int median = (startIndex + endIndex) >>> 1;
+    if (getSquaredDistance(median, inputX, inputY) <= squaredRadius) {
+      if (found < seeds.length) {
+        seeds[found] = treeSeeds[median];
+      }
+      found++;
+    }
+
+    long delta = axis == 0
+            ? (long) inputX - treePoints[2 * median]
+            : (long) inputY - treePoints[2 * median + 1];
+    // left half holds the smaller (or equal) coordinates, the right half the larger ones
+    if (delta <= 0 || delta * delta <= squaredRadius) {
+      found = radiusHelper(startIndex, median, 1 - axis, inputX, inputY, squaredRadius,
+              seeds, found);
+    }
+    if (delta >= 0 || delta * delta <= squaredRadius) {
+      found = radiusHelper(median + 1, endIndex, 1 - axis, inputX, inputY, squaredRadius,
+              seeds, found);
+    }
+    return found;
+  }
+
+  // heap helpers: the parent is always farther than its children (or as far, with a larger
+  // seed index)
+  private static boolean isFarther(int[] seeds, long[] distances, int first, int second) {
+    return distances[first] > distances[second]
+            || (distances[first] == distances[second] && seeds[first] > seeds[second]);
+  }
+
+  private static void siftDown(int[] seeds, long[] distances, int parent, int count) {
+    while (true) {
+      int farthest = parent;
+      int left = 2 * parent + 1;
+      int right = left + 1;
+      if (left < count && isFarther(seeds, distances, left, farthest)) {
+        farthest = left;
+      }
+      if (right < count && isFarther(seeds, distances, right, farthest)) {
+        farthest = right;
+      }
+      if (farthest == parent) {
+        return;
+      }
+      swapResults(seeds, distances, parent, farthest);
+      parent = farthest;
+    }
+  }
+
+  private static void swapResults(int[] seeds, long[] distances, int first, int second) {
+    int tempSeed = seeds[first];
+    seeds[first] = seeds[second];
+    seeds[second] = tempSeed;
+    long tempDistance = distances[first];
+    distances[first] = distances[second];
+    distances[second] = tempDistance;
+  }
+
+  // is the tree position closer than the best one (ties go to the lowest seed index)
+  private boolean isCloser(int position, int best, int inputX, int inputY) {
+    if (best < 0) {
+      return true;
+    }
+    long distance = getSquaredDistance(position, inputX, inputY);
+    long bestDistance = getSquaredDistance(best, inputX, inputY);
+    return distance < bestDistance
+            || (distance == bestDistance && treeSeeds[position] < treeSeeds[best]);
+  }
+
+  // returns the squared distance between a tree position and a point
+  private long getSquaredDistance(int position, int inputX, int inputY) {
+    long deltaX = (long) treePoints[2 * position] - inputX;
+    long deltaY = (long) treePoints[2 * position + 1] - inputY;
+    return deltaX * deltaX + deltaY * deltaY;
+  }
+
+  // lay the points out in tree order
+  // the coordinates are moved along with the seed indices, so partitioning reads them in
+  // order instead of jumping around the points array
+  private void build() {
+    treeSeeds = new int[size];
+    for (int i = 0; i < size; i++) {
+      treeSeeds[i] = i;
+    }
+    treePoints = Arrays.copyOf(points, size * 2);
+    buildHelper(0, size, 0);
+    isDirty = false;
+  }
+
+  private void buildHelper(int startIndex, int endIndex, int axis) {
+    if (endIndex - startIndex <= 1) {
+      return;
     }
+
+    // move the median of the range on the split axis to the middle, smaller (or equal)
+    // points before it and larger (or equal) points after it. No need to sort the range.
+    // (0, 2, 4, ...) - based on x
+    // (1, 3, 5, ...) - based on y
+    int median = (startIndex + endIndex) >>> 1;
+    select(startIndex, endIndex, median, axis);
+
+    // recurse to both sides of the median
+    buildHelper(startIndex, median, 1 - axis);
+    buildHelper(median + 1, endIndex, 1 - axis);
   }
-  
-  // returns the distance between two points via pythagorean theorem
-  private double getDistance(NodeKd node, int[] inputs) {
-    double output = Math.sqrt(Math.pow((node.coordinates[0] - inputs[0]), 2)
-            + Math.pow((node.coordinates[1] - inputs[1]), 2));
-    return output;
+
+  /*
+   quickselect: partition the range around a pivot, then keep going only on the part that
+   holds the wanted position. Expected linear time, so the whole build is O(n log n).
+
+   The partition is three way (smaller / equal / larger than the pivot), so ranges full of
+   equal coordinates (points on the same row or column) finish right away.
+   */
+  private void select(int startIndex, int endIndex, int target, int axis) {
+    while (endIndex - startIndex > 1) {
+      int pivot = getMedianOfThree(startIndex, (startIndex + endIndex) >>> 1, endIndex - 1,
+              axis);
+
+      int lower = startIndex; // end of the smaller part
+      int upper = endIndex - 1; // start of the larger part, minus one
+      int i = startIndex;
+      while (i <= upper) {
+        int coordinate = treePoints[2 * i + axis];
+        if (coordinate < pivot) {
+          swap(lower++, i++);
+        } else if (coordinate > pivot) {
+          swap(i, upper--);
+        } else {
+          i++;
+        }
+      }
+
+      if (target < lower) {
+        endIndex = lower;
+      } else if (target > upper) {
+        startIndex = upper + 1;
+      } else {
+        // the target is among the points equal to the pivot
+        return;
+      }
+    }
   }
-  
+
+  // median of the coordinates at three positions, a pivot that is good on sorted input too
+  private int getMedianOfThree(int first, int middle, int last, int axis) {
+    int a = treePoints[2 * first + axis];
+    int b = treePoints[2 * middle + axis];
+    int c = treePoints[2 * last + axis];
+    return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+  }
+
+  // swap two positions of the tree, seed index and coordinates
+  private void swap(int first, int second) {
+    int temp = treeSeeds[first];
+    treeSeeds[first] = treeSeeds[second];
+    treeSeeds[second] = temp;
+
+    temp = treePoints[2 * first];
+    treePoints[2 * first] = treePoints[2 * second];
+    treePoints[2 * second] = temp;
+
+    temp = treePoints[2 * first + 1];
+    treePoints[2 * first + 1] = treePoints[2 * second + 1];
+    treePoints[2 * second + 1] = temp;
+  }
+
 }
@@ -0,0 +1,304 @@
+package images;
+
+/**
+ * A tone transformation that maps each color channel value (0 - 255) to a new value
+ * through a 256 entry table, such as gamma, levels, curves, invert, posterize, threshold
+ * and histogram equalization. Each channel can have its own table, or all three can share
+ * one.
+ *
+ * <p>Two tables applied one after the other can be merged into a single table (see then),
+ * so a chain of tone operations costs one lookup per channel, however long it is. The
+ * pixels are changed in place without any allocation.
+ */
+public class LookupTable implements PixelTransform {
+
+  private static final int SIZE = 256;
+
+  private final int[] red;
+  private final int[] green;
+  private final int[] blue;
+
+  /**
+   * Constructs a table shared by all three channels.
+   *
+   * @param table 256 output values (0 - 255), one per input value
+   * @throws IllegalArgumentException if the table does not have 256 values within 0 - 255
+   */
+  public LookupTable(int[] table) throws IllegalArgumentException {
+    this(table, table, table);
+  }
+
+  /**
+   * Constructs a table with one set of values per channel.
+   *
+   * @param red   256 output values (0 - 255) for the red channel
+   * @param green 256 output values (0 - 255) for the green channel
+   * @param blue  256 output values (0 - 255) for the blue channel
+   * @throws IllegalArgumentException if a table does not have 256 values within 0 - 255
+   */
+  public LookupTable(int[] red, int[] green, int[] blue) throws IllegalArgumentException {
+    this.red = checkTable(red);
+    // keep shared tables shared, so they stay cheap to merge
+    this.green = green == red ? this.red : checkTable(green);
+    this.blue = blue == red ? this.red : blue == green ? this.green : checkTable(blue);
+  }
+
+  /**
+   * Leaves every value unchanged.
+   *
+   * @return the identity table
+   */
+  public static LookupTable identity() {
+    int[] table = new int[SIZE];
+    for (int v = 0; v < SIZE; v++) {
+      table[v] = v;
+    }
+    return new LookupTable(table);
+  }
+
+  /**
+   * Gamma correction: out = 255 * (in / 255) ^ (1 / gamma). A gamma above 1 brightens the
+   * mid tones, below 1 darkens them.
+   *
+   * @param gamma the gamma
+   * @return the gamma table
+   * @throws IllegalArgumentException if gamma is not positive
+   */
+  public static LookupTable gamma(double gamma) throws IllegalArgumentException {
+    if (!(gamma > 0) || Double.isInfinite(gamma)) {
+      throw new IllegalArgumentException("Gamma shall be a positive number!");
+    }
+    return levels(0, 255, gamma, 0, 255);
+  }
+
+  /**
+   * Levels: input values between the black and white points are stretched to the output
+   * range (values outside are clipped), with a gamma correction of the mid tones.
+   *
+   * @param inputBlack  input value that becomes the output black
+   * @param inputWhite  input value that becomes the output white
+   * @param gamma       gamma of the mid tones, 1 for none
+   * @param outputBlack darkest output value
+   * @param outputWhite brightest output value
+   * @return the levels table
+   * @throws IllegalArgumentException if a value is not within 0 - 255, the input black is
+   *                                  not below the input white, or gamma is not positive
+   */
+  public static LookupTable levels(int inputBlack, int inputWhite, double gamma,
+                                   int outputBlack, int outputWhite)
+          throws IllegalArgumentException {
+    if (!isColorValue(inputBlack) || !isColorValue(inputWhite) || !isColorValue(outputBlack)
+            || !isColorValue(outputWhite) || inputBlack >= inputWhite) {
+      throw new IllegalArgumentException(
+              "Levels shall be between 0 and 255, with the input black below the input white!");
+    }
+    if (!(gamma > 0) || Double.isInfinite(gamma)) {
+      throw new IllegalArgumentException("Gamma shall be a positive number!");
+    }
+    int[] table = new int[SIZE];
+    for (int v = 0; v < SIZE; v++) {
+      double level = (v - inputBlack) / (double) (inputWhite - inputBlack);
+      level = Math.pow(Math.min(Math.max(level, 0), 1), 1 / gamma);
+      table[v] = (int) Math.round(outputBlack + level * (outputWhite - outputBlack));
+    }
+    return new LookupTable(table);
+  }
+
+  /**
+   * Curves: a tone curve through a few control points, with straight lines in between.
+   * Values before the first point or after the last point keep the output of that point.
+   *
+   * @param inputs  input values of the control points, increasing
+   * @param outputs output values of the control points
+   * @return the curve table
+   * @throws IllegalArgumentException if there are no points, the number of inputs and
+   *                                  outputs differ, a value is not within 0 - 255, or the
+   *                                  inputs are not increasing
+   */
+  public static LookupTable curve(int[] inputs, int[] outputs) throws IllegalArgumentException {
+    if (inputs == null || outputs == null || inputs.length == 0
+            || inputs.length != outputs.length) {
+      throw new IllegalArgumentException("Curve shall have the same number of inputs and "
+              + "outputs, and at least one point!");
+    }
+    for (int i = 0; i < inputs.length; i++) {
+      if (!isColorValue(inputs[i]) || !isColorValue(outputs[i])
+              || (i > 0 && inputs[i] <= inputs[i - 1])) {
+        throw new IllegalArgumentException("Curve points shall be between 0 and 255, "
+                + "with increasing inputs!");
+      }
+    }
+    int[] table = new int[SIZE];
+    int point = 0;
+    for (int v = 0; v < SIZE; v++) {
+      // move to the segment holding this value
+      while (point < inputs.length && inputs[point] < v) {
+        point++;
+      }
+      if (point == 0) {
+        table[v] = outputs[0];
+      } else if (point == inputs.length) {
+        table[v] = outputs[inputs.length - 1];
+      } else {
+        double t = (v - inputs[point - 1]) / (double) (inputs[point] - inputs[point - 1]);
+        table[v] = (int) Math.round(outputs[point - 1]
+                + t * (outputs[point] - outputs[point - 1]));
+      }
+    }
+    return new LookupTable(table);
+  }
+
+  /**
+   * Invert: out = 255 - in, a photo negative.
+   *
+   * @return the invert table
+   */
+  public static LookupTable invert() {
+    int[] table = new int[SIZE];
+    for (int v = 0; v < SIZE; v++) {
+      table[v] = 255 - v;
+    }
+    return new LookupTable(table);
+  }
+
+  /**
+   * Posterize: reduces each channel to a few evenly spaced values.
+   *
+   * @param levels number of values kept per channel
+   * @return the posterize table
+   * @throws IllegalArgumentException if levels is not between 2 and 256
+   */
+  public static LookupTable posterize(int levels) throws IllegalArgumentException {
+    if (levels < 2 || levels > SIZE) {
+      throw new IllegalArgumentException("Posterize levels shall be between 2 and 256!");
+    }
+    int[] table = new int[SIZE];
+    for (int v = 0; v < SIZE; v++) {
+      long step = Math.round(v * (levels - 1) / 255.0);
+      table[v] = (int) Math.round(step * 255.0 / (levels - 1));
+    }
+    return new LookupTable(table);
+  }
+
+  /**
+   * Threshold: values at or above the level become 255, the others 0.
+   *
+   * @param level the threshold level
+   * @return the threshold table
+   * @throws IllegalArgumentException if the level is not within 0 - 255
+   */
+  public static LookupTable threshold(int level) throws IllegalArgumentException {
+    if (!isColorValue(level)) {
+      throw new IllegalArgumentException("Threshold shall be between 0 and 255!");
+    }
+    int[] table = new int[SIZE];
+    for (int v = level; v < SIZE; v++) {
+      table[v] = 255;
+    }
+    return new LookupTable(table);
+  }
+
+  /**
+   * Histogram equalization: spreads the values of a channel so each output value is used
+   * about equally often. The new value is the share of pixels at or below the old value.
+   * reference: https://en.wikipedia.org/wiki/Histogram_equalization
+   *
+   * @param histogram number of pixels of each value (0 - 255) of the channel
+   * @return the equalization table
+   * @throws IllegalArgumentException if the histogram does not have 256 counts or is empty
+   */
+  public static LookupTable equalization(int[] histogram) throws IllegalArgumentException {
+    if (histogram == null || histogram.length != SIZE) {
+      throw new IllegalArgumentException("Histogram shall have 256 counts!");
+    }
+    long totalPixelCount = 0;
+    for (int count : histogram) {
+      totalPixelCount += count;
+    }
+    if (totalPixelCount == 0) {
+      throw new IllegalArgumentException("Histogram shall not be empty!");
+    }
+    int[] table = new int[SIZE];
+    long sumIntensity = 0;
+    for (int v = 0; v < SIZE; v++) {
+      sumIntensity += histogram[v];
+      table[v] = (int) (sumIntensity * 255 / totalPixelCount);
+    }
+    return new LookupTable(table);
+  }
+
+  /**
+   * Builds a table from the red channel of one table, the green channel of another, and
+   * the blue channel of a third, such as three per channel equalizations.
+   *
+   * @param red   table whose red channel is used
+   * @param green table whose green channel is used
+   * @param blue  table whose blue channel is used
+   * @return the combined table
+   */
+  public static LookupTable combine(LookupTable red, LookupTable green, LookupTable blue) {
+    return new LookupTable(red.red, green.green, blue.blue);
+  }
+
+  /**
+   * Merges this table with one applied after it. Transforming with the merged table is
+   * the same as transforming with this table, then the next one.
+   *
+   * @param next table applied after this one
+   * @return the merged table
+   */
+  public LookupTable then(LookupTable next) {
+    int[] mergedRed = merge(red, next.red);
+    int[] mergedGreen = green == red && next.green == next.red
+            ? mergedRed : merge(green, next.green);
+    int[] mergedBlue = blue == red && next.blue == next.red
+            ? mergedRed : merge(blue, next.blue);
+    return new LookupTable(mergedRed, mergedGreen, mergedBlue);
+  }
+
+  /**
+   * Transforms a band of rows of an image in place.
+   *
+   * @param image    image to be processed
+   * @param startRow first row of the band (inclusive)
+   * @param endRow   last row of the band (exclusive)
+   */
+  @Override
+  public void applyRows(PixelBuffer image, int startRow, int endRow) {
+    int[] pixels = image.getPixels();
+    int width = image.getWidth();
+    final int[] r = red;
+    final int[] g = green;
+    final int[] b = blue;
+
+    for (int index = startRow * width; index < endRow * width; index++) {
+      int rgb = pixels[index];
+      pixels[index] = (r[(rgb >> 16) & 0xFF] << 16) | (g[(rgb >> 8) & 0xFF] << 8)
+              | b[rgb & 0xFF];
+    }
+  }
+
+  private static int[] merge(int[] first, int[] second) {
+    int[] merged = new int[SIZE];
+    for (int v = 0; v < SIZE; v++) {
+      merged[v] = second[first[v]];
+    }
+    return merged;
+  }
+
+  private static int[] checkTable(int[] table) throws IllegalArgumentException {
+    if (table == null || table.length != SIZE) {
+      throw new IllegalArgumentException("Lookup table shall have 256 values!");
+    }
+    for (int value : table) {
+      if (!isColorValue(value)) {
+        throw new IllegalArgumentException("Lookup table values shall be between 0 and 255!");
+      }
+    }
+    return table.clone();
+  }
+
+  private static boolean isColorValue(int value) {
+    return value >= 0 && value <= 255;
+  }
+}
@@ -0,0 +1,322 @@
+package images;
+
+import java.util.Arrays;
+
+/**
+ * A mosaic of one image that keeps growing: seeds can be added at any time, and the mosaic
+ * is drawn whenever needed. Keeps the seeds, the seed of every pixel and the colour sums of
+ * every seed, so adding a few seeds only revisits the pixels around the new seeds, instead
+ * of starting over.
+ *
+ * <p>The seed of each pixel is always its nearest one, ties going to the lowest seed index:
+ * the same mosaic as drawing all the seeds at once.
+ */
+public class MosaicSession {
+
+  // a pixel is looked at when it is at most this much further from the new seed than from
+  // its own seed (a little over the diagonal of a pixel, see addSeed)
+  private static final double SEARCH_MARGIN = 1.5;
+  // a batch of at least this many new seeds per seed already there redraws the whole map:
+  // each new seed revisits its cell and more, while drawing the map costs the same for any
+  // number of seeds
+  private static final int REDRAW_RATIO = 2;
+
+  private final int width;
+  private final int height;
+  private final int[] sourcePixels;
+  private final RowBandExecutor rowBands;
+
+  private int seedCount;
+  // row and column of each seed: [row0, col0, row1, col1, ...]
+  private int[] seedPoints;
+  // the seed of each pixel, row by row
+  private final int[] seedMap;
+  private SeedColorSums seedSums;
+
+  // the last seed that looked at each pixel, so each seed looks at a pixel once
+  private int[] lastVisits;
+  private int[] pixelStack;
+
+  /**
+   * Starts a session on a copy of an image, with no seeds yet.
+   *
+   * @param source   the image to turn into a mosaic
+   * @param rowBands runs the passes over the whole image in bands across threads
+   */
+  public MosaicSession(PixelBuffer source, RowBandExecutor rowBands) {
+    this.width = source.getWidth();
+    this.height = source.getHeight();
+    this.sourcePixels = source.getPixels().clone();
+    this.rowBands = rowBands;
+    this.seedCount = 0;
+    this.seedPoints = new int[0];
+    this.seedMap = new int[width * height];
+    this.seedSums = new SeedColorSums(0);
+  }
+
+  /**
+   * Returns the number of seeds added so far.
+   *
+   * @return number of seeds
+   */
+  public int getSeedCount() {
+    return seedCount;
+  }
+
+  /**
+   * Adds seeds to the mosaic. The first seeds, and later batches at least twice as large as
+   * the seeds already there, draw the whole map of seeds at once (see VoronoiRasterizer).
+   * Smaller batches are added one by one, see addSeed.
+   *
+   * @param newSeedPoints row and column of each new seed: [row0, col0, row1, col1, ...]
+   * @throws IllegalArgumentException if a seed is outside of the image
+   */
+  public void addSeeds(int[] newSeedPoints) throws IllegalArgumentException {
+    if (newSeedPoints.length % 2 != 0) {
+      throw new IllegalArgumentException("Seeds shall come in pairs of row and column!");
+    }
+    if (newSeedPoints.length == 0) {
+      return;
+    }
+    int newSeeds = newSeedPoints.length / 2;
+    for (int seed = 0; seed < newSeeds; seed++) {
+      checkSeed(newSeedPoints[seed * 2], newSeedPoints[seed * 2 + 1]);
+    }
+    int firstSeed = seedCount;
+    for (int seed = 0; seed < newSeeds; seed++) {
+      appendSeed(newSeedPoints[seed * 2], newSeedPoints[seed * 2 + 1]);
+    }
+
+    if (firstSeed > 0 && newSeeds < firstSeed * REDRAW_RATIO) {
+      // spread the new seeds in row order, so seeds one after the other work on the same
+      // rows of the image, which are still in the cache
+      long[] order = new long[newSeeds];
+      for (int seed = 0; seed < newSeeds; seed++) {
+        long pixel = (long) newSeedPoints[seed * 2] * width + newSeedPoints[seed * 2 + 1];
+        order[seed] = pixel << 32 | seed;
+      }
+      Arrays.sort(order);
+      for (long key : order) {
+        spreadSeed(firstSeed + (int) key);
+      }
+      return;
+    }
+
+    // the whole map at once, and the sums over again
+    new VoronoiRasterizer(width, height).assign(Arrays.copyOf(seedPoints, seedCount * 2),
+            seedMap, rowBands);
+    seedSums = SeedColorSums.accumulate(sourcePixels, seedMap, seedCount, width, height,
+            rowBands);
+    seedSums.grow(seedPoints.length / 2);
+  }
+
+  /**
+   * Adds one seed to the mosaic, and moves the pixels now closer to it than to their seed
+   * over to it.
+   *
+   * <p>The pixels moving over are the cell of the new seed, which is convex: the segment
+   * from the new seed to any of its pixels stays within the cell. The pixels along the
+   * segment are neighbours of each other (diagonals included), and each is within half a
+   * pixel diagonal of a point of the cell. So every pixel moving over is reached by
+   * spreading from the new seed through the pixels at most SEARCH_MARGIN further from it
+   * than from their own seed, and nothing else of the image is looked at.
+   *
+   * @param row row of the new seed
+   * @param col column of the new seed
+   * @throws IllegalArgumentException if the seed is outside of the image
+   */
+  public void addSeed(int row, int col) throws IllegalArgumentException {
+    checkSeed(row, col);
+    if (seedCount == 0) {
+      addSeeds(new int[]{row, col});
+      return;
+    }
+    appendSeed(row, col);
+    spreadSeed(seedCount - 1);
+  }
+
+  // moves the pixels closer to a seed (just added) over to it, see addSeed
+  private void spreadSeed(int seed) {
+    int row = seedPoints[seed * 2];
+    int col = seedPoints[seed * 2 + 1];
+    if (lastVisits == null) {
+      lastVisits = new int[width * height];
+      Arrays.fill(lastVisits, -1);
+      pixelStack = new int[1024];
+    }
+
+    // a scanline flood fill: take a pixel off the stack, spread it into a run along its row,
+    // then push the first pixel of every run of candidates just above and below it
+    int stackSize = 0;
+    pixelStack[stackSize++] = row * width + col;
+
+    while (stackSize > 0) {
+      int index = pixelStack[--stackSize];
+      if (lastVisits[index] == seed) {
+        continue;
+      }
+      int runRow = index / width;
+      int rowStart = runRow * width;
+      int left = index - rowStart;
+      int right = left;
+      while (left > 0 && lastVisits[rowStart + left - 1] != seed
+              && isCandidate(seed, runRow, left - 1)) {
+        left--;
+      }
+      while (right < width - 1 && lastVisits[rowStart + right + 1] != seed
+              && isCandidate(seed, runRow, right + 1)) {
+        right++;
+      }
+
+      long deltaRow = runRow - row;
+      // pixels next to each other mostly come from the same seed, so the pixels moving over
+      // are summed here, and taken off their old seed when it changes
+      int movedFrom = -1;
+      long movedRed = 0;
+      long movedGreen = 0;
+      long movedBlue = 0;
+      long movedCount = 0;
+      for (int runCol = left; runCol <= right; runCol++) {
+        int pixel = rowStart + runCol;
+        lastVisits[pixel] = seed;
+        int oldSeed = seedMap[pixel];
+        long deltaCol = runCol - col;
+        long newDistance = deltaRow * deltaRow + deltaCol * deltaCol;
+        long oldDistance = getSquaredDistance(oldSeed, runRow, runCol);
+        // ties go to the lowest seed index (seeds of a batch are not spread in order)
+        if (newDistance < oldDistance || (newDistance == oldDistance && seed < oldSeed)) {
+          if (oldSeed != movedFrom && movedCount > 0) {
+            moveSums(movedFrom, seed, movedRed, movedGreen, movedBlue, movedCount);
+            movedRed = 0;
+            movedGreen = 0;
+            movedBlue = 0;
+            movedCount = 0;
+          }
+          movedFrom = oldSeed;
+          seedMap[pixel] = seed;
+          int rgb = sourcePixels[pixel];
+          movedRed += PixelBuffer.red(rgb);
+          movedGreen += PixelBuffer.green(rgb);
+          movedBlue += PixelBuffer.blue(rgb);
+          movedCount++;
+        }
+      }
+      if (movedCount > 0) {
+        moveSums(movedFrom, seed, movedRed, movedGreen, movedBlue, movedCount);
+      }
+
+      // the rows above and below, one pixel wider for the diagonals
+      for (int nextRow = runRow - 1; nextRow <= runRow + 1; nextRow += 2) {
+        if (nextRow < 0 || nextRow >= height) {
+          continue;
+        }
+        int nextRowStart = nextRow * width;
+        boolean isInRun = false;
+        for (int nextCol = Math.max(0, left - 1); nextCol <= Math.min(width - 1, right + 1);
+             nextCol++) {
+          int pixel = nextRowStart + nextCol;
+          if (lastVisits[pixel] == seed) {
+            isInRun = false;
+          } else if (isCandidate(seed, nextRow, nextCol)) {
+            if (!isInRun) {
+              if (stackSize == pixelStack.length) {
+                pixelStack = Arrays.copyOf(pixelStack, stackSize * 2);
+              }
+              pixelStack[stackSize++] = pixel;
+              isInRun = true;
+            }
+          } else {
+            // looked at once only
+            lastVisits[pixel] = seed;
+            isInRun = false;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Draws the mosaic: every pixel gets the average colour of the pixels of its seed.
+   *
+   * @param output image of the same size to draw in
+   * @throws IllegalArgumentException if the output is not the size of the image, or there
+   *                                  are no seeds yet
+   */
+  public void render(PixelBuffer output) throws IllegalArgumentException {
+    if (output.getWidth() != width || output.getHeight() != height) {
+      throw new IllegalArgumentException("Output shall be the size of the image!");
+    }
+    if (seedCount == 0) {
+      throw new IllegalArgumentException("Seeds shall be added before drawing the mosaic!");
+    }
+
+    int[] seedColors = new int[seedCount];
+    for (int seed = 0; seed < seedCount; seed++) {
+      seedColors[seed] = seedSums.getAverageColor(seed);
+    }
+    int[] pixels = output.getPixels();
+    rowBands.forEachBand(height, (startRow, endRow) -> {
+      for (int index = startRow * width; index < endRow * width; index++) {
+        pixels[index] = seedColors[seedMap[index]];
+      }
+    });
+  }
+
+  /**
+   * Frees the work arrays used to add seeds one by one (one int per pixel). They are made
+   * again by the next seed added, so call this when no seeds will be added for a while.
+   */
+  public void releaseWorkArrays() {
+    lastVisits = null;
+    pixelStack = null;
+  }
+
+  /**
+   * Returns the seed of a pixel.
+   *
+   * @param row row of the pixel
+   * @param col column of the pixel
+   * @return seed index of the nearest seed
+   */
+  public int getSeed(int row, int col) {
+    return seedMap[row * width + col];
+  }
+
+  private void moveSums(int fromSeed, int toSeed, long red, long green, long blue,
+                        long count) {
+    seedSums.add(fromSeed, -red, -green, -blue, -count);
+    seedSums.add(toSeed, red, green, blue, count);
+  }
+
+  private void checkSeed(int row, int col) throws IllegalArgumentException {
+    if (row < 0 || row >= height || col < 0 || col >= width) {
+      throw new IllegalArgumentException("Seeds shall be within the image!");
+    }
+  }
+
+  // adds a seed to the list of seeds, with empty sums
+  private void appendSeed(int row, int col) {
+    int seed = seedCount++;
+    if (seedPoints.length < seedCount * 2) {
+      seedPoints = Arrays.copyOf(seedPoints, Math.max(seedCount * 2, seedPoints.length * 2));
+    }
+    seedPoints[seed * 2] = row;
+    seedPoints[seed * 2 + 1] = col;
+    seedSums.grow(seedPoints.length / 2);
+  }
+
+  // whether a pixel could be in the cell of a new seed, or lead to it (see addSeed): it is
+  // at most SEARCH_MARGIN further from the new seed than from its own seed
+  private boolean isCandidate(int seed, int row, int col) {
+    long newDistance = getSquaredDistance(seed, row, col);
+    long oldDistance = getSquaredDistance(seedMap[row * width + col], row, col);
+    return newDistance < oldDistance
+            || Math.sqrt(newDistance) < Math.sqrt(oldDistance) + SEARCH_MARGIN;
+  }
+
+  private long getSquaredDistance(int seed, int row, int col) {
+    long deltaRow = row - seedPoints[seed * 2];
+    long deltaCol = col - seedPoints[seed * 2 + 1];
+    return deltaRow * deltaRow + deltaCol * deltaCol;
+  }
+}
@@ -0,0 +1,225 @@
+package images;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+
+/**
+ * A packed image buffer used as the backing store of the image model.
+ *
+ * <p>All pixels live in one contiguous integer array, row by row (row-major). Each pixel
+ * is a single integer with the channels packed as 0xRRGGBB, which is the same layout
+ * as BufferedImage.TYPE_INT_RGB. Compared to an int[height][width][3] this avoids one
+ * small array object per pixel, and filter loops walk through memory sequentially.
+ *
+ * <p>Channel index follows the rest of the model: [0] = red; [1] = green; [2] = blue.
+ */
+public class PixelBuffer {
+
+  private final int width; // col
+  private final int height; // row
+  private final int[] pixels;
+
+  /**
+   * Constructs a black image buffer.
+   *
+   * @param width  width of the image
+   * @param height height of the image
+   * @throws IllegalArgumentException if the width or height is not positive
+   */
+  public PixelBuffer(int width, int height) throws IllegalArgumentException {
+    if (width <= 0 || height <= 0) {
+      throw new IllegalArgumentException("Image size must be positive.");
+    }
+    this.width = width;
+    this.height = height;
+    this.pixels = new int[width * height];
+  }
+
+  /**
+   * Constructs an image buffer around an existing packed pixel array. The array is
+   * not copied.
+   *
+   * @param width  width of the image
+   * @param height height of the image
+   * @param pixels packed 0xRRGGBB pixels, row by row
+   * @throws IllegalArgumentException if the array does not match the image size
+   */
+  public PixelBuffer(int width, int height, int[] pixels) throws IllegalArgumentException {
+    if (width <= 0 || height <= 0 || pixels == null || pixels.length != width * height) {
+      throw new IllegalArgumentException("Pixel array does not match the image size.");
+    }
+    this.width = width;
+    this.height = height;
+    this.pixels = pixels;
+  }
+
+  /**
+   * Converts a 3D array of integer values (height, width, channel) into a packed buffer.
+   *
+   * @param rgbData the 3D array of integer values
+   * @return a packed image buffer
+   * @throws IllegalArgumentException if the rgbData is empty
+   */
+  public static PixelBuffer fromArray(int[][][] rgbData) throws IllegalArgumentException {
+    if (rgbData == null || rgbData.length == 0 || rgbData[0].length == 0) {
+      throw new IllegalArgumentException("Invalid image data provided");
+    }
+    PixelBuffer output = new PixelBuffer(rgbData[0].length, rgbData.length);
+    int index = 0;
+    for (int row = 0; row < output.height; row++) {
+      for (int col = 0; col < output.width; col++) {
+        int[] color = rgbData[row][col];
+        output.pixels[index++] = pack(color[0], color[1], color[2]);
+      }
+    }
+    return output;
+  }
+
+  /**
+   * Converts this buffer back to a 3D array of integer values (height, width, channel).
+   *
+   * @return a 3D array of integer values
+   */
+  public int[][][] toArray() {
+    int[][][] output = new int[height][width][3];
+    int index = 0;
+    for (int row = 0; row < height; row++) {
+      for (int col = 0; col < width; col++) {
+        int rgb = pixels[index++];
+        output[row][col][0] = red(rgb);
+        output[row][col][1] = green(rgb);
+        output[row][col][2] = blue(rgb);
+      }
+    }
+    return output;
+  }
+
+  /**
+   * Returns a deep copy of this buffer.
+   *
+   * @return a copy of the image
+   */
+  public PixelBuffer copy() {
+    return new PixelBuffer(width, height, pixels.clone());
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * Returns the backing array. Changes to the array are changes to the image.
+   *
+   * @return packed 0xRRGGBB pixels, row by row
+   */
+  public int[] getPixels() {
+    return pixels;
+  }
+
+  /**
+   * Returns a TYPE_INT_RGB image drawing straight from the backing array. Nothing is
+   * copied: changes to this buffer show in the image, and the other way around.
+   *
+   * @return an image sharing the pixels of this buffer
+   */
+  public BufferedImage toBufferedImage() {
+    DataBufferInt dataBuffer = new DataBufferInt(pixels, pixels.length);
+    int[] masks = new int[]{0xFF0000, 0xFF00, 0xFF};
+    WritableRaster raster = Raster.createPackedRaster(dataBuffer, width, height, width, masks,
+            null);
+    return new BufferedImage(new DirectColorModel(24, masks[0], masks[1], masks[2]), raster,
+            false, null);
+  }
+
+  /**
+   * Returns the position of a pixel in the backing array.
+   *
+   * @param row row of the pixel
+   * @param col column of the pixel
+   * @return index in the backing array
+   */
+  public int getIndex(int row, int col) {
+    return row * width + col;
+  }
+
+  public int getRgb(int row, int col) {
+    return pixels[row * width + col];
+  }
+
+  public void setRgb(int row, int col, int rgb) {
+    pixels[row * width + col] = rgb;
+  }
+
+  /**
+   * Sets a pixel from its three channels. Each channel shall be between 0 and 255.
+   *
+   * @param row   row of the pixel
+   * @param col   column of the pixel
+   * @param red   red channel
+   * @param green green channel
+   * @param blue  blue channel
+   */
+  public void setRgb(int row, int col, int red, int green, int blue) {
+    pixels[row * width + col] = pack(red, green, blue);
+  }
+
+  /**
+   * Returns a single channel of a pixel.
+   *
+   * @param row     row of the pixel
+   * @param col     column of the pixel
+   * @param channel [0] = red; [1] = green; [2] = blue
+   * @return the channel value between 0 and 255
+   */
+  public int getChannel(int row, int col, int channel) {
+    return (pixels[row * width + col] >> (16 - 8 * channel)) & 0xFF;
+  }
+
+  /**
+   * Paints a rectangle of the image with one color. Both ends are inclusive.
+   *
+   * @param rgb      packed color
+   * @param startRow first row
+   * @param endRow   last row
+   * @param startCol first column
+   * @param endCol   last column
+   */
+  public void fill(int rgb, int startRow, int endRow, int startCol, int endCol) {
+    for (int row = startRow; row <= endRow; row++) {
+      int rowStart = row * width;
+      for (int col = startCol; col <= endCol; col++) {
+        pixels[rowStart + col] = rgb;
+      }
+    }
+  }
+
+  // static helpers to pack/unpack a color
+  // color is stored in 1 integer. Each of r,g,b are stored in 8 bits (hence between 0 and 255).
+
+  public static int pack(int red, int green, int blue) {
+    return (red << 16) | (green << 8) | blue;
+  }
+
+  public static int pack(int[] color) {
+    return pack(color[0], color[1], color[2]);
+  }
+
+  public static int red(int rgb) {
+    return (rgb >> 16) & 0xFF;
+  }
+
+  public static int green(int rgb) {
+    return (rgb >> 8) & 0xFF;
+  }
+
+  public static int blue(int rgb) {
+    return rgb & 0xFF;
+  }
+}
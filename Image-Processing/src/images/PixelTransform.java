@@ -0,0 +1,17 @@
+package images;
+
+/**
+ * A transformation where each output pixel only depends on the same input pixel, such as
+ * a color matrix. Pixels are changed in place.
+ */
+public interface PixelTransform {
+
+  /**
+   * Transforms a band of rows of an image in place.
+   *
+   * @param image    image to be processed
+   * @param startRow first row of the band (inclusive)
+   * @param endRow   last row of the band (exclusive)
+   */
+  void applyRows(PixelBuffer image, int startRow, int endRow);
+}
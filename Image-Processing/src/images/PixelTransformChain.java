@@ -0,0 +1,84 @@
+package images;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A list of pixel transforms applied one after the other in a single pass over the image.
+ *
+ * <p>Rather than running each transform over the whole image, the image is walked through
+ * in small blocks of rows that fit in the cpu cache, and every transform is applied to the
+ * block before moving on. Each pixel is read from and written back to memory once, no matter
+ * how many transforms there are, and the result is exactly the same as applying them one
+ * at a time.
+ *
+ * <p>Lookup tables added right after each other are merged into one table as they are
+ * added, so they cost a single lookup per channel.
+ */
+public class PixelTransformChain implements PixelTransform {
+
+  // roughly the number of pixels that fit in the L1 cache (32 KB)
+  private static final int BLOCK_PIXELS = 8192;
+
+  private final List<PixelTransform> transforms;
+
+  /**
+   * Constructs an empty chain.
+   */
+  public PixelTransformChain() {
+    this.transforms = new ArrayList<>();
+  }
+
+  /**
+   * Adds a transform to the end of the chain.
+   *
+   * @param transform transform to apply after the ones already in the chain
+   */
+  public void add(PixelTransform transform) {
+    int last = transforms.size() - 1;
+    if (last >= 0 && transforms.get(last) instanceof LookupTable
+            && transform instanceof LookupTable) {
+      transforms.set(last, ((LookupTable) transforms.get(last)).then((LookupTable) transform));
+    } else {
+      transforms.add(transform);
+    }
+  }
+
+  /**
+   * Removes all transforms from the chain.
+   */
+  public void clear() {
+    transforms.clear();
+  }
+
+  public boolean isEmpty() {
+    return transforms.isEmpty();
+  }
+
+  public int size() {
+    return transforms.size();
+  }
+
+  /**
+   * Applies all transforms of the chain to a band of rows, block by block.
+   *
+   * @param image    image to be processed
+   * @param startRow first row of the band (inclusive)
+   * @param endRow   last row of the band (exclusive)
+   */
+  @Override
+  public void applyRows(PixelBuffer image, int startRow, int endRow) {
+    if (transforms.size() == 1) {
+      transforms.get(0).applyRows(image, startRow, endRow);
+      return;
+    }
+
+    int blockRows = Math.max(1, BLOCK_PIXELS / Math.max(image.getWidth(), 1));
+    for (int blockStart = startRow; blockStart < endRow; blockStart += blockRows) {
+      int blockEnd = Math.min(blockStart + blockRows, endRow);
+      for (PixelTransform transform : transforms) {
+        transform.applyRows(image, blockStart, blockEnd);
+      }
+    }
+  }
+}
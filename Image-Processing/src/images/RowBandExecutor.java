@@ -0,0 +1,110 @@
+package images;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs a per-pixel operation over the rows of an image, either on the calling thread or
+ * split into bands of rows across a ForkJoin pool.
+ *
+ * <p>Each band is handed to the task as a range of rows. Tasks shall only write to rows
+ * of their own band (or to a separate output image), so the result is identical no matter
+ * how many threads are used.
+ */
+public class RowBandExecutor {
+
+  /**
+   * A piece of work done on a band of rows.
+   */
+  public interface RowBandTask {
+
+    /**
+     * Process the rows of one band.
+     *
+     * @param startRow first row of the band (inclusive)
+     * @param endRow   last row of the band (exclusive)
+     */
+    void run(int startRow, int endRow);
+  }
+
+  // bands smaller than this are not worth handing over to another thread
+  private static final int MIN_ROWS_PER_BAND = 16;
+  // cut the image into a few more bands than threads, so busy threads can be helped out
+  private static final int BANDS_PER_THREAD = 4;
+
+  private final int parallelism;
+  private final ForkJoinPool pool;
+
+  /**
+   * Constructs an executor.
+   *
+   * @param parallelism number of threads to use. 1 runs everything on the calling thread.
+   * @throws IllegalArgumentException if the parallelism is not positive
+   */
+  public RowBandExecutor(int parallelism) throws IllegalArgumentException {
+    if (parallelism <= 0) {
+      throw new IllegalArgumentException("Parallelism shall be a positive integer!");
+    }
+    this.parallelism = parallelism;
+    this.pool = parallelism == 1 ? null : new ForkJoinPool(parallelism);
+  }
+
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Runs the task over all rows of an image and waits until every band is done.
+   *
+   * @param rowCount number of rows of the image
+   * @param task     work to do on each band
+   */
+  public void forEachBand(int rowCount, RowBandTask task) {
+    if (pool == null || rowCount <= MIN_ROWS_PER_BAND) {
+      task.run(0, rowCount);
+      return;
+    }
+
+    int rowsPerBand = Math.max(MIN_ROWS_PER_BAND,
+            (rowCount + parallelism * BANDS_PER_THREAD - 1) / (parallelism * BANDS_PER_THREAD));
+    pool.invoke(new BandAction(task, 0, rowCount, rowsPerBand));
+  }
+
+  /**
+   * Stops the threads of this executor. Shall not be used afterwards.
+   */
+  public void shutdown() {
+    if (pool != null) {
+      pool.shutdown();
+    }
+  }
+
+  // splits the rows in half until the band is small enough
+  private static class BandAction extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final RowBandTask task;
+    private final int startRow;
+    private final int endRow;
+    private final int rowsPerBand;
+
+    BandAction(RowBandTask task, int startRow, int endRow, int rowsPerBand) {
+      this.task = task;
+      this.startRow = startRow;
+      this.endRow = endRow;
+      this.rowsPerBand = rowsPerBand;
+    }
+
+    @Override
+    protected void compute() {
+      if (endRow - startRow <= rowsPerBand) {
+        task.run(startRow, endRow);
+        return;
+      }
+      int middleRow = (startRow + endRow) >>> 1;
+      invokeAll(new BandAction(task, startRow, middleRow, rowsPerBand),
+              new BandAction(task, middleRow, endRow, rowsPerBand));
+    }
+  }
+}
@@ -0,0 +1,161 @@
+package images;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The colour sums and pixel counts of the cells of a mosaic, one entry per seed. The average
+ * colour of a cell is its sums divided by its count.
+ *
+ * <p>Sums are kept as longs, so even a cell covering a whole (huge) image cannot overflow,
+ * and the memory used only depends on the number of seeds.
+ */
+public class SeedColorSums {
+
+  // red, green, blue sums and the pixel count, next to each other for each seed
+  private static final int FIELDS = 4;
+
+  private long[] sums;
+
+  /**
+   * Constructs empty sums for a number of seeds.
+   *
+   * @param seeds the number of seeds
+   * @throws IllegalArgumentException if the seed number is negative
+   */
+  public SeedColorSums(int seeds) throws IllegalArgumentException {
+    if (seeds < 0) {
+      throw new IllegalArgumentException("Seed number shall not be a negative number!");
+    }
+    this.sums = new long[seeds * FIELDS];
+  }
+
+  /**
+   * Sums the pixels of an image by the seed each one belongs to. Bands of rows are summed
+   * in parallel, each thread into its own partial sums, which are merged at the end.
+   *
+   * @param pixels   packed pixels of the image, row by row
+   * @param seedMap  the seed of each pixel, row by row
+   * @param seeds    the number of seeds
+   * @param width    width of the image
+   * @param height   height of the image
+   * @param rowBands runs the bands of rows across threads
+   * @return the sums of every seed
+   */
+  public static SeedColorSums accumulate(int[] pixels, int[] seedMap, int seeds, int width,
+                                         int height, RowBandExecutor rowBands) {
+    // a band takes partial sums nobody is using, or makes new ones. So there are never more
+    // partial sums than bands running at the same time
+    ConcurrentLinkedQueue<SeedColorSums> partials = new ConcurrentLinkedQueue<>();
+    rowBands.forEachBand(height, (startRow, endRow) -> {
+      SeedColorSums partial = partials.poll();
+      if (partial == null) {
+        partial = new SeedColorSums(seeds);
+      }
+      for (int index = startRow * width; index < endRow * width; index++) {
+        partial.add(seedMap[index], pixels[index]);
+      }
+      partials.offer(partial);
+    });
+
+    // sums are exact, so the order of merging does not matter
+    SeedColorSums total = partials.poll();
+    for (SeedColorSums partial : partials) {
+      total.merge(partial);
+    }
+    return total;
+  }
+
+  /**
+   * Makes room for more seeds. The new seeds start with no pixels.
+   *
+   * @param seeds the number of seeds to hold
+   */
+  public void grow(int seeds) {
+    if (seeds * FIELDS > sums.length) {
+      sums = Arrays.copyOf(sums, seeds * FIELDS);
+    }
+  }
+
+  /**
+   * Adds a pixel to a seed.
+   *
+   * @param seed the seed the pixel belongs to
+   * @param rgb  the packed colour of the pixel
+   */
+  public void add(int seed, int rgb) {
+    int offset = seed * FIELDS;
+    sums[offset] += PixelBuffer.red(rgb);
+    sums[offset + 1] += PixelBuffer.green(rgb);
+    sums[offset + 2] += PixelBuffer.blue(rgb);
+    sums[offset + 3]++;
+  }
+
+  /**
+   * Adds the sums of several pixels to a seed at once. Negative sums take pixels away.
+   *
+   * @param seed  the seed the pixels belong to
+   * @param red   sum of the red channels
+   * @param green sum of the green channels
+   * @param blue  sum of the blue channels
+   * @param count number of pixels
+   */
+  public void add(int seed, long red, long green, long blue, long count) {
+    int offset = seed * FIELDS;
+    sums[offset] += red;
+    sums[offset + 1] += green;
+    sums[offset + 2] += blue;
+    sums[offset + 3] += count;
+  }
+
+  /**
+   * Takes a pixel away from a seed, which undoes add.
+   *
+   * @param seed the seed the pixel belonged to
+   * @param rgb  the packed colour of the pixel
+   */
+  public void remove(int seed, int rgb) {
+    int offset = seed * FIELDS;
+    sums[offset] -= PixelBuffer.red(rgb);
+    sums[offset + 1] -= PixelBuffer.green(rgb);
+    sums[offset + 2] -= PixelBuffer.blue(rgb);
+    sums[offset + 3]--;
+  }
+
+  /**
+   * Adds the sums of another set of seeds to these ones.
+   *
+   * @param other sums for the same seeds
+   */
+  public void merge(SeedColorSums other) {
+    for (int index = 0; index < sums.length; index++) {
+      sums[index] += other.sums[index];
+    }
+  }
+
+  /**
+   * Gets the number of pixels of a seed.
+   *
+   * @param seed the seed
+   * @return the number of pixels summed into the seed
+   */
+  public long getCount(int seed) {
+    return sums[seed * FIELDS + 3];
+  }
+
+  /**
+   * Gets the average colour of a seed (black if it has no pixels).
+   *
+   * @param seed the seed
+   * @return the packed average colour
+   */
+  public int getAverageColor(int seed) {
+    int offset = seed * FIELDS;
+    long count = sums[offset + 3];
+    if (count == 0) {
+      return 0;
+    }
+    return PixelBuffer.pack((int) (sums[offset] / count), (int) (sums[offset + 1] / count),
+            (int) (sums[offset + 2] / count));
+  }
+}
@@ -0,0 +1,25 @@
+package images;
+
+/**
+ * How the seeds of a mosaic are spread over the image. See SeedSampler.
+ */
+public enum SeedDistribution {
+  /**
+   * Pixels picked uniformly at random. Cells can clump together or leave big gaps.
+   */
+  UNIFORM,
+  /**
+   * One random pixel in each cell of a grid, so cells are of similar sizes.
+   */
+  JITTERED_GRID,
+  /**
+   * Random pixels no closer to each other than a minimum distance (blue noise), the most
+   * even looking cells without a visible grid.
+   */
+  POISSON_DISK,
+  /**
+   * Random pixels picked more often along edges, so details get smaller cells and flat
+   * areas bigger ones.
+   */
+  EDGE_WEIGHTED
+}
@@ -0,0 +1,337 @@
+package images;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Picks the seed points of a mosaic within an image. The points are returned as
+ * [row0, col0, row1, col1, ...], the layout used by VoronoiRasterizer.
+ *
+ * <p>Each sampler draws from its own random generator, so the same random seed always gives
+ * the same points.
+ */
+public class SeedSampler {
+
+  // points per squared radius that Bridson's algorithm packs into an image
+  private static final double POISSON_DENSITY = 0.62;
+  private static final double MIN_POISSON_RADIUS = 2;
+  // new points tried around each point before giving up on it
+  private static final int POISSON_ATTEMPTS = 30;
+  private static final int WEIGHTED_SWEEPS = 8;
+
+  private final int width;
+  private final int height;
+  private final Random random;
+
+  /**
+   * Constructs a sampler for an image.
+   *
+   * @param width      width of the image
+   * @param height     height of the image
+   * @param randomSeed seed of the random generator, to reproduce a run
+   * @throws IllegalArgumentException if the width or height is not positive
+   */
+  public SeedSampler(int width, int height, long randomSeed) throws IllegalArgumentException {
+    if (width <= 0 || height <= 0) {
+      throw new IllegalArgumentException("Width and height shall be positive integers!");
+    }
+    this.width = width;
+    this.height = height;
+    this.random = new Random(randomSeed);
+  }
+
+  /**
+   * Picks distinct pixels uniformly at random (sampling without replacement).
+   *
+   * <p>Uses Floyd's algorithm over the linear pixel indices: memory only depends on the
+   * number of seeds, not on the size of the image.
+   *
+   * @param seeds the number of pixels to pick
+   * @return the picked pixels, as [row, col] pairs
+   * @throws IllegalArgumentException if the number of seeds is not positive or more than
+   *                                  the number of pixels
+   */
+  public int[] uniform(int seeds) throws IllegalArgumentException {
+    checkSeeds(seeds);
+    int[] indices = pickDistinct(seeds, width * height);
+    int[] seedPoints = new int[seeds * 2];
+    for (int seed = 0; seed < seeds; seed++) {
+      seedPoints[seed * 2] = indices[seed] / width;
+      seedPoints[seed * 2 + 1] = indices[seed] % width;
+    }
+    return seedPoints;
+  }
+
+  /**
+   * Picks one pixel at random in each cell of a grid laid over the image (a jittered grid).
+   * Cells are about square. When there are more cells than seeds, the cells that get a seed
+   * are picked at random.
+   *
+   * <p>Seeds are spread more evenly than uniform ones, with no two clumped or far apart.
+   *
+   * @param seeds the number of pixels to pick
+   * @return the picked pixels, as [row, col] pairs
+   * @throws IllegalArgumentException if the number of seeds is not positive or more than
+   *                                  the number of pixels
+   */
+  public int[] jitteredGrid(int seeds) throws IllegalArgumentException {
+    checkSeeds(seeds);
+    // about square cells, at least one pixel each, and at least as many cells as seeds
+    int gridCols = (int) Math.min(width,
+            Math.ceil(Math.sqrt((double) seeds * width / height)));
+    int gridRows = Math.min(height, (seeds + gridCols - 1) / gridCols);
+    gridCols = Math.min(width, (seeds + gridRows - 1) / gridRows);
+
+    int[] cells = pickDistinct(seeds, gridCols * gridRows);
+    int[] seedPoints = new int[seeds * 2];
+    for (int seed = 0; seed < seeds; seed++) {
+      int gridRow = cells[seed] / gridCols;
+      int gridCol = cells[seed] % gridCols;
+      int top = (int) ((long) gridRow * height / gridRows);
+      int bottom = (int) ((long) (gridRow + 1) * height / gridRows);
+      int left = (int) ((long) gridCol * width / gridCols);
+      int right = (int) ((long) (gridCol + 1) * width / gridCols);
+      seedPoints[seed * 2] = top + random.nextInt(bottom - top);
+      seedPoints[seed * 2 + 1] = left + random.nextInt(right - left);
+    }
+    return seedPoints;
+  }
+
+  /**
+   * Picks pixels no closer to each other than a minimum distance (Poisson-disk sampling, a
+   * blue noise), with Bridson's algorithm: new points are tried around the points found so
+   * far, and a background grid of cells holding at most one point each finds the close
+   * points in constant time.
+   * reference: https://www.cs.ubc.ca/~rbridson/docs/bridson-siggraph07-poissondisk.pdf
+   *
+   * <p>The distance is chosen so that the image fills up with about the number of seeds.
+   * The few extra points are dropped at random, missing ones are added at random. When the
+   * seeds are so dense that the distance would be under 2 pixels, the jittered grid is used
+   * instead.
+   *
+   * @param seeds the number of pixels to pick
+   * @return the picked pixels, as [row, col] pairs
+   * @throws IllegalArgumentException if the number of seeds is not positive or more than
+   *                                  the number of pixels
+   */
+  public int[] poissonDisk(int seeds) throws IllegalArgumentException {
+    checkSeeds(seeds);
+    double radius = Math.sqrt(POISSON_DENSITY * width * height / seeds);
+    if (radius < MIN_POISSON_RADIUS) {
+      return jitteredGrid(seeds);
+    }
+
+    // the background grid: cells small enough (radius / sqrt 2) to hold one point only
+    double cellSize = radius / Math.sqrt(2);
+    int gridCols = (int) Math.ceil(width / cellSize);
+    int gridRows = (int) Math.ceil(height / cellSize);
+    int[] grid = new int[gridCols * gridRows];
+    Arrays.fill(grid, -1);
+
+    double[] rows = new double[seeds];
+    double[] cols = new double[seeds];
+    int[] active = new int[seeds];
+    int count = 0;
+    int activeCount = 0;
+    double squaredRadius = radius * radius;
+
+    // start anywhere
+    rows[0] = random.nextDouble() * height;
+    cols[0] = random.nextDouble() * width;
+    grid[(int) (rows[0] / cellSize) * gridCols + (int) (cols[0] / cellSize)] = 0;
+    active[activeCount++] = count++;
+
+    while (activeCount > 0) {
+      int activeIndex = random.nextInt(activeCount);
+      int point = active[activeIndex];
+      boolean isFound = false;
+
+      // try points between 1 and 2 radii around an active point
+      for (int attempt = 0; attempt < POISSON_ATTEMPTS && !isFound; attempt++) {
+        double angle = random.nextDouble() * 2 * Math.PI;
+        double distance = radius * (1 + random.nextDouble());
+        double row = rows[point] + distance * Math.sin(angle);
+        double col = cols[point] + distance * Math.cos(angle);
+        if (row < 0 || row >= height || col < 0 || col >= width) {
+          continue;
+        }
+
+        // a point closer than the radius can only be in the 5x5 cells around
+        int gridRow = (int) (row / cellSize);
+        int gridCol = (int) (col / cellSize);
+        boolean isFar = true;
+        for (int r = Math.max(0, gridRow - 2); r <= Math.min(gridRows - 1, gridRow + 2)
+                && isFar; r++) {
+          for (int c = Math.max(0, gridCol - 2); c <= Math.min(gridCols - 1, gridCol + 2); c++) {
+            int other = grid[r * gridCols + c];
+            if (other >= 0) {
+              double deltaRow = rows[other] - row;
+              double deltaCol = cols[other] - col;
+              if (deltaRow * deltaRow + deltaCol * deltaCol < squaredRadius) {
+                isFar = false;
+                break;
+              }
+            }
+          }
+        }
+
+        if (isFar) {
+          if (count == rows.length) {
+            rows = Arrays.copyOf(rows, count * 2);
+            cols = Arrays.copyOf(cols, count * 2);
+            active = Arrays.copyOf(active, count * 2);
+          }
+          rows[count] = row;
+          cols[count] = col;
+          grid[gridRow * gridCols + gridCol] = count;
+          active[activeCount++] = count++;
+          isFound = true;
+        }
+      }
+
+      if (!isFound) {
+        // nothing fits around this point anymore
+        active[activeIndex] = active[--activeCount];
+      }
+    }
+
+    // the points are at least 2 pixels apart, so each one is on its own pixel
+    int[] picked = new int[hashCapacity(seeds)];
+    Arrays.fill(picked, -1);
+    int[] seedPoints = new int[seeds * 2];
+    int[] kept = count > seeds ? pickDistinct(seeds, count) : null;
+    int seed = 0;
+    for (; seed < Math.min(seeds, count); seed++) {
+      int point = kept == null ? seed : kept[seed];
+      seedPoints[seed * 2] = (int) rows[point];
+      seedPoints[seed * 2 + 1] = (int) cols[point];
+      insert(picked, seedPoints[seed * 2] * width + seedPoints[seed * 2 + 1]);
+    }
+    fillUniform(seedPoints, seed, picked);
+    return seedPoints;
+  }
+
+  /**
+   * Picks distinct pixels at random, each with a chance in proportion to its weight. Weights
+   * taken from the edges of the image put more, smaller cells where there is detail.
+   *
+   * <p>Pixels are drawn in sweeps over the image: the random positions of a sweep are
+   * sorted, then found along the running sum of the weights. Pixels drawn twice are drawn
+   * again in the next sweep. If the weights cannot provide enough pixels, the rest are
+   * picked uniformly.
+   *
+   * @param seeds   the number of pixels to pick
+   * @param weights weight of each pixel (not negative), row by row
+   * @return the picked pixels, as [row, col] pairs
+   * @throws IllegalArgumentException if the number of seeds is not positive or more than
+   *                                  the number of pixels, or a weight is missing or
+   *                                  negative
+   */
+  public int[] weighted(int seeds, int[] weights) throws IllegalArgumentException {
+    checkSeeds(seeds);
+    if (weights.length != width * height) {
+      throw new IllegalArgumentException("There shall be one weight per pixel!");
+    }
+    long total = 0;
+    for (int weight : weights) {
+      if (weight < 0) {
+        throw new IllegalArgumentException("Weights shall not be negative numbers!");
+      }
+      total += weight;
+    }
+
+    int[] picked = new int[hashCapacity(seeds)];
+    Arrays.fill(picked, -1);
+    int[] seedPoints = new int[seeds * 2];
+    int count = 0;
+
+    for (int sweep = 0; sweep < WEIGHTED_SWEEPS && count < seeds && total > 0; sweep++) {
+      long[] positions = new long[seeds - count];
+      for (int i = 0; i < positions.length; i++) {
+        positions[i] = (long) (random.nextDouble() * total);
+      }
+      Arrays.sort(positions);
+
+      // walk the running sum once, taking the pixel under each position
+      long runningSum = 0;
+      int next = 0;
+      for (int index = 0; index < weights.length && next < positions.length; index++) {
+        runningSum += weights[index];
+        if (positions[next] >= runningSum) {
+          continue;
+        }
+        if (insert(picked, index)) {
+          seedPoints[count * 2] = index / width;
+          seedPoints[count * 2 + 1] = index % width;
+          count++;
+        }
+        while (next < positions.length && positions[next] < runningSum) {
+          next++;
+        }
+      }
+    }
+
+    fillUniform(seedPoints, count, picked);
+    return seedPoints;
+  }
+
+  // picks "count" distinct numbers in [0, range) with Floyd's algorithm: for each of the
+  // last "count" numbers j, take a random number up to j, or j itself if that one was
+  // already taken. Every subset is equally likely
+  private int[] pickDistinct(int count, int range) {
+    int[] picked = new int[hashCapacity(count)];
+    Arrays.fill(picked, -1);
+
+    int[] numbers = new int[count];
+    int index = 0;
+    for (int last = range - count; last < range; last++) {
+      int number = random.nextInt(last + 1);
+      if (!insert(picked, number)) {
+        number = last;
+        insert(picked, number);
+      }
+      numbers[index++] = number;
+    }
+    return numbers;
+  }
+
+  // completes the seed points from "count" on with uniform pixels not picked yet
+  private void fillUniform(int[] seedPoints, int count, int[] picked) {
+    while (count < seedPoints.length / 2) {
+      int index = random.nextInt(width * height);
+      if (insert(picked, index)) {
+        seedPoints[count * 2] = index / width;
+        seedPoints[count * 2 + 1] = index % width;
+        count++;
+      }
+    }
+  }
+
+  private void checkSeeds(int seeds) throws IllegalArgumentException {
+    if (seeds <= 0 || seeds > (long) width * height) {
+      throw new IllegalArgumentException(
+              "Seed number shall be a positive integer, not more than the number of pixels!");
+    }
+  }
+
+  // a power of two hash set size, for a set at most half full
+  private static int hashCapacity(int count) {
+    return Integer.highestOneBit(Math.max(count, 2) * 2 - 1) << 1;
+  }
+
+  // adds an index to the hash set, returns false if it was already there
+  private static boolean insert(int[] set, int value) {
+    int mask = set.length - 1;
+    // spread the bits of the index, so rows of pixels do not collide
+    int hash = value * 0x9E3779B9;
+    int slot = (hash ^ (hash >>> 16)) & mask;
+    while (set[slot] != -1) {
+      if (set[slot] == value) {
+        return false;
+      }
+      slot = (slot + 1) & mask;
+    }
+    set[slot] = value;
+    return true;
+  }
+}
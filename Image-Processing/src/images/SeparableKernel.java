@@ -0,0 +1,74 @@
+package images;
+
+/**
+ * A one dimensional convolution kernel with an odd size. A separable 2D filter (such as
+ * the gaussian blur) is applied as one horizontal pass and one vertical pass with this
+ * kernel, so the cost grows with the radius instead of the radius squared.
+ */
+public class SeparableKernel {
+
+  // a gaussian is cut off at 3 sigma, which keeps more than 99% of its weight
+  private static final double GAUSSIAN_CUTOFF = 3.0;
+
+  /**
+   * The largest sigma of a gaussian kernel: a radius of 3000 pixels, wider than most images.
+   * Larger sigmas would need huge kernels (or overflow the radius) for no visible change.
+   */
+  public static final double MAX_SIGMA = 1000;
+
+  private final double[] weights;
+
+  /**
+   * Constructs a kernel from a list of weights.
+   *
+   * @param weights weights of the kernel, the center weight lines up with the pixel
+   * @throws IllegalArgumentException if the number of weights is even
+   */
+  public SeparableKernel(double[] weights) throws IllegalArgumentException {
+    if (weights == null || weights.length % 2 == 0) {
+      throw new IllegalArgumentException("Kernel size must be an odd number.");
+    }
+    this.weights = weights.clone();
+  }
+
+  /**
+   * Builds a normalized gaussian kernel. The radius is 3 sigma, rounded up.
+   *
+   * @param sigma standard deviation of the gaussian, in pixels
+   * @return a gaussian kernel whose weights add up to 1
+   * @throws IllegalArgumentException if sigma is not positive, or larger than MAX_SIGMA
+   */
+  public static SeparableKernel gaussian(double sigma) throws IllegalArgumentException {
+    if (!(sigma > 0 && sigma <= MAX_SIGMA)) {
+      throw new IllegalArgumentException("Sigma shall be a positive number, at most "
+              + MAX_SIGMA + "!");
+    }
+    int radius = (int) Math.ceil(GAUSSIAN_CUTOFF * sigma);
+    double[] weights = new double[2 * radius + 1];
+    double sum = 0;
+
+    for (int i = -radius; i <= radius; i++) {
+      weights[i + radius] = Math.exp(-(i * i) / (2 * sigma * sigma));
+      sum += weights[i + radius];
+    }
+    // normalize, so the brightness of the image stays the same
+    for (int i = 0; i < weights.length; i++) {
+      weights[i] /= sum;
+    }
+    return new SeparableKernel(weights);
+  }
+
+  /**
+   * Returns how far the kernel reaches from its center pixel.
+   *
+   * @return kernel radius
+   */
+  public int getRadius() {
+    return weights.length / 2;
+  }
+
+  // package-private: the engine reads the weights directly
+  double[] getWeights() {
+    return weights;
+  }
+}
@@ -0,0 +1,405 @@
+package images;
+
+import java.util.Arrays;
+
+/**
+ * Sobel edge detection on a single luminance plane.
+ *
+ * <p>The luminance (grayscale intensity) of each pixel is computed once, and both sobel
+ * gradients are then taken in one pass over the 3x3 neighbours:
+ * <pre>
+ *   Gx = | 1  0 -1 |      Gy = |  1  2  1 |
+ *        | 2  0 -2 |           |  0  0  0 |
+ *        | 1  0 -1 |           | -1 -2 -1 |
+ * </pre>
+ * The magnitude of the gradient is scaled to 0 - 255 and written as a gray pixel. Pixels
+ * on the border of the image have no full neighbourhood and are set to black.
+ *
+ * <p>By default the magnitude is the exact sqrt(Gx^2 + Gy^2). When an approximation is
+ * acceptable, the magnitude can be estimated with integer math only (alpha max plus beta
+ * min, within 4% of the exact value).
+ *
+ * <p>The luminance can be smoothed with a gaussian blur first, to keep noise from showing
+ * up as edges. The blur is done on small strips of rows right before the sobel operator
+ * needs them, so the blurred luminance never exists for the whole image at once.
+ */
+public class SobelEdgeDetector {
+
+  // luminance weights, same as the grayscale matrix
+  private static final double RED_WEIGHT = 0.2126;
+  private static final double GREEN_WEIGHT = 0.7152;
+  private static final double BLUE_WEIGHT = 0.0722;
+
+  // magnitude mapped to 255, kept from the original filter: 4 * 256 * sqrt(2). The largest
+  // possible magnitude, 4 * 255 * sqrt(2) = 1442.5, maps to 254
+  private static final double MAX_MAGNITUDE = 1448.154;
+  // 255 / MAX_MAGNITUDE in 18 bit fixed point, for the approximated magnitude
+  private static final int SCALE_FIXED_POINT = 46159;
+  private static final int SCALE_SHIFT = 18;
+  // alpha max plus beta min: alpha = 123 / 128, beta = 51 / 128
+  private static final int ALPHA_128 = 123;
+  private static final int BETA_128 = 51;
+
+  // rows of edges produced per strip when the luminance is smoothed first
+  private static final int STRIP_ROWS = 64;
+
+  // directions of a packed gradient, named by the neighbours lying along the gradient
+  /** Brightness changes from left to right. */
+  public static final int DIRECTION_HORIZONTAL = 0;
+  /** Brightness changes from top left to bottom right. */
+  public static final int DIRECTION_FALLING = 1;
+  /** Brightness changes from top to bottom. */
+  public static final int DIRECTION_VERTICAL = 2;
+  /** Brightness changes from top right to bottom left. */
+  public static final int DIRECTION_RISING = 3;
+
+  // the squared magnitude needs 21 bits (2 * 1020^2), the direction sits above it
+  private static final int DIRECTION_SHIFT = 22;
+  private static final int MAGNITUDE_MASK = (1 << DIRECTION_SHIFT) - 1;
+  // tan(22.5 degrees) and tan(67.5 degrees) in 16 bit fixed point
+  private static final int TAN_22_5 = 27146;
+  private static final int TAN_67_5 = 158217;
+
+  private boolean isApproximate;
+
+  /**
+   * Constructs a detector that computes the exact gradient magnitude.
+   */
+  public SobelEdgeDetector() {
+    this.isApproximate = false;
+  }
+
+  /**
+   * Choose whether to approximate the gradient magnitude instead of using a square root.
+   *
+   * @param isApproximate true to use the integer approximation
+   */
+  public void setApproximateMagnitude(boolean isApproximate) {
+    this.isApproximate = isApproximate;
+  }
+
+  public boolean isApproximateMagnitude() {
+    return isApproximate;
+  }
+
+  /**
+   * Computes the luminance of a band of rows.
+   *
+   * @param source    image to be processed
+   * @param luminance receives one intensity (0 - 255) per pixel, row by row
+   * @param startRow  first row of the band (inclusive)
+   * @param endRow    last row of the band (exclusive)
+   */
+  public void computeLuminanceRows(PixelBuffer source, int[] luminance,
+                                   int startRow, int endRow) {
+    int width = source.getWidth();
+    int[] src = source.getPixels();
+
+    for (int index = startRow * width; index < endRow * width; index++) {
+      luminance[index] = getLuminance(src[index]);
+    }
+  }
+
+  /**
+   * Runs the sobel operator over a band of rows of a luminance plane and writes the edge
+   * magnitude into the output image. The luminance plane is only read, so the output may
+   * be the image the luminance was computed from.
+   *
+   * @param luminance one intensity per pixel, row by row
+   * @param output    image receiving the edges, same size as the luminance plane
+   * @param startRow  first row of the band (inclusive)
+   * @param endRow    last row of the band (exclusive)
+   */
+  public void detectRows(int[] luminance, PixelBuffer output, int startRow, int endRow) {
+    detectRows(luminance, 0, output, startRow, endRow);
+  }
+
+  /**
+   * Same as detectRows, where the luminance array only holds some of the rows of the image.
+   *
+   * @param luminance      one intensity per pixel, row by row
+   * @param luminanceStart the image row stored at the start of the luminance array. It
+   *                       shall hold the rows from startRow - 1 to endRow (inclusive) that
+   *                       are within the image.
+   * @param output         image receiving the edges
+   * @param startRow       first row of the band (inclusive)
+   * @param endRow         last row of the band (exclusive)
+   */
+  public void detectRows(int[] luminance, int luminanceStart, PixelBuffer output,
+                         int startRow, int endRow) {
+    int width = output.getWidth();
+    int height = output.getHeight();
+    int[] dst = output.getPixels();
+
+    for (int row = startRow; row < endRow; row++) {
+      int rowStart = row * width;
+
+      if (row == 0 || row == height - 1) {
+        for (int col = 0; col < width; col++) {
+          dst[rowStart + col] = 0;
+        }
+        continue;
+      }
+
+      // position of the center pixel within the luminance array
+      int center = (row - luminanceStart) * width;
+      dst[rowStart] = 0;
+
+      for (int col = 1; col < width - 1; col++) {
+        int c = center + col;
+        int topLeft = luminance[c - width - 1];
+        int top = luminance[c - width];
+        int topRight = luminance[c - width + 1];
+        int left = luminance[c - 1];
+        int right = luminance[c + 1];
+        int btmLeft = luminance[c + width - 1];
+        int btm = luminance[c + width];
+        int btmRight = luminance[c + width + 1];
+
+        int geeX = (topLeft + 2 * left + btmLeft) - (topRight + 2 * right + btmRight);
+        int geeY = (topLeft + 2 * top + topRight) - (btmLeft + 2 * btm + btmRight);
+
+        int intensity = getIntensity(geeX, geeY);
+        dst[rowStart + col] = PixelBuffer.pack(intensity, intensity, intensity);
+      }
+
+      if (width > 1) {
+        dst[rowStart + width - 1] = 0;
+      }
+    }
+  }
+
+  /**
+   * Smooths the luminance with a gaussian blur, then runs the sobel operator over a band
+   * of rows. The band is processed in strips: the blurred rows of one strip (plus the rows
+   * around it the blur and the sobel operator need) are computed, turned into edges, and
+   * the strip buffers are reused for the next strip. Borders of the blur clamp to the
+   * closest pixel, same as the gaussian blur filter.
+   *
+   * @param luminance one intensity per pixel of the whole image, row by row
+   * @param kernel    gaussian (or any other separable) kernel used for smoothing
+   * @param output    image receiving the edges, same size as the luminance plane
+   * @param startRow  first row of the band (inclusive)
+   * @param endRow    last row of the band (exclusive)
+   */
+  public void detectSmoothedRows(int[] luminance, SeparableKernel kernel, PixelBuffer output,
+                                 int startRow, int endRow) {
+    forEachSmoothedStrip(luminance, kernel, output.getWidth(), output.getHeight(),
+            startRow, endRow, (blurred, blurredStart, stripStart, stripEnd) ->
+                    detectRows(blurred, blurredStart, output, stripStart, stripEnd));
+  }
+
+  /**
+   * Runs the sobel operator over a band of rows and keeps the raw gradient of each pixel
+   * instead of an intensity: the squared magnitude and the direction of the gradient,
+   * rounded to one of four directions, packed into one int (see getSquaredMagnitude and
+   * getDirection). Pixels on the border of the image get a zero gradient.
+   *
+   * @param luminance      one intensity per pixel, row by row
+   * @param luminanceStart the image row stored at the start of the luminance array
+   * @param gradient       receives one packed gradient per pixel of the whole image
+   * @param width          width of the image
+   * @param height         height of the image
+   * @param startRow       first row of the band (inclusive)
+   * @param endRow         last row of the band (exclusive)
+   */
+  public void computeGradientRows(int[] luminance, int luminanceStart, int[] gradient,
+                                  int width, int height, int startRow, int endRow) {
+    for (int row = startRow; row < endRow; row++) {
+      int rowStart = row * width;
+
+      if (row == 0 || row == height - 1) {
+        Arrays.fill(gradient, rowStart, rowStart + width, 0);
+        continue;
+      }
+
+      int center = (row - luminanceStart) * width;
+      gradient[rowStart] = 0;
+
+      for (int col = 1; col < width - 1; col++) {
+        int c = center + col;
+        int topLeft = luminance[c - width - 1];
+        int top = luminance[c - width];
+        int topRight = luminance[c - width + 1];
+        int left = luminance[c - 1];
+        int right = luminance[c + 1];
+        int btmLeft = luminance[c + width - 1];
+        int btm = luminance[c + width];
+        int btmRight = luminance[c + width + 1];
+
+        int geeX = (topLeft + 2 * left + btmLeft) - (topRight + 2 * right + btmRight);
+        int geeY = (topLeft + 2 * top + topRight) - (btmLeft + 2 * btm + btmRight);
+
+        gradient[rowStart + col] = packGradient(geeX, geeY);
+      }
+
+      if (width > 1) {
+        gradient[rowStart + width - 1] = 0;
+      }
+    }
+  }
+
+  /**
+   * Same as computeGradientRows, where the luminance is smoothed with a gaussian blur
+   * first. Works on strips of rows like detectSmoothedRows.
+   *
+   * @param luminance one intensity per pixel of the whole image, row by row
+   * @param kernel    gaussian (or any other separable) kernel used for smoothing
+   * @param gradient  receives one packed gradient per pixel of the whole image
+   * @param width     width of the image
+   * @param height    height of the image
+   * @param startRow  first row of the band (inclusive)
+   * @param endRow    last row of the band (exclusive)
+   */
+  public void computeSmoothedGradientRows(int[] luminance, SeparableKernel kernel,
+                                          int[] gradient, int width, int height,
+                                          int startRow, int endRow) {
+    forEachSmoothedStrip(luminance, kernel, width, height, startRow, endRow,
+        (blurred, blurredStart, stripStart, stripEnd) -> computeGradientRows(blurred,
+                blurredStart, gradient, width, height, stripStart, stripEnd));
+  }
+
+  /**
+   * Returns the squared magnitude of a packed gradient.
+   *
+   * @param gradient packed gradient from computeGradientRows
+   * @return Gx^2 + Gy^2
+   */
+  public static int getSquaredMagnitude(int gradient) {
+    return gradient & MAGNITUDE_MASK;
+  }
+
+  /**
+   * Returns the smallest squared magnitude that the exact magnitude mode turns into at
+   * least the given intensity. Lets thresholds on the 0 - 255 edge intensity be compared
+   * against squared magnitudes without a square root.
+   *
+   * @param intensity edge intensity between 0 and 255
+   * @return the matching squared magnitude
+   */
+  public static int getSquaredMagnitudeThreshold(int intensity) {
+    int magnitude = (int) Math.ceil(intensity * MAX_MAGNITUDE / 255);
+    return magnitude * magnitude;
+  }
+
+  /**
+   * Returns the direction of a packed gradient, one of the DIRECTION constants.
+   *
+   * @param gradient packed gradient from computeGradientRows
+   * @return direction the brightness changes the most in
+   */
+  public static int getDirection(int gradient) {
+    return gradient >>> DIRECTION_SHIFT;
+  }
+
+  /**
+   * Returns the luminance of a packed pixel.
+   *
+   * @param rgb packed 0xRRGGBB pixel
+   * @return intensity between 0 and 255
+   */
+  public static int getLuminance(int rgb) {
+    // same weights and order of operations as the original grayscale filter (in doubles),
+    // so edges stay the same. The grayscale filter now runs in fixed point (ColorMatrix),
+    // which can be off by one from this where the sum is within 1/5000 of a whole number
+    double product = 0.0;
+    product += ((rgb >> 16) & 0xFF) * RED_WEIGHT;
+    product += ((rgb >> 8) & 0xFF) * GREEN_WEIGHT;
+    product += (rgb & 0xFF) * BLUE_WEIGHT;
+    return Math.min((int) product, 255);
+  }
+
+  // squared magnitude in the low bits, direction above it
+  private static int packGradient(int geeX, int geeY) {
+    int absX = Math.abs(geeX);
+    int absY = Math.abs(geeY);
+    int direction;
+    if ((absY << 16) <= absX * TAN_22_5) {
+      direction = DIRECTION_HORIZONTAL;
+    } else if ((absY << 16) >= absX * TAN_67_5) {
+      direction = DIRECTION_VERTICAL;
+    } else {
+      // both gradients have the same sign when the top left is brighter than the bottom
+      // right (or the other way round)
+      direction = (geeX ^ geeY) >= 0 ? DIRECTION_FALLING : DIRECTION_RISING;
+    }
+    return (direction << DIRECTION_SHIFT) | (geeX * geeX + geeY * geeY);
+  }
+
+  // blurs the luminance one strip of rows at a time and hands each strip to the task
+  private void forEachSmoothedStrip(int[] luminance, SeparableKernel kernel, int width,
+                                    int height, int startRow, int endRow, StripTask task) {
+    int radius = kernel.getRadius();
+    double[] weights = kernel.getWeights();
+
+    // strip buffers: the sobel operator needs one extra row above and below the strip,
+    // and the vertical blur needs radius more rows on each side of those
+    int[] horizontalPass = new int[(STRIP_ROWS + 2 + 2 * radius) * width];
+    int[] blurred = new int[(STRIP_ROWS + 2) * width];
+    double[] sums = new double[width];
+
+    for (int stripStart = startRow; stripStart < endRow; stripStart += STRIP_ROWS) {
+      int stripEnd = Math.min(stripStart + STRIP_ROWS, endRow);
+
+      // rows of blurred luminance needed by the sobel operator (inclusive)
+      int blurFirst = Math.max(stripStart - 1, 0);
+      int blurLast = Math.min(stripEnd, height - 1);
+      // rows of horizontally blurred luminance needed by the vertical blur (inclusive)
+      int horizFirst = Math.max(blurFirst - radius, 0);
+      int horizLast = Math.min(blurLast + radius, height - 1);
+
+      // 1. horizontal blur
+      for (int row = horizFirst; row <= horizLast; row++) {
+        int srcStart = row * width;
+        int dstStart = (row - horizFirst) * width;
+        for (int col = 0; col < width; col++) {
+          double sum = 0;
+          for (int k = 0; k < weights.length; k++) {
+            int c = Math.min(Math.max(col + k - radius, 0), width - 1);
+            sum += weights[k] * luminance[srcStart + c];
+          }
+          horizontalPass[dstStart + col] = (int) (sum + 0.5);
+        }
+      }
+
+      // 2. vertical blur, one whole row of the horizontal pass at a time
+      for (int row = blurFirst; row <= blurLast; row++) {
+        Arrays.fill(sums, 0);
+        for (int k = 0; k < weights.length; k++) {
+          int r = Math.min(Math.max(row + k - radius, 0), height - 1);
+          int srcStart = (r - horizFirst) * width;
+          double weight = weights[k];
+          for (int col = 0; col < width; col++) {
+            sums[col] += weight * horizontalPass[srcStart + col];
+          }
+        }
+        int dstStart = (row - blurFirst) * width;
+        for (int col = 0; col < width; col++) {
+          blurred[dstStart + col] = (int) (sums[col] + 0.5);
+        }
+      }
+
+      // 3. sobel operator over the strip
+      task.run(blurred, blurFirst, stripStart, stripEnd);
+    }
+  }
+
+  // work done on one blurred strip
+  private interface StripTask {
+    void run(int[] blurred, int blurredStart, int stripStart, int stripEnd);
+  }
+
+  // scale the gradient magnitude to an intensity between 0 and 255
+  private int getIntensity(int geeX, int geeY) {
+    if (isApproximate) {
+      int absX = Math.abs(geeX);
+      int absY = Math.abs(geeY);
+      int max = Math.max(absX, absY);
+      int min = Math.min(absX, absY);
+      int magnitude = (ALPHA_128 * max + BETA_128 * min) >> 7;
+      return Math.min((magnitude * SCALE_FIXED_POINT) >> SCALE_SHIFT, 255);
+    }
+    int magnitude = (int) Math.sqrt(geeX * geeX + geeY * geeY);
+    return (int) (magnitude * 255 / MAX_MAGNITUDE);
+  }
+}
@@ -0,0 +1,73 @@
+package images;
+
+/**
+ * Finds the closest of a set of 2D integer points. Each point is known by its seed index:
+ * the order in which it was added.
+ *
+ * <p>When several points are just as close, the one with the lowest seed index is the
+ * closest, so every implementation gives the same answers.
+ *
+ * <p>Implementations: KdTree, good for any points, and UniformGrid, faster for many points
+ * spread about evenly. Use create to pick one. To find the closest point of every pixel of
+ * an image, VoronoiRasterizer is much faster than either.
+ */
+public interface SpatialIndex {
+
+  /**
+   * Picks the index for a set of points: a UniformGrid when there are enough points and
+   * none of its cells is crowded (see test/SpatialIndexBenchmark for the crossover),
+   * otherwise a KdTree.
+   *
+   * @param coordinates x and y of each point: [x0, y0, x1, y1, ...]
+   * @return an index of the points
+   * @throws IllegalArgumentException if the number of coordinates is odd
+   */
+  static SpatialIndex create(int[] coordinates) throws IllegalArgumentException {
+    // below a couple thousand points, the tree is just as fast
+    if (coordinates.length / 2 >= 2048) {
+      UniformGrid grid = new UniformGrid(coordinates);
+      // cells hold 2 points on average, random points reach about 12. Clustered points
+      // crowd many more into a cell, and every lookup near them reads them all
+      if (grid.getMaxCellCount() <= 16) {
+        return grid;
+      }
+    }
+    return new KdTree(coordinates);
+  }
+
+  /**
+   * Adds a point. Its seed index is the number of points before it.
+   *
+   * @param inputX x-coordinate of the new point
+   * @param inputY y-coordinate of the new point
+   */
+  void add(int inputX, int inputY);
+
+  /**
+   * Returns the number of points.
+   *
+   * @return number of points
+   */
+  int size();
+
+  /**
+   * Given a point, finds the closest point of the index.
+   *
+   * @param inputX x-coordinate of the point
+   * @param inputY y-coordinate of the point
+   * @return seed index of the closest point, -1 if there are no points
+   */
+  int getNearest(int inputX, int inputY);
+
+  /**
+   * Finds the closest points for a batch of coordinates, optionally split across threads.
+   *
+   * @param coordinates  x and y of each point to look up: [x0, y0, x1, y1, ...]
+   * @param nearestSeeds receives the seed index of the closest point of each coordinate
+   * @param executor     runs the parts of the batch, null to run on the calling thread
+   * @throws IllegalArgumentException if the number of coordinates is odd, or the output
+   *                                  is too short
+   */
+  void getNearest(int[] coordinates, int[] nearestSeeds, RowBandExecutor executor)
+          throws IllegalArgumentException;
+}
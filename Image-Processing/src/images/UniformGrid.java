@@ -0,0 +1,252 @@
+package images;
+
+import java.util.Arrays;
+
+/**
+ * A spatial index that drops points into the square cells of a grid (buckets) laid over the
+ * area they cover. The closest point to a coordinate is searched in rings of cells around
+ * it, until no point further out can be closer.
+ *
+ * <p>For points spread about evenly, a lookup only reads a few cells next to each other in
+ * memory, whatever the number of points. Points crowded into small areas make some cells
+ * very full, a KdTree is better for those.
+ *
+ * <p>Like KdTree, points added after the last query are sorted into the cells on the next
+ * query, and points shall not be added while other threads query the grid.
+ */
+public class UniformGrid implements SpatialIndex {
+
+  // points per cell on average
+  private static final int POINTS_PER_CELL = 2;
+  private static final int INITIAL_CAPACITY = 16;
+
+  private int size;
+  // coordinates by seed index: [x0, y0, x1, y1, ...]
+  private int[] points;
+  private boolean isDirty;
+
+  // the grid: where the cells start, their size and count
+  private int minX;
+  private int minY;
+  private int cellSize;
+  private int gridCols;
+  private int gridRows;
+  // the points of cell i are at positions cellStarts[i] to cellStarts[i + 1], by seed index
+  private int[] cellStarts;
+  private int[] cellPoints;
+  private int[] cellSeeds;
+
+  /**
+   * Constructs an empty grid.
+   */
+  public UniformGrid() {
+    this.size = 0;
+    this.points = new int[INITIAL_CAPACITY * 2];
+    this.isDirty = true;
+  }
+
+  /**
+   * Constructs a grid of points.
+   *
+   * @param coordinates x and y of each point: [x0, y0, x1, y1, ...]
+   * @throws IllegalArgumentException if the number of coordinates is odd
+   */
+  public UniformGrid(int[] coordinates) throws IllegalArgumentException {
+    if (coordinates.length % 2 != 0) {
+      throw new IllegalArgumentException("Coordinates shall come in pairs of x and y!");
+    }
+    this.size = coordinates.length / 2;
+    this.points = Arrays.copyOf(coordinates, Math.max(coordinates.length,
+            INITIAL_CAPACITY * 2));
+    this.isDirty = true;
+  }
+
+  @Override
+  public void add(int inputX, int inputY) {
+    if (2 * size == points.length) {
+      points = Arrays.copyOf(points, points.length * 2);
+    }
+    points[2 * size] = inputX;
+    points[2 * size + 1] = inputY;
+    size++;
+    isDirty = true;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the largest number of points in one cell. Compared to the average, it tells
+   * how evenly the points are spread.
+   *
+   * @return number of points in the fullest cell
+   */
+  public int getMaxCellCount() {
+    if (isDirty) {
+      build();
+    }
+    int max = 0;
+    for (int cell = 0; cell < gridCols * gridRows; cell++) {
+      max = Math.max(max, cellStarts[cell + 1] - cellStarts[cell]);
+    }
+    return max;
+  }
+
+  @Override
+  public int getNearest(int inputX, int inputY) {
+    if (isDirty) {
+      build();
+    }
+    if (size == 0) {
+      return -1;
+    }
+    return nearest(inputX, inputY);
+  }
+
+  @Override
+  public void getNearest(int[] coordinates, int[] nearestSeeds, RowBandExecutor executor)
+          throws IllegalArgumentException {
+    if (coordinates.length % 2 != 0 || nearestSeeds.length < coordinates.length / 2) {
+      throw new IllegalArgumentException(
+              "Coordinates shall come in pairs, with room for one seed per pair!");
+    }
+    if (isDirty) {
+      build();
+    }
+    int count = coordinates.length / 2;
+    if (size == 0) {
+      Arrays.fill(nearestSeeds, 0, count, -1);
+      return;
+    }
+
+    RowBandExecutor.RowBandTask task = (start, end) -> {
+      for (int i = start; i < end; i++) {
+        nearestSeeds[i] = nearest(coordinates[2 * i], coordinates[2 * i + 1]);
+      }
+    };
+    if (executor == null) {
+      task.run(0, count);
+    } else {
+      executor.forEachBand(count, task);
+    }
+  }
+
+  // search rings of cells around the cell of the point (or the closest cell, if the point
+  // is off the grid). Ring r is the border of the (2r + 1) x (2r + 1) block of cells
+  private int nearest(int inputX, int inputY) {
+    int cellCol = Math.min(gridCols - 1, Math.max(0, (inputX - minX) / cellSize));
+    int cellRow = Math.min(gridRows - 1, Math.max(0, (inputY - minY) / cellSize));
+
+    long bestDistance = Long.MAX_VALUE;
+    int bestSeed = -1;
+    for (int ring = 0; ; ring++) {
+      int left = cellCol - ring;
+      int right = cellCol + ring;
+      int top = cellRow - ring;
+      int bottom = cellRow + ring;
+
+      for (int row = Math.max(0, top); row <= Math.min(gridRows - 1, bottom); row++) {
+        // whole rows at the top and bottom of the ring, only the two ends in between
+        boolean isEdgeRow = row == top || row == bottom;
+        int step = isEdgeRow ? 1 : Math.max(1, right - left);
+        for (int col = left; col <= right; col += step) {
+          if (col < 0 || col >= gridCols) {
+            continue;
+          }
+          int cell = row * gridCols + col;
+          for (int position = cellStarts[cell]; position < cellStarts[cell + 1]; position++) {
+            long deltaX = cellPoints[2 * position] - inputX;
+            long deltaY = cellPoints[2 * position + 1] - inputY;
+            long distance = deltaX * deltaX + deltaY * deltaY;
+            int seed = cellSeeds[position];
+            if (distance < bestDistance || (distance == bestDistance && seed < bestSeed)) {
+              bestDistance = distance;
+              bestSeed = seed;
+            }
+          }
+        }
+      }
+
+      // the closest any point of the next rings can be: the way out of the block of cells
+      // searched so far, on the sides where there are more cells
+      long gap = Long.MAX_VALUE;
+      if (left > 0) {
+        gap = Math.min(gap, inputX - (minX + (long) left * cellSize) + 1);
+      }
+      if (right < gridCols - 1) {
+        gap = Math.min(gap, minX + (long) (right + 1) * cellSize - inputX);
+      }
+      if (top > 0) {
+        gap = Math.min(gap, inputY - (minY + (long) top * cellSize) + 1);
+      }
+      if (bottom < gridRows - 1) {
+        gap = Math.min(gap, minY + (long) (bottom + 1) * cellSize - inputY);
+      }
+      if (gap == Long.MAX_VALUE) {
+        // every cell was searched
+        return bestSeed;
+      }
+      if (bestSeed >= 0 && gap > 0 && gap * gap > bestDistance) {
+        return bestSeed;
+      }
+    }
+  }
+
+  // sorts the points into the cells (a counting sort, which keeps the seed order in a cell)
+  private void build() {
+    isDirty = false;
+    if (size == 0) {
+      gridCols = 1;
+      gridRows = 1;
+      cellSize = 1;
+      cellStarts = new int[2];
+      cellPoints = new int[0];
+      cellSeeds = new int[0];
+      return;
+    }
+
+    minX = Integer.MAX_VALUE;
+    minY = Integer.MAX_VALUE;
+    int maxX = Integer.MIN_VALUE;
+    int maxY = Integer.MIN_VALUE;
+    for (int seed = 0; seed < size; seed++) {
+      minX = Math.min(minX, points[2 * seed]);
+      maxX = Math.max(maxX, points[2 * seed]);
+      minY = Math.min(minY, points[2 * seed + 1]);
+      maxY = Math.max(maxY, points[2 * seed + 1]);
+    }
+
+    // cells of about POINTS_PER_CELL points, if the points were spread evenly
+    long spanX = (long) maxX - minX + 1;
+    long spanY = (long) maxY - minY + 1;
+    cellSize = (int) Math.max(1, Math.min(Integer.MAX_VALUE / 2,
+            Math.ceil(Math.sqrt((double) spanX * spanY * POINTS_PER_CELL / size))));
+    gridCols = (int) ((spanX + cellSize - 1) / cellSize);
+    gridRows = (int) ((spanY + cellSize - 1) / cellSize);
+
+    int cellCount = gridCols * gridRows;
+    int[] cellOfSeed = new int[size];
+    cellStarts = new int[cellCount + 1];
+    for (int seed = 0; seed < size; seed++) {
+      int cell = (points[2 * seed + 1] - minY) / cellSize * gridCols
+              + (points[2 * seed] - minX) / cellSize;
+      cellOfSeed[seed] = cell;
+      cellStarts[cell + 1]++;
+    }
+    for (int cell = 0; cell < cellCount; cell++) {
+      cellStarts[cell + 1] += cellStarts[cell];
+    }
+
+    cellPoints = new int[size * 2];
+    cellSeeds = new int[size];
+    int[] next = Arrays.copyOf(cellStarts, cellCount);
+    for (int seed = 0; seed < size; seed++) {
+      int position = next[cellOfSeed[seed]]++;
+      cellPoints[2 * position] = points[2 * seed];
+      cellPoints[2 * position + 1] = points[2 * seed + 1];
+      cellSeeds[position] = seed;
+    }
+  }
+}
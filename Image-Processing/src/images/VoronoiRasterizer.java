@@ -0,0 +1,201 @@
+package images;
+
+import java.util.Arrays;
+
+/**
+ * Assigns every pixel of an image to its nearest seed, which draws the Voronoi diagram of
+ * the seeds on the pixel grid. The result is exact: each pixel gets a seed at the smallest
+ * (euclidean) distance, and when several seeds are just as close, the one with the lowest
+ * seed index, the same as KdTree.getNearest.
+ *
+ * <p>Instead of searching for the nearest seed of each pixel, the diagram is swept in two
+ * scanline passes, so the cost only depends on the size of the image, not on the number of
+ * seeds (the exact euclidean feature transform of Felzenszwalb and Huttenlocher):
+ * <ol>
+ *   <li>columns: each pixel finds the nearest seed in its own column, scanning down and
+ *   then up each column</li>
+ *   <li>rows: each seed found in step 1 is a parabola along the row,
+ *   (x - seedColumn)^2 + (y - seedRow)^2. The lowest of all parabolas at each pixel is the
+ *   nearest seed. The lower envelope of the parabolas is built in one sweep, and read back
+ *   in a second one.</li>
+ * </ol>
+ * Both passes run in parallel bands (of columns, then of rows).
+ * reference: http://cs.brown.edu/people/pfelzens/papers/dt-final.pdf
+ */
+public class VoronoiRasterizer {
+
+  private final int width;
+  private final int height;
+
+  /**
+   * Constructs a rasterizer for images of one size.
+   *
+   * @param width  width of the image
+   * @param height height of the image
+   * @throws IllegalArgumentException if the width or height is not positive
+   */
+  public VoronoiRasterizer(int width, int height) throws IllegalArgumentException {
+    if (width <= 0 || height <= 0) {
+      throw new IllegalArgumentException("Width and height shall be positive integers!");
+    }
+    this.width = width;
+    this.height = height;
+  }
+
+  /**
+   * Finds the nearest seed of every pixel.
+   *
+   * @param seedPoints   row and column of each seed: [row0, col0, row1, col1, ...]
+   * @param nearestSeeds receives the seed index of each pixel, row by row (-1 if there are
+   *                     no seeds)
+   * @param rowBands     runs the passes in bands across threads
+   * @throws IllegalArgumentException if a seed is outside of the image, or the output is
+   *                                  too short
+   */
+  public void assign(int[] seedPoints, int[] nearestSeeds, RowBandExecutor rowBands)
+          throws IllegalArgumentException {
+    if (seedPoints.length % 2 != 0 || nearestSeeds.length < width * height) {
+      throw new IllegalArgumentException(
+              "Seeds shall come in pairs, with room for one seed per pixel!");
+    }
+
+    // place the seeds. When seeds share a pixel, the lowest seed index keeps it
+    Arrays.fill(nearestSeeds, 0, width * height, -1);
+    for (int seed = seedPoints.length / 2 - 1; seed >= 0; seed--) {
+      int row = seedPoints[2 * seed];
+      int col = seedPoints[2 * seed + 1];
+      if (row < 0 || row >= height || col < 0 || col >= width) {
+        throw new IllegalArgumentException("Seeds shall be within the image!");
+      }
+      nearestSeeds[row * width + col] = seed;
+    }
+
+    rowBands.forEachBand(width, (startCol, endCol) ->
+            assignColumns(seedPoints, nearestSeeds, startCol, endCol));
+    rowBands.forEachBand(height, (startRow, endRow) ->
+            assignRows(seedPoints, nearestSeeds, startRow, endRow));
+  }
+
+  // step 1: the nearest seed within the column, for a band of columns. Rows are walked
+  // whole (within the band), so memory is read in order
+  private void assignColumns(int[] seedPoints, int[] nearestSeeds, int startCol, int endCol) {
+    int bandWidth = endCol - startCol;
+    int[] nearestAbove = new int[bandWidth];
+    int[] nearestBelow = new int[bandWidth];
+    Arrays.fill(nearestAbove, -1);
+    Arrays.fill(nearestBelow, -1);
+
+    // scan down: the closest seed above (or on) each pixel
+    for (int row = 0; row < height; row++) {
+      int rowStart = row * width;
+      for (int col = startCol; col < endCol; col++) {
+        int seed = nearestSeeds[rowStart + col];
+        if (seed >= 0) {
+          nearestAbove[col - startCol] = seed;
+        } else {
+          nearestSeeds[rowStart + col] = nearestAbove[col - startCol];
+        }
+      }
+    }
+
+    // scan up: the closest seed below, and keep whichever is closer
+    for (int row = height - 1; row >= 0; row--) {
+      int rowStart = row * width;
+      for (int col = startCol; col < endCol; col++) {
+        int above = nearestSeeds[rowStart + col];
+        if (above >= 0 && seedPoints[2 * above] == row) {
+          // a seed right on this pixel
+          nearestBelow[col - startCol] = above;
+          continue;
+        }
+        int below = nearestBelow[col - startCol];
+        if (below < 0) {
+          continue;
+        }
+        if (above < 0) {
+          nearestSeeds[rowStart + col] = below;
+          continue;
+        }
+        int distanceAbove = row - seedPoints[2 * above];
+        int distanceBelow = seedPoints[2 * below] - row;
+        if (distanceBelow < distanceAbove || (distanceBelow == distanceAbove && below < above)) {
+          nearestSeeds[rowStart + col] = below;
+        }
+      }
+    }
+  }
+
+  // step 2: the nearest seed among the columns, for a band of rows
+  private void assignRows(int[] seedPoints, int[] nearestSeeds, int startRow, int endRow) {
+    // the lower envelope: the columns of its parabolas, and where each parabola starts to be
+    // the lowest, as a fraction (numerator / denominator) so ties are found exactly
+    int[] columnSeeds = new int[width];
+    int[] envelope = new int[width];
+    long[] startNumerators = new long[width];
+    long[] startDenominators = new long[width];
+
+    for (int row = startRow; row < endRow; row++) {
+      int rowStart = row * width;
+      System.arraycopy(nearestSeeds, rowStart, columnSeeds, 0, width);
+
+      // build the envelope from left to right
+      int last = -1;
+      for (int col = 0; col < width; col++) {
+        int seed = columnSeeds[col];
+        if (seed < 0) {
+          continue;
+        }
+        long offset = getOffset(seedPoints, seed, row, col);
+
+        long numerator = 0;
+        long denominator = 1;
+        while (last >= 0) {
+          // where the new parabola gets lower than the last one of the envelope
+          int lastCol = envelope[last];
+          numerator = offset - getOffset(seedPoints, columnSeeds[lastCol], row, lastCol);
+          denominator = 2L * (col - lastCol);
+          // the last parabola is never the lowest (not even tied) if the new one gets lower
+          // before the last one starts, so it leaves the envelope
+          if (last > 0 && numerator * startDenominators[last]
+                  < startNumerators[last] * denominator) {
+            last--;
+          } else {
+            break;
+          }
+        }
+        last++;
+        envelope[last] = col;
+        startNumerators[last] = numerator;
+        startDenominators[last] = denominator;
+      }
+
+      if (last < 0) {
+        // no seeds at all
+        continue;
+      }
+
+      // read the lowest parabola at each pixel
+      int current = 0;
+      for (int col = 0; col < width; col++) {
+        while (current < last
+                && startNumerators[current + 1] < (long) col * startDenominators[current + 1]) {
+          current++;
+        }
+        int seed = columnSeeds[envelope[current]];
+        // parabolas starting right on this pixel are just as low, the lowest seed index wins
+        for (int next = current + 1; next <= last
+                && startNumerators[next] == (long) col * startDenominators[next]; next++) {
+          seed = Math.min(seed, columnSeeds[envelope[next]]);
+        }
+        nearestSeeds[rowStart + col] = seed;
+      }
+    }
+  }
+
+  // the parabola of a seed found in a column, without the terms shared by all parabolas:
+  // (x - col)^2 + dy^2 = x^2 - 2 * x * col + (col^2 + dy^2)
+  private static long getOffset(int[] seedPoints, int seed, int row, int col) {
+    long deltaRow = row - seedPoints[2 * seed];
+    return deltaRow * deltaRow + (long) col * col;
+  }
+}
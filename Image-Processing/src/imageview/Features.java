@@ -42,6 +42,11 @@ public interface Features {
    */
   void applyBlur();
   
+  /**
+   * Apply a gaussian blur. Will prompt user to enter the strength (sigma).
+   */
+  void applyGaussianBlur(String sigma);
+  
   /**
    * Apply a sharpen filter.
    */
@@ -87,6 +92,18 @@ public interface Features {
    */
   void applyEdgeDetection();
   
+  /**
+   * Apply sobel edge detection.
+   *
+   * @param applyBlur smooth the image with a gaussian blur first, to suppress noise
+   */
+  void applyEdgeDetection(boolean applyBlur);
+  
+  /**
+   * Apply canny edge detection. Will prompt user to enter the low and high thresholds.
+   */
+  void applyCannyEdgeDetection(String lowThreshold, String highThreshold);
+  
   /**
    * Apply contrast enhancement.
    */
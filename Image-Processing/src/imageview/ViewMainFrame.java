@@ -62,6 +62,7 @@ public class ViewMainFrame extends JFrame implements View {
   JMenuItem menuExit;
   JMenuItem menuMosaic;
   JMenuItem menuBlur;
+  JMenuItem menuGaussianBlur;
   JMenuItem menuSharpen;
   JMenuItem menuDither;
   JMenuItem menuSepia;
@@ -72,6 +73,8 @@ public class ViewMainFrame extends JFrame implements View {
   JMenuItem menuCrop;
   JMenuItem menuContrastEnhance;
   JMenuItem menuEdgeDetect;
+  JMenuItem menuEdgeDetectSmoothed;
+  JMenuItem menuCannyEdgeDetect;
   JMenuItem menuGenerateFlag;
   JMenuItem menuGenerateRainbowFlag;
   JMenuItem menuGenerateCheckBoard;
@@ -97,7 +100,6 @@ public class ViewMainFrame extends JFrame implements View {
   JScrollPane screenScroll;
   
   BufferedImage img;
-  BufferedImage imgCopy;
   BufferedImage imgCrop;
   BufferedImage imgCropCopy;
   JFileChooser fileChooser;
@@ -181,6 +183,10 @@ public class ViewMainFrame extends JFrame implements View {
     menuBlur.setEnabled(false);
     menu.add(menuBlur);
     
+    menuGaussianBlur = new JMenuItem("Gaussian Blur");
+    menuGaussianBlur.setEnabled(false);
+    menu.add(menuGaussianBlur);
+    
     menuSharpen = new JMenuItem("Sharpen");
     menuSharpen.setAccelerator(KeyStroke
             .getKeyStroke(KeyEvent.VK_3, KeyEvent.CTRL_DOWN_MASK));
@@ -247,6 +253,14 @@ public class ViewMainFrame extends JFrame implements View {
             .getKeyStroke(KeyEvent.VK_8, KeyEvent.CTRL_DOWN_MASK));
     menu.add(menuEdgeDetect);
     
+    menuEdgeDetectSmoothed = new JMenuItem("Edge Detection (Smoothed)");
+    menuEdgeDetectSmoothed.setEnabled(false);
+    menu.add(menuEdgeDetectSmoothed);
+    
+    menuCannyEdgeDetect = new JMenuItem("Canny Edge Detection");
+    menuCannyEdgeDetect.setEnabled(false);
+    menu.add(menuCannyEdgeDetect);
+    
     menuContrastEnhance = new JMenuItem("Contrast Enhancement");
     menuContrastEnhance.setEnabled(false);
     menuContrastEnhance.setAccelerator(KeyStroke
@@ -303,7 +317,6 @@ public class ViewMainFrame extends JFrame implements View {
     
     
     imageLabel = new JLabel(new ImageIcon(img));
-    imgCopy = new BufferedImage(img.getWidth(), img.getHeight(), img.getType());
     imageLabel.addMouseMotionListener(new MainImageMouseMotionListener());
     
     imagePanel = new JPanel();
@@ -382,6 +395,13 @@ public class ViewMainFrame extends JFrame implements View {
     });
     // Menu -> Blur
     menuBlur.addActionListener(l -> f.applyBlur());
+    // Menu -> Gaussian Blur
+    menuGaussianBlur.addActionListener(l -> {
+      String sigma = JOptionPane.showInputDialog("Please enter a sigma for gaussian blur:", 2);
+      if (sigma != null) {
+        f.applyGaussianBlur(sigma);
+      }
+    });
     // Menu -> Sharpen
     menuSharpen.addActionListener(l -> f.applySharpen());
     // Menu -> Dither
@@ -449,6 +469,18 @@ public class ViewMainFrame extends JFrame implements View {
     // Enhance menu
     // Enhance -> Edge Detection
     menuEdgeDetect.addActionListener(l -> f.applyEdgeDetection());
+    menuEdgeDetectSmoothed.addActionListener(l -> f.applyEdgeDetection(true));
+    // Enhance -> Canny Edge Detection
+    menuCannyEdgeDetect.addActionListener(l -> {
+      String low = JOptionPane.showInputDialog("Please enter the low threshold (0 - 255):", 8);
+      if (low == null) {
+        return;
+      }
+      String high = JOptionPane.showInputDialog("Please enter the high threshold (0 - 255):", 20);
+      if (high != null) {
+        f.applyCannyEdgeDetection(low, high);
+      }
+    });
     // Enhance -> Contrast Enhance
     menuContrastEnhance.addActionListener(l -> f.applyContrastEnhancement());
     
@@ -740,10 +772,8 @@ public class ViewMainFrame extends JFrame implements View {
     // update the current image
     img = newImg;
     imgCrop = newImg;
-    imgCopy = new BufferedImage(img.getWidth(), img.getHeight(), img.getType());
     
     imagePanel.remove(imageLabel);
-    //imageLabel = new JLabel(new ImageIcon(imgCopy));
     imageLabel = new JLabel(new ImageIcon(img));
     
     mainMouseListenerActive = true;
@@ -767,6 +797,7 @@ public class ViewMainFrame extends JFrame implements View {
   private void reEnableEdits() {
     menuMosaic.setEnabled(true);
     menuBlur.setEnabled(true);
+    menuGaussianBlur.setEnabled(true);
     menuSharpen.setEnabled(true);
     menuDither.setEnabled(true);
     menuSepia.setEnabled(true);
@@ -777,6 +808,8 @@ public class ViewMainFrame extends JFrame implements View {
     menuGenerateCheckBoard.setEnabled(true);
     menuContrastEnhance.setEnabled(true);
     menuEdgeDetect.setEnabled(true);
+    menuEdgeDetectSmoothed.setEnabled(true);
+    menuCannyEdgeDetect.setEnabled(true);
     menuRevert.setEnabled(true);
     menuRotateClockWise.setEnabled(true);
     menuRotateCounterClockWise.setEnabled(true);
@@ -787,6 +820,7 @@ public class ViewMainFrame extends JFrame implements View {
   private void disableEdits() {
     menuMosaic.setEnabled(false);
     menuBlur.setEnabled(false);
+    menuGaussianBlur.setEnabled(false);
     menuSharpen.setEnabled(false);
     menuDither.setEnabled(false);
     menuSepia.setEnabled(false);
@@ -797,6 +831,8 @@ public class ViewMainFrame extends JFrame implements View {
     menuGenerateCheckBoard.setEnabled(false);
     menuContrastEnhance.setEnabled(false);
     menuEdgeDetect.setEnabled(false);
+    menuEdgeDetectSmoothed.setEnabled(false);
+    menuCannyEdgeDetect.setEnabled(false);
     menuRevert.setEnabled(false);
     menuRotateClockWise.setEnabled(false);
     menuRotateCounterClockWise.setEnabled(false);
@@ -839,7 +875,6 @@ public class ViewMainFrame extends JFrame implements View {
         int[] offset = getWindowOffset();
         start = e.getPoint();
         //start = new Point((int)(start.getX() - offset[0]),(int)(start.getY() - offset[1]));
-        //repaintImg(img, imgCopy);
         repaintImg(imgCrop, imgCropCopy);
         screenCropLabel.repaint();
         //imageLabel.repaint();
@@ -856,7 +891,6 @@ public class ViewMainFrame extends JFrame implements View {
         captureRect = new Rectangle(start,
                 new Dimension(end.x - start.x, end.y - start.y));
   
-        //repaintImg(img, imgCopy);
         repaintImg(imgCrop, imgCropCopy);
         screenCropLabel.repaint();
         //imageLabel.repaint();
@@ -109,6 +109,23 @@ public class ImageControllerConc implements ImageController {
             isError = true;
           }
           break;
+        case "GAUSSIAN":
+          if (fileSelected) {
+            // ask the model to apply a gaussian blur
+            try {
+              model.applyGaussianBlur(Double.parseDouble(tokens[1]));
+            } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+              view.showMessage("Error on line " + (i + 1)
+                      + ". Sigma must be a positive number"
+                      + System.lineSeparator());
+              isError = true;
+            }
+          } else {
+            view.showMessage("Error on line " + (i + 1)
+                    + ". No file loaded." + System.lineSeparator());
+            isError = true;
+          }
+          break;
         case "SHARPEN":
           if (fileSelected) {
             // ask the model to apply a sharpen filter
@@ -137,6 +137,23 @@ public class ImageControllerGui implements Features {
             isError = true;
           }
           break;
+        case "GAUSSIAN":
+          if (fileSelected) {
+            // ask the model to apply a gaussian blur
+            try {
+              model.applyGaussianBlur(Double.parseDouble(tokens[1]));
+            } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+              view.displayMessage("Error on line " + (i + 1)
+                      + ". Sigma must be a positive number"
+                      + System.lineSeparator());
+              isError = true;
+            }
+          } else {
+            view.displayMessage("Error on line " + (i + 1)
+                    + ". No file loaded." + System.lineSeparator());
+            isError = true;
+          }
+          break;
         case "SHARPEN":
           if (fileSelected) {
             // ask the model to apply a sharpen filter
@@ -241,6 +258,19 @@ public class ImageControllerGui implements Features {
     view.updateImage(model.getImage());
   }
   
+  /**
+   * Apply a gaussian blur. Will prompt user to enter the strength (sigma).
+   */
+  @Override
+  public void applyGaussianBlur(String sigma) {
+    try {
+      model.applyGaussianBlur(Double.parseDouble(sigma));
+      view.updateImage(model.getImage());
+    } catch (IllegalArgumentException | NullPointerException e) {
+      view.displayMessage(e.toString());
+    }
+  }
+  
   /**
    * Apply a sharpen filter.
    */
@@ -316,10 +346,34 @@ public class ImageControllerGui implements Features {
    */
   @Override
   public void applyEdgeDetection() {
-    model.applyEdgeDetection(false);
+    applyEdgeDetection(false);
+  }
+  
+  /**
+   * Apply sobel edge detection.
+   *
+   * @param applyBlur smooth the image with a gaussian blur first, to suppress noise
+   */
+  @Override
+  public void applyEdgeDetection(boolean applyBlur) {
+    model.applyEdgeDetection(applyBlur);
     view.updateImage(model.getImage());
   }
   
+  /**
+   * Apply canny edge detection. Will prompt user to enter the low and high thresholds.
+   */
+  @Override
+  public void applyCannyEdgeDetection(String lowThreshold, String highThreshold) {
+    try {
+      model.applyCannyEdgeDetection(Integer.parseInt(lowThreshold),
+              Integer.parseInt(highThreshold));
+      view.updateImage(model.getImage());
+    } catch (IllegalArgumentException e) {
+      view.displayMessage(e.toString());
+    }
+  }
+  
   /**
    * Apply contrast enhancement.
    */
@@ -0,0 +1,137 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import images.ColorMatrix;
+import images.PixelBuffer;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Test class for the fixed point color matrix.
+ */
+public class ColorMatrixTest {
+  
+  private static final double[][] GREYSCALE_MATRIX = new double[][]{
+    {0.2126, 0.7152, 0.0722}, {0.2126, 0.7152, 0.0722}, {0.2126, 0.7152, 0.0722}};
+  
+  private static final double[][] SEPIA_MATRIX = new double[][]{
+    {.393, .769, .189}, {.349, .686, .168}, {.272, .534, .131}};
+  
+  // random pixels, plus black and white
+  private PixelBuffer getImage() {
+    PixelBuffer image = new PixelBuffer(50, 40);
+    int[] pixels = image.getPixels();
+    Random random = new Random(7);
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] = random.nextInt(0x1000000);
+    }
+    pixels[0] = 0;
+    pixels[1] = 0xFFFFFF;
+    return image;
+  }
+  
+  // the same product in doubles, rounded down and clamped
+  private int multiply(double[][] matrix, int rgb) {
+    int[] channels = {PixelBuffer.red(rgb), PixelBuffer.green(rgb), PixelBuffer.blue(rgb)};
+    int[] result = new int[3];
+    for (int r = 0; r < 3; r++) {
+      double sum = matrix[r].length > 3 ? matrix[r][3] : 0;
+      for (int c = 0; c < 3; c++) {
+        sum += matrix[r][c] * channels[c];
+      }
+      result[r] = Math.max(0, Math.min(255, (int) Math.floor(sum)));
+    }
+    return PixelBuffer.pack(result);
+  }
+  
+  // every channel is the double product, give or take one (see ColorMatrix)
+  private void assertMatchesDoubles(double[][] matrix) {
+    PixelBuffer image = getImage();
+    int[] before = image.getPixels().clone();
+    new ColorMatrix(matrix).apply(image);
+    
+    for (int i = 0; i < before.length; i++) {
+      int expected = multiply(matrix, before[i]);
+      int actual = image.getPixels()[i];
+      for (int shift = 0; shift <= 16; shift += 8) {
+        int difference = (expected >> shift & 0xFF) - (actual >> shift & 0xFF);
+        assertTrue("pixel " + i, Math.abs(difference) <= 1);
+      }
+    }
+  }
+  
+  /**
+   * Testing that the identity matrix leaves every pixel as it is.
+   */
+  @Test
+  public void testIdentity() {
+    PixelBuffer image = getImage();
+    int[] before = image.getPixels().clone();
+    new ColorMatrix(new double[][]{{1, 0, 0}, {0, 1, 0}, {0, 0, 1}}).apply(image);
+    for (int i = 0; i < before.length; i++) {
+      assertEquals(before[i], image.getPixels()[i]);
+    }
+  }
+  
+  /**
+   * Testing the grayscale and sepia matrices against the double multiplication.
+   */
+  @Test
+  public void testGreyscaleAndSepia() {
+    assertMatchesDoubles(GREYSCALE_MATRIX);
+    assertMatchesDoubles(SEPIA_MATRIX);
+  }
+  
+  /**
+   * Testing the offset column, and clamping below 0 and above 255.
+   */
+  @Test
+  public void testOffsetAndClamp() {
+    assertMatchesDoubles(new double[][]{{1, 0, 0, 40}, {0, 1, 0, -40}, {-1, 0, 0, 255}});
+    
+    PixelBuffer image = new PixelBuffer(1, 1);
+    image.setRgb(0, 0, 200, 10, 100);
+    new ColorMatrix(new double[][]{{2, 0, 0}, {0, -1, 0}, {0, 0, 1, 0.5}}).apply(image);
+    assertEquals(PixelBuffer.pack(255, 0, 100), image.getRgb(0, 0));
+  }
+  
+  /**
+   * Testing that a band of rows leaves the other rows alone.
+   */
+  @Test
+  public void testApplyRows() {
+    PixelBuffer image = getImage();
+    int[] before = image.getPixels().clone();
+    new ColorMatrix(GREYSCALE_MATRIX).applyRows(image, 10, 20);
+    for (int i = 0; i < before.length; i++) {
+      int row = i / image.getWidth();
+      if (row < 10 || row >= 20) {
+        assertEquals(before[i], image.getPixels()[i]);
+      }
+    }
+  }
+  
+  /**
+   * Testing matrices of the wrong shape.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testWrongShape() {
+    new ColorMatrix(new double[][]{{1, 0}, {0, 1}});
+  }
+  
+  /**
+   * Testing weights out of range.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testWeightOutOfRange() {
+    new ColorMatrix(new double[][]{{17, 0, 0}, {0, 1, 0}, {0, 0, 1}});
+  }
+  
+  /**
+   * Testing weights that are not a number.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testWeightNotANumber() {
+    new ColorMatrix(new double[][]{{Double.NaN, 0, 0}, {0, 1, 0}, {0, 0, 1}});
+  }
+}
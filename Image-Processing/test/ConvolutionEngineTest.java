@@ -0,0 +1,139 @@
+import static org.junit.Assert.assertArrayEquals;
+
+import images.ConvolutionEngine;
+import images.ConvolutionKernel;
+import images.PixelBuffer;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Test class for the ConvolutionEngine, checked against the per pixel, per channel
+ * convolution the model used before the engine.
+ */
+public class ConvolutionEngineTest {
+
+  private static final double[][] BLUR_MATRIX_3x3
+          = new double[][]{{0.0625, 0.125, 0.0625}, {0.125, 0.25, 0.125}, {0.0625, 0.125, 0.0625}};
+
+  private static final double[][] SHARPEN_MATRIX_5x5
+          = new double[][]{{-.125, -.125, -.125, -.125, -.125},
+            {-.125, .25, .25, .25, -.125},
+            {-.125, .25, 1.0, .25, -.125},
+            {-.125, .25, .25, .25, -.125},
+            {-.125, -.125, -.125, -.125, -.125}};
+
+  private PixelBuffer getImage(Random random, int width, int height) {
+    PixelBuffer image = new PixelBuffer(width, height);
+    int[] pixels = image.getPixels();
+    for (int index = 0; index < pixels.length; index++) {
+      pixels[index] = random.nextInt(0x1000000);
+    }
+    return image;
+  }
+
+  // the convolution of the original model: an int sum, truncated after every tap
+  // ("sum += weight * value"), with pixels outside of the image as 0, clamped to 0 - 255
+  private int[] getReference(PixelBuffer image, double[][] matrix) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int radius = matrix.length / 2;
+    int[] result = new int[width * height];
+    for (int row = 0; row < height; row++) {
+      for (int col = 0; col < width; col++) {
+        int[] color = new int[3];
+        for (int channel = 0; channel < 3; channel++) {
+          int sum = 0;
+          for (int r = 0; r < matrix.length; r++) {
+            for (int c = 0; c < matrix.length; c++) {
+              int pixelRow = row + r - radius;
+              int pixelCol = col + c - radius;
+              int value = 0;
+              if (pixelRow >= 0 && pixelRow < height && pixelCol >= 0 && pixelCol < width) {
+                int rgb = image.getRgb(pixelRow, pixelCol);
+                value = (rgb >> (16 - 8 * channel)) & 0xFF;
+              }
+              sum += matrix[r][c] * (double) value;
+            }
+          }
+          color[channel] = Math.min(Math.max(sum, 0), 255);
+        }
+        result[row * width + col] = PixelBuffer.pack(color);
+      }
+    }
+    return result;
+  }
+
+  // convolves in a few bands of rows, the way the model splits the image across threads
+  private int[] convolve(PixelBuffer image, double[][] matrix, int bandRows) {
+    PixelBuffer output = new PixelBuffer(image.getWidth(), image.getHeight());
+    ConvolutionEngine engine = new ConvolutionEngine();
+    ConvolutionKernel kernel = new ConvolutionKernel(matrix);
+    for (int startRow = 0; startRow < image.getHeight(); startRow += bandRows) {
+      engine.applyRows(image, kernel, output, startRow,
+              Math.min(startRow + bandRows, image.getHeight()));
+    }
+    return output.getPixels();
+  }
+
+  /**
+   * Testing the blur kernel against the original convolution, pixel for pixel.
+   */
+  @Test
+  public void testBlur() {
+    Random random = new Random(1);
+    for (int trial = 0; trial < 30; trial++) {
+      PixelBuffer image = getImage(random, 1 + random.nextInt(30), 1 + random.nextInt(30));
+      assertArrayEquals(getReference(image, BLUR_MATRIX_3x3),
+              convolve(image, BLUR_MATRIX_3x3, 1 + random.nextInt(8)));
+    }
+  }
+
+  /**
+   * Testing the sharpen kernel (negative weights) against the original convolution,
+   * pixel for pixel.
+   */
+  @Test
+  public void testSharpen() {
+    Random random = new Random(2);
+    for (int trial = 0; trial < 30; trial++) {
+      PixelBuffer image = getImage(random, 1 + random.nextInt(30), 1 + random.nextInt(30));
+      assertArrayEquals(getReference(image, SHARPEN_MATRIX_5x5),
+              convolve(image, SHARPEN_MATRIX_5x5, 1 + random.nextInt(8)));
+    }
+  }
+
+  /**
+   * Testing random weights in sixty-fourths, positive and negative, which take the fixed
+   * point path of the engine.
+   */
+  @Test
+  public void testPowerOfTwoWeights() {
+    Random random = new Random(4);
+    for (int trial = 0; trial < 20; trial++) {
+      double[][] matrix = new double[5][5];
+      for (int r = 0; r < 5; r++) {
+        for (int c = 0; c < 5; c++) {
+          matrix[r][c] = (random.nextInt(129) - 48) / 64.0;
+        }
+      }
+      PixelBuffer image = getImage(random, 1 + random.nextInt(20), 1 + random.nextInt(20));
+      assertArrayEquals(getReference(image, matrix), convolve(image, matrix, 3));
+    }
+  }
+
+  /**
+   * Testing weights that are not exact in binary, so every tap gets truncated.
+   */
+  @Test
+  public void testUnevenWeights() {
+    Random random = new Random(3);
+    double[][] matrix = new double[3][3];
+    for (int r = 0; r < 3; r++) {
+      for (int c = 0; c < 3; c++) {
+        matrix[r][c] = random.nextDouble() * 0.6 - 0.2;
+      }
+    }
+    PixelBuffer image = getImage(random, 25, 19);
+    assertArrayEquals(getReference(image, matrix), convolve(image, matrix, 4));
+  }
+}
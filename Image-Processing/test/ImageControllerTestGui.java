@@ -289,6 +289,52 @@ public class ImageControllerTestGui {
     assertEquals(expectedView, view.toString());
   }
   
+  @Test
+  public void testCannyEdgeDetection() {
+    // create a controller that utilize both view and controller
+    ImageControllerGui controller = new ImageControllerGui(model);
+    controller.setView(view);
+    
+    controller.applyCannyEdgeDetection("20", "50");
+    controller.applyCannyEdgeDetection("50", "20");
+    controller.applyCannyEdgeDetection("abc", "50");
+    
+    String expectedModel = "[Model] Apply canny edge detection with thresholds: 20, 50"
+            + System.lineSeparator()
+            + "[Model] send out the current image" + System.lineSeparator();
+    
+    assertEquals(expectedModel, model.toString());
+    
+    // check the output of the view is as expected
+    String expectedView = "[View] Give feature callbacks to the view." + System.lineSeparator()
+            + "[View] Image updated" + System.lineSeparator()
+            + "[View] Display Message: java.lang.IllegalArgumentException: Thresholds shall be "
+            + "between 0 and 255, with the low one not above the high one!"
+            + "[View] Display Message: java.lang.NumberFormatException: For input string: "
+            + "\"abc\"";
+    assertEquals(expectedView, view.toString());
+  }
+  
+  @Test
+  public void testEdgeDetectionWithBlur() {
+    // create a controller that utilize both view and controller
+    ImageControllerGui controller = new ImageControllerGui(model);
+    controller.setView(view);
+    
+    controller.applyEdgeDetection(true);
+    
+    String expectedModel = "[Model] Apply edge detection with Gaussian blur."
+            + System.lineSeparator()
+            + "[Model] send out the current image" + System.lineSeparator();
+    
+    assertEquals(expectedModel, model.toString());
+    
+    // check the output of the view is as expected
+    String expectedView = "[View] Give feature callbacks to the view." + System.lineSeparator()
+            + "[View] Image updated" + System.lineSeparator();
+    assertEquals(expectedView, view.toString());
+  }
+  
   @Test
   public void testRainbowFlag() {
     // NOTE: View will check the input validity before sending it to the controller
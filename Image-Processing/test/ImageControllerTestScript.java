@@ -271,4 +271,91 @@ public class ImageControllerTestScript {
     assertEquals(expectedView, view.toString());
   }
   
+  /**
+   * Test a script with a gaussian blur of a chosen sigma.
+   */
+  @Test
+  public void testGaussianBlur() {
+    // create a controller that utilize both view and controller
+    ImageControllerGui controller = new ImageControllerGui(model);
+    controller.setView(view);
+    
+    String[] instruction = new String[]{"load ny-manhattan-bridge.png", "gaussian 2.5",
+      "save ny-manhattan-bridge-gaussian.png"};
+    
+    // pass control to the controller
+    controller.applyFilterScript(instruction);
+    
+    String expectedModel = "[Model] load image from: ny-manhattan-bridge.png"
+            + System.lineSeparator()
+            + "[Model] apply gaussian blur with sigma: 2.5" + System.lineSeparator()
+            + "[Model] save image from: ny-manhattan-bridge-gaussian.png" + System.lineSeparator()
+            + "[Model] send out the current image" + System.lineSeparator();
+    assertEquals(expectedModel, model.toString());
+    // check the output of the view is as expected
+    String expectedView = "[View] Give feature callbacks to the view." + System.lineSeparator()
+            + "[View] Image updated" + System.lineSeparator()
+            + "[View] Display Message: Script running complete!" + System.lineSeparator();
+    assertEquals(expectedView, view.toString());
+  }
+  
+  /**
+   * This Junit test out if the controller will handle a missing, non-numeric or negative sigma.
+   */
+  @Test
+  public void testGaussianBadSigma() {
+    // create a controller that utilize both view and controller
+    ImageControllerGui controller = new ImageControllerGui(model);
+    controller.setView(view);
+    
+    String[] instruction = new String[]{"load ny-manhattan-bridge.png", "gaussian",
+      "gaussian abc", "gaussian -1"};
+    
+    // pass control to the controller
+    controller.applyFilterScript(instruction);
+    
+    String expectedModel = "[Model] load image from: ny-manhattan-bridge.png"
+            + System.lineSeparator();
+    assertEquals(expectedModel, model.toString());
+    // check the output of the view is as expected
+    String expectedView
+            = "[View] Give feature callbacks to the view." + System.lineSeparator()
+            + "[View] Display Message: Error on line 2. Sigma must be a positive number"
+            + System.lineSeparator()
+            + "[View] Display Message: Error on line 3. Sigma must be a positive number"
+            + System.lineSeparator()
+            + "[View] Display Message: Error on line 4. Sigma must be a positive number"
+            + System.lineSeparator()
+            + "[View] Display Message: Script running complete!" + System.lineSeparator();
+    assertEquals(expectedView, view.toString());
+  }
+  
+  /**
+   * This Junit test out if the controller will handle a sigma too large to build a kernel.
+   */
+  @Test
+  public void testGaussianHugeSigma() {
+    // create a controller that utilize both view and controller
+    ImageControllerGui controller = new ImageControllerGui(model);
+    controller.setView(view);
+    
+    String[] instruction = new String[]{"load ny-manhattan-bridge.png", "gaussian 1e9",
+      "gaussian 1000"};
+    
+    // pass control to the controller
+    controller.applyFilterScript(instruction);
+    
+    String expectedModel = "[Model] load image from: ny-manhattan-bridge.png"
+            + System.lineSeparator()
+            + "[Model] apply gaussian blur with sigma: 1000.0" + System.lineSeparator();
+    assertEquals(expectedModel, model.toString());
+    // check the output of the view is as expected
+    String expectedView
+            = "[View] Give feature callbacks to the view." + System.lineSeparator()
+            + "[View] Display Message: Error on line 2. Sigma must be a positive number"
+            + System.lineSeparator()
+            + "[View] Display Message: Script running complete!" + System.lineSeparator();
+    assertEquals(expectedView, view.toString());
+  }
+  
 }
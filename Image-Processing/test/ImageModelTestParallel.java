@@ -0,0 +1,97 @@
+import static org.junit.Assert.assertArrayEquals;
+
+import images.ConcreteImageModel;
+import images.ConvolutionEngine;
+import images.SeedDistribution;
+import java.awt.image.BufferedImage;
+import java.util.function.Consumer;
+import org.junit.Test;
+
+/**
+ * Test class for the parallel filters of the Image Model.
+ * Every filter shall give the same pixels on one thread as on several threads.
+ */
+public class ImageModelTestParallel {
+  
+  private static final String IMAGE = "sample-image/manhattan-small.png";
+  private static final int THREADS = 4;
+  
+  // runs a filter on one thread and on several threads, then compares the pixels
+  private void assertSameOutput(Consumer<ConcreteImageModel> filter) {
+    ConcreteImageModel serial = new ConcreteImageModel(1);
+    ConcreteImageModel parallel = new ConcreteImageModel(THREADS);
+    serial.loadImage(IMAGE);
+    parallel.loadImage(IMAGE);
+    
+    filter.accept(serial);
+    filter.accept(parallel);
+    assertArrayEquals(getPixels(serial.getImage()), getPixels(parallel.getImage()));
+  }
+  
+  private int[] getPixels(BufferedImage image) {
+    return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0,
+            image.getWidth());
+  }
+  
+  /**
+   * Testing the convolution filters.
+   */
+  @Test
+  public void testBlurAndSharpen() {
+    assertSameOutput(ConcreteImageModel::applyBlur);
+    assertSameOutput(ConcreteImageModel::applySharpen);
+    assertSameOutput(model -> model.applyGaussianBlur(2.5));
+    assertSameOutput(model -> model.applyBoxBlur(4, 3));
+    // windows wider than the image, mostly made of repeated border pixels
+    assertSameOutput(model -> model.applyBoxBlur(ConvolutionEngine.MAX_BOX_RADIUS));
+    assertSameOutput(model -> model.applyFastGaussianBlur(300));
+  }
+  
+  /**
+   * Testing a box blur radius too large for the channel sums.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testBoxBlurHugeRadius() {
+    ConcreteImageModel model = new ConcreteImageModel(1);
+    model.loadImage(IMAGE);
+    model.applyBoxBlur(ConvolutionEngine.MAX_BOX_RADIUS + 1);
+  }
+  
+  /**
+   * Testing the color filters, on their own and chained before another filter.
+   */
+  @Test
+  public void testColorFilters() {
+    assertSameOutput(ConcreteImageModel::applyGrayscale);
+    assertSameOutput(ConcreteImageModel::applySepia);
+    assertSameOutput(ConcreteImageModel::applyDither);
+    assertSameOutput(ConcreteImageModel::applyGrayscaleContrastEnhance);
+    assertSameOutput(model -> {
+      model.applySepia();
+      model.applyGamma(1.8);
+      model.applySharpen();
+    });
+  }
+  
+  /**
+   * Testing the edge detection filters.
+   */
+  @Test
+  public void testEdgeDetection() {
+    assertSameOutput(model -> model.applyEdgeDetection(false));
+    assertSameOutput(model -> model.applyEdgeDetection(true));
+    assertSameOutput(model -> model.applyCannyEdgeDetection(20, 60));
+  }
+  
+  /**
+   * Testing the filters that move pixels around, and the mosaic.
+   */
+  @Test
+  public void testGeometryAndMosaic() {
+    assertSameOutput(ConcreteImageModel::rotateImageClockwise);
+    assertSameOutput(ConcreteImageModel::flipImageVertical);
+    assertSameOutput(model -> model.cropImage(10, 20, 300, 150));
+    assertSameOutput(model -> model.applyMosaic(500, 42L));
+    assertSameOutput(model -> model.applyMosaic(500, SeedDistribution.EDGE_WEIGHTED, 42L));
+  }
+}
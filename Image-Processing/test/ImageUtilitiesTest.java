@@ -0,0 +1,78 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import images.ImageUtilities;
+import images.PixelBuffer;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Test class for writing images to files with ImageUtilities.
+ */
+public class ImageUtilitiesTest {
+
+  private PixelBuffer getImage(Random random, int width, int height) {
+    PixelBuffer image = new PixelBuffer(width, height);
+    int[] pixels = image.getPixels();
+    for (int index = 0; index < pixels.length; index++) {
+      pixels[index] = random.nextInt(0x1000000);
+    }
+    return image;
+  }
+
+  // writes an image over a larger file, then reads it back
+  private PixelBuffer writeAndRead(PixelBuffer image, String extension) throws IOException {
+    File file = File.createTempFile("image-utilities-test", "." + extension);
+    try {
+      Files.write(file.toPath(), new byte[1 << 20]);
+      ImageUtilities.writeImage(image, file.getPath());
+      return ImageUtilities.readImageBuffer(file.getPath());
+    } finally {
+      file.delete();
+    }
+  }
+
+  /**
+   * Testing that lossless formats give back the same pixels, larger than the write buffer
+   * (so the writer seeks back into what it already wrote), over a file that was longer.
+   */
+  @Test
+  public void testWriteLossless() throws IOException {
+    PixelBuffer image = getImage(new Random(1), 300, 250);
+    for (String extension : new String[]{"png", "bmp"}) {
+      PixelBuffer read = writeAndRead(image, extension);
+      assertEquals(300, read.getWidth());
+      assertEquals(250, read.getHeight());
+      assertArrayEquals(image.getPixels(), read.getPixels());
+    }
+  }
+
+  /**
+   * Testing a small JPEG image, which only keeps its size.
+   */
+  @Test
+  public void testWriteJpeg() throws IOException {
+    PixelBuffer read = writeAndRead(getImage(new Random(2), 17, 9), "jpg");
+    assertEquals(17, read.getWidth());
+    assertEquals(9, read.getHeight());
+  }
+
+  /**
+   * Testing an extension without an image writer.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testWriteUnknownExtension() {
+    ImageUtilities.writeImage(new PixelBuffer(2, 2), "image.unknown");
+  }
+
+  /**
+   * Testing a file that cannot be created.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testWriteMissingDirectory() {
+    ImageUtilities.writeImage(new PixelBuffer(2, 2), "no-such-directory/image.png");
+  }
+}
@@ -0,0 +1,180 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import images.KdTree;
+import images.RowBandExecutor;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Test class for the flat array KdTree, checked against a brute force search.
+ */
+public class KdTreeTest {
+  
+  // points on a small area, so many of them tie (duplicates, same rows and columns)
+  private int[] getPoints(Random random, int count, int range) {
+    int[] points = new int[count * 2];
+    for (int i = 0; i < points.length; i++) {
+      points[i] = random.nextInt(range);
+    }
+    return points;
+  }
+  
+  private long getSquaredDistance(int[] points, int seed, int inputX, int inputY) {
+    long deltaX = points[2 * seed] - inputX;
+    long deltaY = points[2 * seed + 1] - inputY;
+    return deltaX * deltaX + deltaY * deltaY;
+  }
+  
+  // all seeds sorted closest first, ties by seed index
+  private Integer[] getSortedSeeds(int[] points, int inputX, int inputY) {
+    Integer[] seeds = new Integer[points.length / 2];
+    for (int i = 0; i < seeds.length; i++) {
+      seeds[i] = i;
+    }
+    Arrays.sort(seeds, (first, second) -> {
+      int compare = Long.compare(getSquaredDistance(points, first, inputX, inputY),
+              getSquaredDistance(points, second, inputX, inputY));
+      return compare != 0 ? compare : Integer.compare(first, second);
+    });
+    return seeds;
+  }
+  
+  /**
+   * Testing the closest point against a brute force search, ties going to the lowest seed
+   * index, including queries away from the points.
+   */
+  @Test
+  public void testGetNearest() {
+    Random random = new Random(1);
+    for (int trial = 0; trial < 200; trial++) {
+      int[] points = getPoints(random, 1 + random.nextInt(60), 1 + random.nextInt(30));
+      KdTree tree = new KdTree(points);
+      for (int query = 0; query < 50; query++) {
+        int inputX = random.nextInt(50) - 10;
+        int inputY = random.nextInt(50) - 10;
+        assertEquals((int) getSortedSeeds(points, inputX, inputY)[0],
+                tree.getNearest(inputX, inputY));
+      }
+    }
+  }
+  
+  /**
+   * Testing batch queries, on the calling thread and split across threads.
+   */
+  @Test
+  public void testGetNearestBatch() {
+    Random random = new Random(2);
+    int[] points = getPoints(random, 500, 200);
+    KdTree tree = new KdTree(points);
+    int[] coordinates = getPoints(random, 3000, 220);
+    
+    int[] expected = new int[3000];
+    for (int i = 0; i < expected.length; i++) {
+      expected[i] = tree.getNearest(coordinates[2 * i], coordinates[2 * i + 1]);
+    }
+    int[] serial = new int[3000];
+    tree.getNearest(coordinates, serial);
+    assertArrayEquals(expected, serial);
+    
+    RowBandExecutor executor = new RowBandExecutor(4);
+    int[] parallel = new int[3000];
+    tree.getNearest(coordinates, parallel, executor);
+    executor.shutdown();
+    assertArrayEquals(expected, parallel);
+  }
+  
+  /**
+   * Testing the k closest points, closest first, with their squared distances.
+   */
+  @Test
+  public void testGetKNearest() {
+    Random random = new Random(3);
+    for (int trial = 0; trial < 100; trial++) {
+      int[] points = getPoints(random, 1 + random.nextInt(40), 1 + random.nextInt(20));
+      KdTree tree = new KdTree(points);
+      int k = 1 + random.nextInt(10);
+      int inputX = random.nextInt(25);
+      int inputY = random.nextInt(25);
+      Integer[] sorted = getSortedSeeds(points, inputX, inputY);
+      
+      int[] seeds = new int[k];
+      long[] distances = new long[k];
+      int count = tree.getNearest(inputX, inputY, k, seeds, distances);
+      assertEquals(Math.min(k, sorted.length), count);
+      for (int i = 0; i < count; i++) {
+        assertEquals((int) sorted[i], seeds[i]);
+        assertEquals(getSquaredDistance(points, sorted[i], inputX, inputY), distances[i]);
+      }
+    }
+  }
+  
+  /**
+   * Testing the points within a radius, border included.
+   */
+  @Test
+  public void testGetWithinRadius() {
+    Random random = new Random(4);
+    for (int trial = 0; trial < 100; trial++) {
+      int[] points = getPoints(random, 1 + random.nextInt(60), 30);
+      KdTree tree = new KdTree(points);
+      int radius = random.nextInt(12);
+      int inputX = random.nextInt(30);
+      int inputY = random.nextInt(30);
+      
+      int[] found = new int[points.length / 2];
+      int count = tree.getWithinRadius(inputX, inputY, radius, found);
+      int[] expected = new int[points.length / 2];
+      int expectedCount = 0;
+      for (int seed = 0; seed < points.length / 2; seed++) {
+        if (getSquaredDistance(points, seed, inputX, inputY) <= (long) radius * radius) {
+          expected[expectedCount++] = seed;
+        }
+      }
+      assertEquals(expectedCount, count);
+      int[] sortedFound = Arrays.copyOf(found, count);
+      Arrays.sort(sortedFound);
+      assertArrayEquals(Arrays.copyOf(expected, expectedCount), sortedFound);
+    }
+  }
+  
+  /**
+   * Testing points added after the tree was built, and an empty tree.
+   */
+  @Test
+  public void testAddAndEmpty() {
+    KdTree tree = new KdTree();
+    assertEquals(-1, tree.getNearest(3, 4));
+    assertFalse(tree.present(3, 4));
+    
+    tree.add(10, 10);
+    tree.add(0, 0);
+    assertEquals(1, tree.getNearest(3, 4));
+    tree.add(3, 4);
+    assertEquals(2, tree.getNearest(3, 4));
+    assertTrue(tree.present(3, 4));
+    // same point again: the first one wins the tie
+    tree.add(3, 4);
+    assertEquals(2, tree.getNearest(3, 4));
+    assertEquals(4, tree.size());
+  }
+  
+  /**
+   * Testing coordinates that do not come in pairs.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testOddCoordinates() {
+    new KdTree(new int[]{1, 2, 3});
+  }
+  
+  /**
+   * Testing a k that is not positive.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadK() {
+    new KdTree(new int[]{1, 2}).getNearest(0, 0, 0, new int[1]);
+  }
+}
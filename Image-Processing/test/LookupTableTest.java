@@ -0,0 +1,145 @@
+import static org.junit.Assert.assertEquals;
+
+import images.LookupTable;
+import images.PixelBuffer;
+import org.junit.Test;
+
+/**
+ * Test class for the lookup table tone operations.
+ */
+public class LookupTableTest {
+  
+  // runs a table over one pixel
+  private int map(LookupTable table, int rgb) {
+    PixelBuffer image = new PixelBuffer(1, 1);
+    image.setRgb(0, 0, rgb);
+    table.applyRows(image, 0, 1);
+    return image.getRgb(0, 0);
+  }
+  
+  // runs a table over one grey value, and returns the (red) output
+  private int mapGrey(LookupTable table, int value) {
+    return PixelBuffer.red(map(table, PixelBuffer.pack(value, value, value)));
+  }
+  
+  /**
+   * Testing the identity, invert and threshold tables.
+   */
+  @Test
+  public void testSimpleTables() {
+    for (int v = 0; v < 256; v++) {
+      assertEquals(v, mapGrey(LookupTable.identity(), v));
+      assertEquals(255 - v, mapGrey(LookupTable.invert(), v));
+      assertEquals(v >= 100 ? 255 : 0, mapGrey(LookupTable.threshold(100), v));
+    }
+  }
+  
+  /**
+   * Testing gamma and levels against their formulas.
+   */
+  @Test
+  public void testGammaAndLevels() {
+    LookupTable gamma = LookupTable.gamma(2.2);
+    assertEquals(0, mapGrey(gamma, 0));
+    assertEquals(255, mapGrey(gamma, 255));
+    assertEquals((int) Math.round(255 * Math.pow(64 / 255.0, 1 / 2.2)), mapGrey(gamma, 64));
+    
+    // 50 - 150 stretched to 0 - 200, clipped outside
+    LookupTable levels = LookupTable.levels(50, 150, 1, 0, 200);
+    assertEquals(0, mapGrey(levels, 20));
+    assertEquals(100, mapGrey(levels, 100));
+    assertEquals(200, mapGrey(levels, 240));
+  }
+  
+  /**
+   * Testing a curve through a few points, flat before and after them.
+   */
+  @Test
+  public void testCurve() {
+    LookupTable curve = LookupTable.curve(new int[]{10, 110, 210}, new int[]{20, 220, 120});
+    assertEquals(20, mapGrey(curve, 0));
+    assertEquals(20, mapGrey(curve, 10));
+    assertEquals(120, mapGrey(curve, 60));
+    assertEquals(220, mapGrey(curve, 110));
+    assertEquals(170, mapGrey(curve, 160));
+    assertEquals(120, mapGrey(curve, 255));
+  }
+  
+  /**
+   * Testing posterize keeps only evenly spaced values.
+   */
+  @Test
+  public void testPosterize() {
+    LookupTable posterize = LookupTable.posterize(3);
+    assertEquals(0, mapGrey(posterize, 50));
+    assertEquals(128, mapGrey(posterize, 128));
+    assertEquals(255, mapGrey(posterize, 220));
+  }
+  
+  /**
+   * Testing equalization of a histogram with two values.
+   */
+  @Test
+  public void testEqualization() {
+    int[] histogram = new int[256];
+    histogram[10] = 3;
+    histogram[200] = 1;
+    LookupTable equalization = LookupTable.equalization(histogram);
+    assertEquals(0, mapGrey(equalization, 5));
+    assertEquals(3 * 255 / 4, mapGrey(equalization, 10));
+    assertEquals(255, mapGrey(equalization, 200));
+  }
+  
+  /**
+   * Testing that a merged table gives the same result as both tables one after the other,
+   * per channel.
+   */
+  @Test
+  public void testThenAndCombine() {
+    LookupTable first = LookupTable.combine(LookupTable.invert(), LookupTable.gamma(1.5),
+            LookupTable.identity());
+    LookupTable second = LookupTable.posterize(5);
+    LookupTable merged = first.then(second);
+    for (int rgb = 0; rgb < 0x1000000; rgb += 0x010307) {
+      assertEquals(map(second, map(first, rgb)), map(merged, rgb));
+    }
+    // each channel keeps its own table
+    int rgb = PixelBuffer.pack(10, 10, 10);
+    assertEquals(PixelBuffer.pack(245, mapGrey(LookupTable.gamma(1.5), 10), 10),
+            map(first, rgb));
+  }
+  
+  /**
+   * Testing tables of the wrong size.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testWrongSize() {
+    new LookupTable(new int[255]);
+  }
+  
+  /**
+   * Testing table values out of range.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testValueOutOfRange() {
+    int[] table = new int[256];
+    table[3] = 256;
+    new LookupTable(table);
+  }
+  
+  /**
+   * Testing curve inputs that do not increase.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testCurveNotIncreasing() {
+    LookupTable.curve(new int[]{10, 10}, new int[]{0, 255});
+  }
+  
+  /**
+   * Testing an empty histogram.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testEmptyHistogram() {
+    LookupTable.equalization(new int[256]);
+  }
+}
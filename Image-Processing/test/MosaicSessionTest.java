@@ -0,0 +1,311 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import images.ConcreteImageModel;
+import images.MosaicSession;
+import images.PixelBuffer;
+import images.RowBandExecutor;
+import images.SeedColorSums;
+import images.SeedSampler;
+import images.VoronoiRasterizer;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Test class for the MosaicSession: seeds added in any number of steps shall give the same
+ * mosaic as all the seeds drawn at once.
+ */
+public class MosaicSessionTest {
+
+  private static final String IMAGE = "sample-image/manhattan-small.png";
+
+  private PixelBuffer getImage(Random random, int width, int height) {
+    PixelBuffer image = new PixelBuffer(width, height);
+    int[] pixels = image.getPixels();
+    for (int index = 0; index < pixels.length; index++) {
+      pixels[index] = random.nextInt(0x1000000);
+    }
+    return image;
+  }
+
+  private int[] getSeeds(Random random, int count, int width, int height) {
+    int[] seeds = new int[count * 2];
+    for (int seed = 0; seed < count; seed++) {
+      seeds[2 * seed] = random.nextInt(height);
+      seeds[2 * seed + 1] = random.nextInt(width);
+    }
+    return seeds;
+  }
+
+  // compares the session against all its seeds drawn at once
+  private void checkSession(MosaicSession session, PixelBuffer image, int[] allSeeds,
+                            RowBandExecutor rowBands) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int seeds = allSeeds.length / 2;
+    assertEquals(seeds, session.getSeedCount());
+
+    int[] seedMap = new int[width * height];
+    new VoronoiRasterizer(width, height).assign(allSeeds, seedMap, rowBands);
+    for (int row = 0; row < height; row++) {
+      for (int col = 0; col < width; col++) {
+        assertEquals(seedMap[row * width + col], session.getSeed(row, col));
+      }
+    }
+
+    SeedColorSums sums = SeedColorSums.accumulate(image.getPixels(), seedMap, seeds, width,
+            height, rowBands);
+    int[] expected = new int[width * height];
+    for (int index = 0; index < expected.length; index++) {
+      expected[index] = sums.getAverageColor(seedMap[index]);
+    }
+    PixelBuffer output = new PixelBuffer(width, height);
+    session.render(output);
+    assertArrayEquals(expected, output.getPixels());
+  }
+
+  private int[] concat(int[] first, int[] second) {
+    int[] both = Arrays.copyOf(first, first.length + second.length);
+    System.arraycopy(second, 0, both, first.length, second.length);
+    return both;
+  }
+
+  /**
+   * Testing seeds added in batches and one by one, on random images, against all the
+   * seeds drawn at once after each step. Seeds are crowded, so many of them share pixels
+   * or tie.
+   */
+  @Test
+  public void testAddSeeds() {
+    Random random = new Random(1);
+    RowBandExecutor rowBands = new RowBandExecutor(4);
+    try {
+      for (int trial = 0; trial < 30; trial++) {
+        int width = 1 + random.nextInt(50);
+        int height = 1 + random.nextInt(50);
+        PixelBuffer image = getImage(random, width, height);
+        MosaicSession session = new MosaicSession(image, rowBands);
+        int[] allSeeds = new int[0];
+
+        for (int step = 0; step < 6; step++) {
+          if (step % 2 == 0) {
+            int[] batch = getSeeds(random, 1 + random.nextInt(20), width, height);
+            session.addSeeds(batch);
+            allSeeds = concat(allSeeds, batch);
+          } else {
+            for (int single = 0; single < 3; single++) {
+              int[] seed = getSeeds(random, 1, width, height);
+              session.addSeed(seed[0], seed[1]);
+              allSeeds = concat(allSeeds, seed);
+            }
+          }
+          checkSession(session, image, allSeeds, rowBands);
+        }
+      }
+    } finally {
+      rowBands.shutdown();
+    }
+  }
+
+  /**
+   * Testing a large batch added to a few seeds, which draws the whole map again, then small
+   * batches added to many seeds, which are spread one by one.
+   */
+  @Test
+  public void testAddSeedsLargeAndSmall() {
+    Random random = new Random(4);
+    PixelBuffer image = getImage(random, 60, 40);
+    RowBandExecutor rowBands = new RowBandExecutor(2);
+    try {
+      MosaicSession session = new MosaicSession(image, rowBands);
+      int[] allSeeds = getSeeds(random, 3, 60, 40);
+      session.addSeeds(allSeeds);
+      for (int batch : new int[]{6, 200, 100, 150, 1000}) {
+        int[] seeds = getSeeds(random, batch, 60, 40);
+        session.addSeeds(seeds);
+        allSeeds = concat(allSeeds, seeds);
+        checkSession(session, image, allSeeds, rowBands);
+      }
+      session.addSeed(20, 30);
+      checkSession(session, image, concat(allSeeds, new int[]{20, 30}), rowBands);
+    } finally {
+      rowBands.shutdown();
+    }
+  }
+
+  /**
+   * Testing a first seed added on its own, and a seed on the same pixel as an old one,
+   * which takes no pixels.
+   */
+  @Test
+  public void testAddSeedFirst() {
+    PixelBuffer image = getImage(new Random(2), 20, 10);
+    RowBandExecutor rowBands = new RowBandExecutor(1);
+    try {
+      MosaicSession session = new MosaicSession(image, rowBands);
+      session.addSeed(3, 4);
+      checkSession(session, image, new int[]{3, 4}, rowBands);
+      session.addSeed(8, 15);
+      session.addSeed(3, 4);
+      checkSession(session, image, new int[]{3, 4, 8, 15, 3, 4}, rowBands);
+    } finally {
+      rowBands.shutdown();
+    }
+  }
+
+  /**
+   * Testing that the session keeps its own copy of the image.
+   */
+  @Test
+  public void testSourceCopied() {
+    PixelBuffer image = getImage(new Random(3), 8, 8);
+    PixelBuffer source = image.copy();
+    RowBandExecutor rowBands = new RowBandExecutor(1);
+    try {
+      MosaicSession session = new MosaicSession(image, rowBands);
+      session.addSeeds(new int[]{1, 1, 6, 6});
+      // drawing over the image it came from changes nothing
+      session.render(image);
+      session.addSeed(1, 6);
+      checkSession(session, source, new int[]{1, 1, 6, 6, 1, 6}, rowBands);
+    } finally {
+      rowBands.shutdown();
+    }
+  }
+
+  /**
+   * Testing a seed outside of the image.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testSeedOutside() {
+    MosaicSession session = new MosaicSession(new PixelBuffer(5, 5), new RowBandExecutor(1));
+    session.addSeeds(new int[]{1, 1});
+    session.addSeed(5, 0);
+  }
+
+  /**
+   * Testing a seed missing its column.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testOddSeeds() {
+    new MosaicSession(new PixelBuffer(5, 5), new RowBandExecutor(1)).addSeeds(new int[]{1});
+  }
+
+  /**
+   * Testing drawing before any seed.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testRenderNoSeeds() {
+    new MosaicSession(new PixelBuffer(5, 5), new RowBandExecutor(1))
+            .render(new PixelBuffer(5, 5));
+  }
+
+  /**
+   * Testing drawing into an image of another size.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testRenderWrongSize() {
+    MosaicSession session = new MosaicSession(new PixelBuffer(5, 5), new RowBandExecutor(1));
+    session.addSeeds(new int[]{1, 1});
+    session.render(new PixelBuffer(5, 4));
+  }
+
+  /**
+   * Testing that refining a mosaic in the model gives the mosaic of all the seeds: the
+   * seeds of applyMosaic, then the new ones.
+   */
+  @Test
+  public void testRefineMosaic() {
+    ConcreteImageModel model = new ConcreteImageModel(2);
+    model.loadImage(IMAGE);
+    int width = model.getImage().getWidth();
+    int height = model.getImage().getHeight();
+    int[] source = model.getImage().getRGB(0, 0, width, height, null, 0, width);
+
+    model.applyMosaic(300, 42L);
+    model.refineMosaic(200, 7L);
+    // looking at the image does not change it, so the mosaic can still be refined
+    model.getImage();
+    model.refineMosaic(1, 8L);
+
+    int[] allSeeds = concat(concat(new SeedSampler(width, height, 42L).uniform(300),
+            new SeedSampler(width, height, 7L).uniform(200)),
+            new SeedSampler(width, height, 8L).uniform(1));
+    PixelBuffer image = new PixelBuffer(width, height);
+    for (int index = 0; index < source.length; index++) {
+      image.getPixels()[index] = source[index] & 0xFFFFFF;
+    }
+    RowBandExecutor rowBands = new RowBandExecutor(1);
+    try {
+      MosaicSession expected = new MosaicSession(image, rowBands);
+      expected.addSeeds(allSeeds);
+      PixelBuffer output = new PixelBuffer(width, height);
+      expected.render(output);
+      int[] actual = model.getImage().getRGB(0, 0, width, height, null, 0, width);
+      for (int index = 0; index < actual.length; index++) {
+        assertEquals(output.getPixels()[index], actual[index] & 0xFFFFFF);
+      }
+    } finally {
+      rowBands.shutdown();
+    }
+  }
+
+  /**
+   * Testing refining without a mosaic.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testRefineNoMosaic() {
+    ConcreteImageModel model = new ConcreteImageModel(1);
+    model.loadImage(IMAGE);
+    model.refineMosaic(10, 1L);
+  }
+
+  /**
+   * Testing refining after another filter changed the mosaic.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testRefineAfterFilter() {
+    ConcreteImageModel model = new ConcreteImageModel(1);
+    model.loadImage(IMAGE);
+    model.applyMosaic(100, 1L);
+    model.applyInvert();
+    model.refineMosaic(10, 1L);
+  }
+
+  /**
+   * Testing refining after a filter that moved the pixels, even back to where they were.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testRefineAfterFlips() {
+    ConcreteImageModel model = new ConcreteImageModel(1);
+    model.loadImage(IMAGE);
+    model.applyMosaic(100, 1L);
+    model.flipImageHorizontal();
+    model.flipImageHorizontal();
+    model.refineMosaic(10, 1L);
+  }
+
+  /**
+   * Testing refining after going back to the original image.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testRefineAfterRevert() {
+    ConcreteImageModel model = new ConcreteImageModel(1);
+    model.loadImage(IMAGE);
+    model.applyMosaic(100, 1L);
+    model.revertImage();
+    model.refineMosaic(10, 1L);
+  }
+
+  /**
+   * Testing refining with no new seeds.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testRefineNoSeeds() {
+    ConcreteImageModel model = new ConcreteImageModel(1);
+    model.loadImage(IMAGE);
+    model.applyMosaic(100, 1L);
+    model.refineMosaic(0, 1L);
+  }
+}
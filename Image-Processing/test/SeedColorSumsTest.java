@@ -0,0 +1,176 @@
+import static org.junit.Assert.assertEquals;
+
+import images.PixelBuffer;
+import images.RowBandExecutor;
+import images.SeedColorSums;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Test class for the per seed colour sums of the mosaic.
+ */
+public class SeedColorSumsTest {
+
+  private static final int WIDTH = 37;
+  private static final int HEIGHT = 23;
+  private static final int SEEDS = 9;
+
+  // the average colour of a seed, summed one pixel at a time
+  private int getSerialAverage(int[] pixels, int[] seedMap, int seed) {
+    long red = 0;
+    long green = 0;
+    long blue = 0;
+    long count = 0;
+    for (int index = 0; index < pixels.length; index++) {
+      if (seedMap[index] == seed) {
+        red += PixelBuffer.red(pixels[index]);
+        green += PixelBuffer.green(pixels[index]);
+        blue += PixelBuffer.blue(pixels[index]);
+        count++;
+      }
+    }
+    return count == 0 ? 0 : PixelBuffer.pack((int) (red / count), (int) (green / count),
+            (int) (blue / count));
+  }
+
+  private long getSerialCount(int[] seedMap, int seed) {
+    long count = 0;
+    for (int pixelSeed : seedMap) {
+      if (pixelSeed == seed) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Testing the parallel sums against a serial sum, with one and with several threads. The
+   * last seed has no pixels.
+   */
+  @Test
+  public void testAccumulate() {
+    Random random = new Random(1);
+    int[] pixels = new int[WIDTH * HEIGHT];
+    int[] seedMap = new int[WIDTH * HEIGHT];
+    for (int index = 0; index < pixels.length; index++) {
+      pixels[index] = random.nextInt(0x1000000);
+      seedMap[index] = random.nextInt(SEEDS - 1);
+    }
+
+    for (int parallelism : new int[]{1, 4}) {
+      RowBandExecutor rowBands = new RowBandExecutor(parallelism);
+      try {
+        SeedColorSums sums = SeedColorSums.accumulate(pixels, seedMap, SEEDS, WIDTH, HEIGHT,
+                rowBands);
+        for (int seed = 0; seed < SEEDS; seed++) {
+          assertEquals(getSerialCount(seedMap, seed), sums.getCount(seed));
+          assertEquals(getSerialAverage(pixels, seedMap, seed), sums.getAverageColor(seed));
+        }
+      } finally {
+        rowBands.shutdown();
+      }
+    }
+  }
+
+  /**
+   * Testing that a seed without pixels is black.
+   */
+  @Test
+  public void testEmptySeed() {
+    SeedColorSums sums = new SeedColorSums(2);
+    assertEquals(0, sums.getCount(1));
+    assertEquals(0, sums.getAverageColor(1));
+  }
+
+  /**
+   * Testing the average of single pixels, rounded down.
+   */
+  @Test
+  public void testAdd() {
+    SeedColorSums sums = new SeedColorSums(2);
+    sums.add(0, PixelBuffer.pack(10, 20, 30));
+    sums.add(0, PixelBuffer.pack(11, 25, 255));
+    sums.add(1, PixelBuffer.pack(1, 2, 3));
+    assertEquals(2, sums.getCount(0));
+    assertEquals(PixelBuffer.pack(10, 22, 142), sums.getAverageColor(0));
+    assertEquals(1, sums.getCount(1));
+    assertEquals(PixelBuffer.pack(1, 2, 3), sums.getAverageColor(1));
+  }
+
+  /**
+   * Testing that removing a pixel undoes adding it, and that sums of several pixels add and
+   * take away the same as single pixels.
+   */
+  @Test
+  public void testRemove() {
+    SeedColorSums sums = new SeedColorSums(1);
+    sums.add(0, PixelBuffer.pack(100, 100, 100));
+    sums.add(0, PixelBuffer.pack(200, 0, 50));
+    sums.remove(0, PixelBuffer.pack(200, 0, 50));
+    assertEquals(1, sums.getCount(0));
+    assertEquals(PixelBuffer.pack(100, 100, 100), sums.getAverageColor(0));
+
+    sums.add(0, 300, 60, 0, 3);
+    assertEquals(4, sums.getCount(0));
+    assertEquals(PixelBuffer.pack(100, 40, 25), sums.getAverageColor(0));
+    sums.add(0, -300, -60, 0, -3);
+    sums.remove(0, PixelBuffer.pack(100, 100, 100));
+    assertEquals(0, sums.getCount(0));
+    assertEquals(0, sums.getAverageColor(0));
+  }
+
+  /**
+   * Testing that merging adds the sums of every seed.
+   */
+  @Test
+  public void testMerge() {
+    SeedColorSums first = new SeedColorSums(2);
+    SeedColorSums second = new SeedColorSums(2);
+    first.add(0, PixelBuffer.pack(10, 10, 10));
+    second.add(0, PixelBuffer.pack(30, 50, 70));
+    second.add(1, PixelBuffer.pack(5, 6, 7));
+    first.merge(second);
+    assertEquals(2, first.getCount(0));
+    assertEquals(PixelBuffer.pack(20, 30, 40), first.getAverageColor(0));
+    assertEquals(1, first.getCount(1));
+    assertEquals(PixelBuffer.pack(5, 6, 7), first.getAverageColor(1));
+    // the other sums are left alone
+    assertEquals(1, second.getCount(0));
+  }
+
+  /**
+   * Testing that growing keeps the sums of the old seeds, and that new seeds start empty.
+   */
+  @Test
+  public void testGrow() {
+    SeedColorSums sums = new SeedColorSums(1);
+    sums.add(0, PixelBuffer.pack(1, 2, 3));
+    sums.grow(5);
+    assertEquals(1, sums.getCount(0));
+    assertEquals(PixelBuffer.pack(1, 2, 3), sums.getAverageColor(0));
+    assertEquals(0, sums.getCount(4));
+    sums.add(4, PixelBuffer.pack(4, 5, 6));
+    assertEquals(PixelBuffer.pack(4, 5, 6), sums.getAverageColor(4));
+    // growing to fewer seeds keeps them all
+    sums.grow(2);
+    assertEquals(1, sums.getCount(4));
+  }
+
+  /**
+   * Testing sums for no seeds.
+   */
+  @Test
+  public void testNoSeeds() {
+    SeedColorSums sums = new SeedColorSums(0);
+    sums.grow(1);
+    assertEquals(0, sums.getCount(0));
+  }
+
+  /**
+   * Testing a negative number of seeds.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeSeeds() {
+    new SeedColorSums(-1);
+  }
+}
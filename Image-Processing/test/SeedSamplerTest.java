@@ -0,0 +1,185 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import images.SeedSampler;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Function;
+import org.junit.Test;
+
+/**
+ * Test class for the SeedSampler: every distribution picks the asked number of distinct
+ * pixels within the image, and the same random seed picks the same ones.
+ */
+public class SeedSamplerTest {
+
+  private static final int WIDTH = 61;
+  private static final int HEIGHT = 37;
+
+  // pixels along a vertical line, the only ones with a weight
+  private int[] getLineWeights() {
+    int[] weights = new int[WIDTH * HEIGHT];
+    for (int row = 0; row < HEIGHT; row++) {
+      weights[row * WIDTH + 20] = 1 + row;
+    }
+    return weights;
+  }
+
+  private void checkSeeds(int[] seedPoints, int seeds) {
+    assertEquals(seeds * 2, seedPoints.length);
+    Set<Integer> pixels = new HashSet<>();
+    for (int seed = 0; seed < seeds; seed++) {
+      int row = seedPoints[2 * seed];
+      int col = seedPoints[2 * seed + 1];
+      assertTrue(row >= 0 && row < HEIGHT && col >= 0 && col < WIDTH);
+      assertTrue(pixels.add(row * WIDTH + col));
+    }
+  }
+
+  // checks a distribution for a few seed numbers, from one seed to every pixel
+  private void checkDistribution(Function<SeedSampler, Function<Integer, int[]>> distribution) {
+    for (int seeds : new int[]{1, 2, 10, 300, WIDTH * HEIGHT / 2, WIDTH * HEIGHT}) {
+      int[] first = distribution.apply(new SeedSampler(WIDTH, HEIGHT, 42)).apply(seeds);
+      checkSeeds(first, seeds);
+      int[] second = distribution.apply(new SeedSampler(WIDTH, HEIGHT, 42)).apply(seeds);
+      assertArrayEquals(first, second);
+    }
+  }
+
+  /**
+   * Testing the uniform seeds.
+   */
+  @Test
+  public void testUniform() {
+    checkDistribution(sampler -> sampler::uniform);
+  }
+
+  /**
+   * Testing the jittered grid seeds.
+   */
+  @Test
+  public void testJitteredGrid() {
+    checkDistribution(sampler -> sampler::jitteredGrid);
+  }
+
+  /**
+   * Testing that the jittered grid puts one seed in each cell: with as many seeds as cells
+   * of a 4 by 4 grid, each quarter of the image gets 4 seeds.
+   */
+  @Test
+  public void testJitteredGridSpread() {
+    int[] seedPoints = new SeedSampler(40, 40, 7).jitteredGrid(16);
+    int[] quarters = new int[4];
+    for (int seed = 0; seed < 16; seed++) {
+      quarters[(seedPoints[2 * seed] / 20) * 2 + seedPoints[2 * seed + 1] / 20]++;
+    }
+    assertArrayEquals(new int[]{4, 4, 4, 4}, quarters);
+  }
+
+  /**
+   * Testing the Poisson-disk seeds, including seed numbers too dense for it.
+   */
+  @Test
+  public void testPoissonDisk() {
+    checkDistribution(sampler -> sampler::poissonDisk);
+  }
+
+  /**
+   * Testing the weighted seeds, with weights on every pixel.
+   */
+  @Test
+  public void testWeighted() {
+    int[] weights = new int[WIDTH * HEIGHT];
+    for (int index = 0; index < weights.length; index++) {
+      weights[index] = index % 7;
+    }
+    checkDistribution(sampler -> seeds -> sampler.weighted(seeds, weights));
+  }
+
+  /**
+   * Testing that weighted seeds only land on pixels with a weight while there are enough
+   * of them, and that the rest are picked uniformly.
+   */
+  @Test
+  public void testWeightedOnLine() {
+    int[] seedPoints = new SeedSampler(WIDTH, HEIGHT, 3).weighted(10, getLineWeights());
+    checkSeeds(seedPoints, 10);
+    for (int seed = 0; seed < 10; seed++) {
+      assertEquals(20, seedPoints[2 * seed + 1]);
+    }
+
+    seedPoints = new SeedSampler(WIDTH, HEIGHT, 3).weighted(HEIGHT + 5, getLineWeights());
+    checkSeeds(seedPoints, HEIGHT + 5);
+  }
+
+  /**
+   * Testing weights that are all zero, which fall back to uniform seeds.
+   */
+  @Test
+  public void testWeightedZero() {
+    checkSeeds(new SeedSampler(WIDTH, HEIGHT, 3).weighted(50, new int[WIDTH * HEIGHT]), 50);
+  }
+
+  /**
+   * Testing that different random seeds pick different pixels.
+   */
+  @Test
+  public void testRandomSeed() {
+    int[] first = new SeedSampler(WIDTH, HEIGHT, 1).uniform(20);
+    int[] second = new SeedSampler(WIDTH, HEIGHT, 2).uniform(20);
+    assertFalse(Arrays.equals(first, second));
+  }
+
+  /**
+   * Testing zero seeds.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testNoSeeds() {
+    new SeedSampler(WIDTH, HEIGHT, 1).uniform(0);
+  }
+
+  /**
+   * Testing more seeds than pixels.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testTooManySeeds() {
+    new SeedSampler(WIDTH, HEIGHT, 1).jitteredGrid(WIDTH * HEIGHT + 1);
+  }
+
+  /**
+   * Testing more Poisson-disk seeds than pixels.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testTooManyPoissonSeeds() {
+    new SeedSampler(WIDTH, HEIGHT, 1).poissonDisk(WIDTH * HEIGHT + 1);
+  }
+
+  /**
+   * Testing a negative weight.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeWeight() {
+    int[] weights = getLineWeights();
+    weights[5] = -1;
+    new SeedSampler(WIDTH, HEIGHT, 1).weighted(5, weights);
+  }
+
+  /**
+   * Testing weights missing for some pixels.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testShortWeights() {
+    new SeedSampler(WIDTH, HEIGHT, 1).weighted(5, new int[WIDTH]);
+  }
+
+  /**
+   * Testing an image without pixels.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testEmptyImage() {
+    new SeedSampler(WIDTH, 0, 1);
+  }
+}
@@ -0,0 +1,96 @@
+import images.KdTree;
+import images.RowBandExecutor;
+import images.SpatialIndex;
+import images.UniformGrid;
+import images.VoronoiRasterizer;
+import java.util.Random;
+
+/**
+ * Benchmark (not a unit test) of the ways to find the nearest seed of every pixel of an
+ * image: a KdTree, a UniformGrid, and the VoronoiRasterizer, for more and more seeds,
+ * spread uniformly or in clusters. Shows where the grid gets faster than the tree, which
+ * SpatialIndex.create relies on.
+ *
+ * <p>Run with: java SpatialIndexBenchmark [width] [height]
+ */
+public class SpatialIndexBenchmark {
+
+  private static final int[] SEED_COUNTS = {16, 256, 1024, 4096, 16384, 65536};
+  private static final int CLUSTERS = 8;
+  private static final int REPEATS = 2;
+
+  /**
+   * Runs the benchmark and prints one line per seed count and spread.
+   *
+   * @param args optional width and height of the image (default 2000 x 1500)
+   */
+  public static void main(String[] args) {
+    int width = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+    int height = args.length > 1 ? Integer.parseInt(args[1]) : 1500;
+    RowBandExecutor serial = new RowBandExecutor(1);
+    System.out.println("image " + width + " x " + height + ", best of " + REPEATS + " (ms)");
+
+    for (boolean isClustered : new boolean[]{false, true}) {
+      for (int seeds : SEED_COUNTS) {
+        int[] seedPoints = getSeedPoints(seeds, width, height, isClustered, new Random(seeds));
+
+        long kdTime = Long.MAX_VALUE;
+        long gridTime = Long.MAX_VALUE;
+        long rasterTime = Long.MAX_VALUE;
+        for (int repeat = 0; repeat < REPEATS; repeat++) {
+          kdTime = Math.min(kdTime, timeIndex(new KdTree(seedPoints), width, height));
+          gridTime = Math.min(gridTime, timeIndex(new UniformGrid(seedPoints), width, height));
+
+          int[] nearestSeeds = new int[width * height];
+          long start = System.nanoTime();
+          new VoronoiRasterizer(width, height).assign(seedPoints, nearestSeeds, serial);
+          rasterTime = Math.min(rasterTime, System.nanoTime() - start);
+        }
+
+        String picked = SpatialIndex.create(seedPoints) instanceof UniformGrid ? "grid" : "kd";
+        System.out.printf("%-9s seeds=%6d  kd=%6d  grid=%6d  raster=%5d  create() picks %s%n",
+                isClustered ? "clustered" : "uniform", seeds, kdTime / 1000000,
+                gridTime / 1000000, rasterTime / 1000000, picked);
+      }
+    }
+    serial.shutdown();
+  }
+
+  // looks up every pixel, one row per batch
+  private static long timeIndex(SpatialIndex index, int width, int height) {
+    int[] coordinates = new int[width * 2];
+    int[] nearestSeeds = new int[width];
+    long start = System.nanoTime();
+    for (int row = 0; row < height; row++) {
+      for (int col = 0; col < width; col++) {
+        coordinates[2 * col] = row;
+        coordinates[2 * col + 1] = col;
+      }
+      index.getNearest(coordinates, nearestSeeds, null);
+    }
+    return System.nanoTime() - start;
+  }
+
+  // seeds as [row, col] pairs, uniform or around a few cluster centers
+  private static int[] getSeedPoints(int seeds, int width, int height, boolean isClustered,
+                                     Random random) {
+    int[] seedPoints = new int[seeds * 2];
+    for (int seed = 0; seed < seeds; seed++) {
+      if (isClustered) {
+        int cluster = random.nextInt(CLUSTERS);
+        double centerRow = height * (cluster * 3 % CLUSTERS + 0.5) / CLUSTERS;
+        double centerCol = width * (cluster + 0.5) / CLUSTERS;
+        seedPoints[2 * seed] = clamp(centerRow + random.nextGaussian() * height / 40, height);
+        seedPoints[2 * seed + 1] = clamp(centerCol + random.nextGaussian() * width / 40, width);
+      } else {
+        seedPoints[2 * seed] = random.nextInt(height);
+        seedPoints[2 * seed + 1] = random.nextInt(width);
+      }
+    }
+    return seedPoints;
+  }
+
+  private static int clamp(double value, int size) {
+    return (int) Math.min(size - 1, Math.max(0, value));
+  }
+}
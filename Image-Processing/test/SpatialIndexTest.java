@@ -0,0 +1,171 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import images.KdTree;
+import images.RowBandExecutor;
+import images.SpatialIndex;
+import images.UniformGrid;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Test class for the UniformGrid, checked against a brute force search and the KdTree, and
+ * for the choice of index made by SpatialIndex.create.
+ */
+public class SpatialIndexTest {
+
+  private int[] getPoints(Random random, int count, int range) {
+    int[] points = new int[count * 2];
+    for (int i = 0; i < points.length; i++) {
+      points[i] = random.nextInt(range);
+    }
+    return points;
+  }
+
+  // the closest point, ties going to the lowest seed index
+  private int getNearest(int[] points, int inputX, int inputY) {
+    long bestDistance = Long.MAX_VALUE;
+    int bestSeed = -1;
+    for (int seed = 0; seed < points.length / 2; seed++) {
+      long deltaX = points[2 * seed] - inputX;
+      long deltaY = points[2 * seed + 1] - inputY;
+      long distance = deltaX * deltaX + deltaY * deltaY;
+      if (distance < bestDistance) {
+        bestDistance = distance;
+        bestSeed = seed;
+      }
+    }
+    return bestSeed;
+  }
+
+  /**
+   * Testing the closest point against a brute force search and the KdTree, on small areas
+   * (many duplicates and ties), points on one line, and queries away from the points, so
+   * the search goes past the edge of the grid.
+   */
+  @Test
+  public void testGetNearest() {
+    Random random = new Random(1);
+    for (int trial = 0; trial < 300; trial++) {
+      int[] points = getPoints(random, 1 + random.nextInt(80), 1 + random.nextInt(40));
+      if (trial % 5 == 0) {
+        // all on one row
+        for (int i = 1; i < points.length; i += 2) {
+          points[i] = 7;
+        }
+      }
+      UniformGrid grid = new UniformGrid(points);
+      KdTree tree = new KdTree(points);
+      for (int query = 0; query < 50; query++) {
+        int inputX = random.nextInt(100) - 30;
+        int inputY = random.nextInt(100) - 30;
+        int expected = getNearest(points, inputX, inputY);
+        assertEquals(expected, grid.getNearest(inputX, inputY));
+        assertEquals(expected, tree.getNearest(inputX, inputY));
+      }
+    }
+  }
+
+  /**
+   * Testing points far apart, so most cells of the grid are empty and the search goes
+   * through many rings.
+   */
+  @Test
+  public void testGetNearestSparse() {
+    int[] points = new int[]{0, 0, 100000, 3, 50000, 99999, 99999, 100000};
+    UniformGrid grid = new UniformGrid(points);
+    Random random = new Random(2);
+    for (int query = 0; query < 500; query++) {
+      int inputX = random.nextInt(120000) - 10000;
+      int inputY = random.nextInt(120000) - 10000;
+      assertEquals(getNearest(points, inputX, inputY), grid.getNearest(inputX, inputY));
+    }
+  }
+
+  /**
+   * Testing batch queries, on the calling thread and split across threads.
+   */
+  @Test
+  public void testGetNearestBatch() {
+    Random random = new Random(3);
+    int[] points = getPoints(random, 3000, 500);
+    UniformGrid grid = new UniformGrid(points);
+    int[] coordinates = getPoints(random, 4000, 520);
+
+    int[] expected = new int[4000];
+    for (int i = 0; i < expected.length; i++) {
+      expected[i] = getNearest(points, coordinates[2 * i], coordinates[2 * i + 1]);
+    }
+    int[] serial = new int[4000];
+    grid.getNearest(coordinates, serial, null);
+    assertArrayEquals(expected, serial);
+
+    RowBandExecutor executor = new RowBandExecutor(4);
+    int[] parallel = new int[4000];
+    grid.getNearest(coordinates, parallel, executor);
+    executor.shutdown();
+    assertArrayEquals(expected, parallel);
+  }
+
+  /**
+   * Testing points added after the grid was built, and an empty grid.
+   */
+  @Test
+  public void testAddAndEmpty() {
+    UniformGrid grid = new UniformGrid();
+    assertEquals(-1, grid.getNearest(3, 4));
+    int[] nearestSeeds = new int[2];
+    grid.getNearest(new int[]{1, 1, 2, 2}, nearestSeeds, null);
+    assertArrayEquals(new int[]{-1, -1}, nearestSeeds);
+
+    grid.add(10, 10);
+    grid.add(0, 0);
+    assertEquals(1, grid.getNearest(3, 4));
+    grid.add(3, 4);
+    assertEquals(2, grid.getNearest(3, 4));
+    // same point again: the first one wins the tie
+    grid.add(3, 4);
+    assertEquals(2, grid.getNearest(3, 4));
+    // outside of the points so far
+    grid.add(50, -20);
+    assertEquals(4, grid.getNearest(60, -30));
+    assertEquals(5, grid.size());
+  }
+
+  /**
+   * Testing the index picked: a tree for few points, a grid for many points spread
+   * evenly, and a tree for many points crowded together.
+   */
+  @Test
+  public void testCreate() {
+    Random random = new Random(4);
+    assertTrue(SpatialIndex.create(getPoints(random, 100, 1000)) instanceof KdTree);
+    assertTrue(SpatialIndex.create(getPoints(random, 5000, 1000)) instanceof UniformGrid);
+
+    // half the points in a tiny corner, the rest spread far out
+    int[] crowded = getPoints(random, 5000, 10);
+    for (int i = 0; i < crowded.length / 2; i++) {
+      crowded[i] = random.nextInt(100000);
+    }
+    SpatialIndex index = SpatialIndex.create(crowded);
+    assertTrue(index instanceof KdTree);
+    assertEquals(5000, index.size());
+  }
+
+  /**
+   * Testing coordinates that do not come in pairs.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testOddCoordinates() {
+    new UniformGrid(new int[]{1, 2, 3});
+  }
+
+  /**
+   * Testing a batch output too short for the coordinates.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testShortBatchOutput() {
+    new UniformGrid(new int[]{1, 2}).getNearest(new int[]{0, 0, 1, 1}, new int[1], null);
+  }
+}
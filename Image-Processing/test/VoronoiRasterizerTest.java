@@ -0,0 +1,161 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import images.RowBandExecutor;
+import images.VoronoiRasterizer;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Test class for the VoronoiRasterizer, checked against a brute force search.
+ */
+public class VoronoiRasterizerTest {
+
+  // seeds as [row, col] pairs within the image, crowded enough to share pixels
+  private int[] getSeeds(Random random, int count, int width, int height) {
+    int[] seeds = new int[count * 2];
+    for (int seed = 0; seed < count; seed++) {
+      seeds[2 * seed] = random.nextInt(height);
+      seeds[2 * seed + 1] = random.nextInt(width);
+    }
+    return seeds;
+  }
+
+  // the nearest seed of every pixel, ties going to the lowest seed index
+  private int[] getBruteForce(int[] seeds, int width, int height) {
+    int[] nearest = new int[width * height];
+    for (int row = 0; row < height; row++) {
+      for (int col = 0; col < width; col++) {
+        long best = Long.MAX_VALUE;
+        int bestSeed = -1;
+        for (int seed = 0; seed < seeds.length / 2; seed++) {
+          long deltaRow = seeds[2 * seed] - row;
+          long deltaCol = seeds[2 * seed + 1] - col;
+          long distance = deltaRow * deltaRow + deltaCol * deltaCol;
+          if (distance < best) {
+            best = distance;
+            bestSeed = seed;
+          }
+        }
+        nearest[row * width + col] = bestSeed;
+      }
+    }
+    return nearest;
+  }
+
+  private int[] assign(int[] seeds, int width, int height, int parallelism) {
+    RowBandExecutor rowBands = new RowBandExecutor(parallelism);
+    try {
+      int[] nearest = new int[width * height];
+      new VoronoiRasterizer(width, height).assign(seeds, nearest, rowBands);
+      return nearest;
+    } finally {
+      rowBands.shutdown();
+    }
+  }
+
+  /**
+   * Testing every pixel against a brute force search on random images, with one and with
+   * several threads.
+   */
+  @Test
+  public void testAssign() {
+    Random random = new Random(1);
+    for (int trial = 0; trial < 100; trial++) {
+      int width = 1 + random.nextInt(40);
+      int height = 1 + random.nextInt(40);
+      int[] seeds = getSeeds(random, 1 + random.nextInt(30), width, height);
+      int[] expected = getBruteForce(seeds, width, height);
+      assertArrayEquals(expected, assign(seeds, width, height, 1));
+      assertArrayEquals(expected, assign(seeds, width, height, 4));
+    }
+  }
+
+  /**
+   * Testing seeds sharing a pixel, and pixels just as close to several seeds: the lowest
+   * seed index wins.
+   */
+  @Test
+  public void testTies() {
+    // seeds 1 and 3 are on the same pixel, seed 0 and 2 are mirrored around the middle
+    int[] seeds = {2, 0, 2, 4, 2, 8, 2, 4};
+    int[] nearest = assign(seeds, 9, 5, 1);
+    assertArrayEquals(getBruteForce(seeds, 9, 5), nearest);
+    for (int row = 0; row < 5; row++) {
+      assertEquals(0, nearest[row * 9 + 2]);
+      assertEquals(1, nearest[row * 9 + 4]);
+      assertEquals(1, nearest[row * 9 + 6]);
+    }
+    for (int seed : nearest) {
+      assertTrue(seed != 3);
+    }
+  }
+
+  /**
+   * Testing a single seed, which every pixel belongs to.
+   */
+  @Test
+  public void testSingleSeed() {
+    int[] nearest = assign(new int[]{6, 3}, 10, 7, 4);
+    for (int seed : nearest) {
+      assertEquals(0, seed);
+    }
+  }
+
+  /**
+   * Testing that no seeds leave every pixel at -1.
+   */
+  @Test
+  public void testNoSeeds() {
+    int[] nearest = assign(new int[0], 5, 3, 1);
+    for (int seed : nearest) {
+      assertEquals(-1, seed);
+    }
+  }
+
+  /**
+   * Testing a seed outside of the image.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testSeedOutside() {
+    assign(new int[]{1, 1, 3, 0}, 4, 3, 1);
+  }
+
+  /**
+   * Testing a seed with a negative column.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testSeedNegative() {
+    assign(new int[]{1, -1}, 4, 3, 1);
+  }
+
+  /**
+   * Testing a seed missing its column.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testOddSeeds() {
+    assign(new int[]{1, 1, 2}, 4, 3, 1);
+  }
+
+  /**
+   * Testing an output too short for the image.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testShortOutput() {
+    RowBandExecutor rowBands = new RowBandExecutor(1);
+    try {
+      new VoronoiRasterizer(4, 3).assign(new int[]{1, 1}, new int[11], rowBands);
+    } finally {
+      rowBands.shutdown();
+    }
+  }
+
+  /**
+   * Testing an image without pixels.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testEmptyImage() {
+    new VoronoiRasterizer(0, 3);
+  }
+}